@@ -0,0 +1,105 @@
+package edu.grinnell.csc207.bench;
+
+import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BigFraction;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of BFCalculator accumulation chains: each invocation clears the
+ * calculator and feeds it a full chain of terms.
+ *
+ * Author: Slok Rajbhandari
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BFCalculatorBenchmark {
+
+  /**
+   * Bit length of each term's numerator and denominator.
+   */
+  @Param({"8", "31", "128"})
+  int bits;
+
+  /**
+   * Number of terms in a chain.
+   */
+  @Param({"100", "1000"})
+  int length;
+
+  /**
+   * The terms.
+   */
+  BigFraction[] terms;
+
+  /**
+   * The calculator under test.
+   */
+  BFCalculator calculator;
+
+  /**
+   * Builds the terms and the calculator.
+   */
+  @Setup
+  public void setup() {
+    terms = Operands.fractions(bits, length);
+    calculator = new BFCalculator();
+  } // setup()
+
+  /**
+   * A chain of additions.
+   *
+   * @return the sum
+   */
+  @Benchmark
+  public BigFraction sumChain() {
+    calculator.clear();
+    for (BigFraction term : terms) {
+      calculator.add(term);
+    } // for (term)
+    return calculator.get();
+  } // sumChain()
+
+  /**
+   * A chain alternating all four operations.
+   *
+   * @return the result
+   */
+  @Benchmark
+  public BigFraction mixedChain() {
+    calculator.clear();
+    for (int i = 0; i < terms.length; i++) {
+      switch (i & 3) {
+        case 0:
+          calculator.add(terms[i]);
+          break;
+        case 1:
+          calculator.multiply(terms[i]);
+          break;
+        case 2:
+          calculator.subtract(terms[i]);
+          break;
+        default:
+          calculator.divide(terms[i]);
+          break;
+      } // switch
+    } // for (i)
+    return calculator.get();
+  } // mixedChain()
+} // class BFCalculatorBenchmark
@@ -0,0 +1,86 @@
+package edu.grinnell.csc207.bench;
+
+import edu.grinnell.csc207.util.BFRegisterSet;
+import edu.grinnell.csc207.util.BigFraction;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of BFRegisterSet reads and writes.
+ *
+ * Author: Slok Rajbhandari
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BFRegisterSetBenchmark {
+
+  /**
+   * The register set under test.
+   */
+  BFRegisterSet registers;
+
+  /**
+   * A value to store.
+   */
+  BigFraction value;
+
+  /**
+   * Next register to use, as an offset from 'a'.
+   */
+  int next;
+
+  /**
+   * Builds the register set.
+   */
+  @Setup
+  public void setup() {
+    registers = new BFRegisterSet();
+    value = new BigFraction(22, 7);
+  } // setup()
+
+  /**
+   * Picks the next register.
+   *
+   * @return a register name
+   */
+  char register() {
+    next = next == 25 ? 0 : next + 1;
+    return (char) ('a' + next);
+  } // register()
+
+  /**
+   * Reading a register.
+   *
+   * @return the value read
+   */
+  @Benchmark
+  public BigFraction get() {
+    return registers.get(register());
+  } // get()
+
+  /**
+   * Writing a register.
+   *
+   * @return the register set
+   */
+  @Benchmark
+  public BFRegisterSet store() {
+    registers.store(register(), value);
+    return registers;
+  } // store()
+} // class BFRegisterSetBenchmark
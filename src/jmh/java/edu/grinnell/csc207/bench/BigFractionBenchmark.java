@@ -0,0 +1,195 @@
+package edu.grinnell.csc207.bench;
+
+import edu.grinnell.csc207.util.BigFraction;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of BigFraction construction, arithmetic and printing, with
+ * operands of several sizes.
+ *
+ * Author: Slok Rajbhandari
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BigFractionBenchmark {
+
+  /**
+   * Number of operands cycled through, so branch prediction cannot memorize one value.
+   */
+  static final int COUNT = 1024;
+
+  /**
+   * Bit length of each numerator and denominator.
+   */
+  @Param({"8", "31", "62", "128", "1024", "8192"})
+  int bits;
+
+  /**
+   * Left-hand operands.
+   */
+  BigFraction[] left;
+
+  /**
+   * Right-hand operands.
+   */
+  BigFraction[] right;
+
+  /**
+   * The operands' numerators.
+   */
+  BigInteger[] numerators;
+
+  /**
+   * The operands' denominators.
+   */
+  BigInteger[] denominators;
+
+  /**
+   * The operands as strings.
+   */
+  String[] strings;
+
+  /**
+   * Small int numerators and denominators for the int constructor.
+   */
+  int[] ints;
+
+  /**
+   * Position in the operand arrays.
+   */
+  int next;
+
+  /**
+   * Builds the operands.
+   */
+  @Setup
+  public void setup() {
+    left = Operands.fractions(bits, COUNT);
+    right = Operands.fractions(bits, 2 * COUNT);
+    numerators = new BigInteger[COUNT];
+    denominators = new BigInteger[COUNT];
+    strings = new String[COUNT];
+    ints = new int[COUNT + 1];
+    for (int i = 0; i < COUNT; i++) {
+      numerators[i] = left[i].numerator();
+      denominators[i] = left[i].denominator();
+      strings[i] = left[i].toString();
+      ints[i] = left[i].numerator().intValue() | 1;
+    } // for (i)
+    ints[COUNT] = 1;
+  } // setup()
+
+  /**
+   * Advances to the next operand index.
+   *
+   * @return the index to use
+   */
+  int index() {
+    next = (next + 1) & (COUNT - 1);
+    return next;
+  } // index()
+
+  /**
+   * Construction from two ints.
+   *
+   * @return the fraction
+   */
+  @Benchmark
+  public BigFraction constructInts() {
+    int i = index();
+    return new BigFraction(ints[i], ints[i + 1]);
+  } // constructInts()
+
+  /**
+   * Construction from a string.
+   *
+   * @return the fraction
+   */
+  @Benchmark
+  public BigFraction constructString() {
+    return new BigFraction(strings[index()]);
+  } // constructString()
+
+  /**
+   * Construction from two BigIntegers.
+   *
+   * @return the fraction
+   */
+  @Benchmark
+  public BigFraction constructBigIntegers() {
+    int i = index();
+    return new BigFraction(numerators[i], denominators[i]);
+  } // constructBigIntegers()
+
+  /**
+   * Addition.
+   *
+   * @return the sum
+   */
+  @Benchmark
+  public BigFraction add() {
+    int i = index();
+    return left[i].add(right[i]);
+  } // add()
+
+  /**
+   * Subtraction.
+   *
+   * @return the difference
+   */
+  @Benchmark
+  public BigFraction subtract() {
+    int i = index();
+    return left[i].subtract(right[i]);
+  } // subtract()
+
+  /**
+   * Multiplication.
+   *
+   * @return the product
+   */
+  @Benchmark
+  public BigFraction multiply() {
+    int i = index();
+    return left[i].multiply(right[i]);
+  } // multiply()
+
+  /**
+   * Division.
+   *
+   * @return the quotient
+   */
+  @Benchmark
+  public BigFraction divide() {
+    int i = index();
+    return left[i].divide(right[i]);
+  } // divide()
+
+  /**
+   * Conversion to a string.
+   *
+   * @return the string
+   */
+  @Benchmark
+  public String print() {
+    return left[index()].toString();
+  } // print()
+} // class BigFractionBenchmark
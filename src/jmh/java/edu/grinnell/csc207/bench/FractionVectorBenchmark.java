@@ -0,0 +1,98 @@
+package edu.grinnell.csc207.bench;
+
+import edu.grinnell.csc207.util.BigFraction;
+import edu.grinnell.csc207.util.FractionVector;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of element-wise FractionVector arithmetic. Which kernel runs
+ * depends on the build and JVM: compare a vector build run with
+ * -jvmArgsAppend "--add-modules jdk.incubator.vector" against the same
+ * run with -Dbf.vector=false added.
+ *
+ * Author: Slok Rajbhandari
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FractionVectorBenchmark {
+
+  /**
+   * Number of elements in each vector.
+   */
+  static final int SIZE = 4096;
+
+  /**
+   * Bit length of each numerator and denominator.
+   */
+  @Param({"8", "20", "31", "62"})
+  int bits;
+
+  /**
+   * Left-hand operands.
+   */
+  FractionVector left;
+
+  /**
+   * Right-hand operands.
+   */
+  FractionVector right;
+
+  /**
+   * Builds the operands.
+   */
+  @Setup
+  public void setup() {
+    left = FractionVector.of(Operands.fractions(bits, SIZE));
+    // The same seed, so skip the values left already has
+    BigFraction[] more = Operands.fractions(bits, 2 * SIZE);
+    right = FractionVector.of(Arrays.copyOfRange(more, SIZE, 2 * SIZE));
+  } // setup()
+
+  /**
+   * Element-wise addition.
+   *
+   * @return the sums
+   */
+  @Benchmark
+  public FractionVector add() {
+    return left.add(right);
+  } // add()
+
+  /**
+   * Element-wise multiplication.
+   *
+   * @return the products
+   */
+  @Benchmark
+  public FractionVector multiply() {
+    return left.multiply(right);
+  } // multiply()
+
+  /**
+   * Element-wise division.
+   *
+   * @return the quotients
+   */
+  @Benchmark
+  public FractionVector divide() {
+    return left.divide(right);
+  } // divide()
+} // class FractionVectorBenchmark
@@ -0,0 +1,55 @@
+package edu.grinnell.csc207.bench;
+
+import edu.grinnell.csc207.util.BigFraction;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Operands shared by the benchmarks. Every benchmark draws from a fixed seed
+ * so that runs are comparable with each other.
+ *
+ * Author: Slok Rajbhandari
+ */
+final class Operands {
+
+  /**
+   * Seed used for every random operand.
+   */
+  static final long SEED = 207L;
+
+  /**
+   * Hidden constructor; this class only has static helpers.
+   */
+  private Operands() {
+  } // Operands()
+
+  /**
+   * Makes a random non-zero integer with exactly the given number of bits.
+   *
+   * @param bits the bit length, at least 1
+   * @param random the source of randomness
+   * @return the integer, negative about half the time
+   */
+  static BigInteger integer(int bits, Random random) {
+    BigInteger value = new BigInteger(bits - 1, random).setBit(bits - 1);
+    return random.nextBoolean() ? value.negate() : value;
+  } // integer(int, Random)
+
+  /**
+   * Makes count random fractions whose numerator and denominator have the
+   * given bit length.
+   *
+   * @param bits the bit length of each component
+   * @param count how many fractions to make
+   * @return the fractions
+   */
+  static BigFraction[] fractions(int bits, int count) {
+    Random random = new Random(SEED);
+    BigFraction[] result = new BigFraction[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = new BigFraction(integer(bits, random), integer(bits, random).abs());
+    } // for (i)
+    return result;
+  } // fractions(int, int)
+} // class Operands
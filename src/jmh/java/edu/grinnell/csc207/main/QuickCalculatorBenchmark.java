@@ -0,0 +1,153 @@
+package edu.grinnell.csc207.main;
+
+import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BFRegisterSet;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the full QuickCalculator path, from expression text to
+ * printed result. Lives in the main package so it can reach processInput.
+ *
+ * Author: Slok Rajbhandari
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuickCalculatorBenchmark {
+
+  /**
+   * Number of distinct expressions cycled through.
+   */
+  static final int COUNT = 256;
+
+  /**
+   * Bit length of each literal's numerator and denominator.
+   */
+  @Param({"8", "62", "256"})
+  int bits;
+
+  /**
+   * Expressions made only of literals.
+   */
+  String[] expressions;
+
+  /**
+   * Expressions that read registers.
+   */
+  String[] registerExpressions;
+
+  /**
+   * The calculator.
+   */
+  BFCalculator calculator;
+
+  /**
+   * The registers.
+   */
+  BFRegisterSet registers;
+
+  /**
+   * Output that throws everything away.
+   */
+  PrintWriter output;
+
+  /**
+   * Position in the expression arrays.
+   */
+  int next;
+
+  /**
+   * Builds the expressions and calculator state.
+   */
+  @Setup
+  public void setup() {
+    Random random = new Random(207L);
+    String[] ops = {"+", "-", "*", "/"};
+    expressions = new String[COUNT];
+    registerExpressions = new String[COUNT];
+    for (int i = 0; i < COUNT; i++) {
+      StringBuilder literal = new StringBuilder(literal(random));
+      StringBuilder withRegisters = new StringBuilder("a");
+      for (int j = 0; j < 4; j++) {
+        String op = ops[random.nextInt(ops.length)];
+        literal.append(' ').append(op).append(' ').append(literal(random));
+        withRegisters.append(' ').append(op).append(' ')
+            .append(j % 2 == 0 ? literal(random) : String.valueOf((char) ('b' + j)));
+      } // for (j)
+      expressions[i] = literal.toString();
+      registerExpressions[i] = withRegisters.toString();
+    } // for (i)
+    calculator = new BFCalculator();
+    registers = new BFRegisterSet();
+    for (char r = 'a'; r <= 'z'; r++) {
+      QuickCalculator.processInput(literal(random), calculator, registers, output());
+      QuickCalculator.processInput("STORE " + r, calculator, registers, output());
+    } // for (r)
+    output = output();
+  } // setup()
+
+  /**
+   * Makes a positive literal fraction with the configured bit length.
+   *
+   * @param random the source of randomness
+   * @return the literal text
+   */
+  String literal(Random random) {
+    BigInteger num = new BigInteger(bits - 1, random).setBit(bits - 1);
+    BigInteger den = new BigInteger(bits - 1, random).setBit(bits - 1);
+    return num + "/" + den;
+  } // literal(Random)
+
+  /**
+   * Makes a PrintWriter that discards its output.
+   *
+   * @return the writer
+   */
+  static PrintWriter output() {
+    return new PrintWriter(Writer.nullWriter());
+  } // output()
+
+  /**
+   * Evaluating literal-only expressions.
+   *
+   * @return the calculator
+   */
+  @Benchmark
+  public BFCalculator literals() {
+    next = (next + 1) & (COUNT - 1);
+    QuickCalculator.processInput(expressions[next], calculator, registers, output);
+    return calculator;
+  } // literals()
+
+  /**
+   * Evaluating expressions that mix literals and registers.
+   *
+   * @return the calculator
+   */
+  @Benchmark
+  public BFCalculator registers() {
+    next = (next + 1) & (COUNT - 1);
+    QuickCalculator.processInput(registerExpressions[next], calculator, registers, output);
+    return calculator;
+  } // registers()
+} // class QuickCalculatorBenchmark
@@ -0,0 +1,420 @@
+package edu.grinnell.csc207.main;
+
+import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BFExpression;
+import edu.grinnell.csc207.util.BFRegisters;
+import edu.grinnell.csc207.util.BFScriptExecutor;
+import edu.grinnell.csc207.util.BigFraction;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BatchEvaluator class runs a file of calculator lines, one per line, and
+ * writes the same output QuickCalculator would print for them.
+ *
+ * The file is memory-mapped a region at a time and each region is cut into
+ * line-aligned chunks. Chunks are compiled in parallel on a fork-join pool,
+ * then the region's lines run on the same pool as one script through a
+ * BFScriptExecutor, so lines only wait for the STOREs they read and STOREs
+ * for the line before them. A final pass walks the lines in input order
+ * and writes every result through one large buffer.
+ *
+ * Author: Slok Rajbhandari
+ */
+class BatchEvaluator {
+
+  /**
+   * Largest part of the file mapped at once.
+   */
+  static final int REGION_BYTES = 64 << 20;
+
+  /**
+   * Target size of the chunks handed to the pool.
+   */
+  static final int CHUNK_BYTES = 256 << 10;
+
+  /**
+   * Size of the output buffer.
+   */
+  static final int OUTPUT_BYTES = 1 << 20;
+
+  /**
+   * The calculator whose value STORE reads.
+   */
+  private final BFCalculator calculator;
+
+  /**
+   * The registers.
+   */
+  private final BFRegisters registers;
+
+  /**
+   * The pool that compiles chunks.
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Runs each region's lines on the pool.
+   */
+  private final BFScriptExecutor executor;
+
+  /**
+   * Where results go.
+   */
+  private final WritableByteChannel out;
+
+  /**
+   * Buffer in front of out.
+   */
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BYTES);
+
+  /**
+   * Constructor for BatchEvaluator.
+   *
+   * @param calculator the calculator to run lines against
+   * @param registers the registers to run lines against
+   * @param pool the pool to compile and run lines on
+   * @param out where results go
+   */
+  BatchEvaluator(BFCalculator calculator, BFRegisters registers, ForkJoinPool pool,
+      WritableByteChannel out) {
+    this.calculator = calculator;
+    this.registers = registers;
+    this.pool = pool;
+    this.executor = new BFScriptExecutor(pool);
+    this.out = out;
+  } // BatchEvaluator(BFCalculator, BFRegisters, ForkJoinPool, WritableByteChannel)
+
+  /**
+   * Runs every line of a file and flushes the results.
+   *
+   * @param input the file of lines
+   * @throws IOException if the file cannot be read or the output written
+   */
+  void run(Path input) throws IOException {
+    try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        long length = Math.min(REGION_BYTES, size - position);
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        int end = (int) length;
+        if (position + length < size) {
+          end = lastNewline(region, end);
+          if (end < 0) {
+            // A single line longer than a region: map up to its end instead
+            end = (int) Math.min(Integer.MAX_VALUE, size - position);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, position, end);
+            end = position + end < size ? lastNewline(region, end) : end;
+            if (end < 0) {
+              throw new IOException("Line too long at byte " + position);
+            } // if (end)
+          } // if (end)
+        } // if (more)
+        runRegion(region, end);
+        position += end;
+      } // while (position)
+    } // try
+    flush();
+  } // run(Path)
+
+  /**
+   * Finds the end of the last complete line in the first limit bytes.
+   *
+   * @param region the mapped bytes
+   * @param limit how many bytes to consider
+   * @return the index just past the last newline, or -1 if there is none
+   */
+  static int lastNewline(ByteBuffer region, int limit) {
+    for (int i = limit - 1; i >= 0; i--) {
+      if (region.get(i) == '\n') {
+        return i + 1;
+      } // if (newline)
+    } // for (i)
+    return -1;
+  } // lastNewline(ByteBuffer, int)
+
+  /**
+   * Runs the lines in the first end bytes of a region.
+   *
+   * @param region the mapped bytes
+   * @param end where the last complete line ends
+   * @throws IOException if the output cannot be written
+   */
+  void runRegion(ByteBuffer region, int end) throws IOException {
+    List<Chunk> chunks = new ArrayList<>();
+    int start = 0;
+    while (start < end) {
+      int stop = Math.min(start + CHUNK_BYTES, end);
+      if (stop < end) {
+        int newline = lastNewline(region.slice(start, stop - start), stop - start);
+        stop = newline < 0 ? nextNewline(region, stop, end) : start + newline;
+      } // if (stop)
+      chunks.add(new Chunk(region.slice(start, stop - start)));
+      start = stop;
+    } // while (start)
+    pool.invoke(new Prepare(chunks, 0, chunks.size()));
+    int count = 0;
+    for (Chunk chunk : chunks) {
+      count += chunk.lines.length;
+    } // for (chunk)
+    BFExpression[] expressions = new BFExpression[count];
+    RuntimeException[] errors = new RuntimeException[count];
+    int next = 0;
+    for (Chunk chunk : chunks) {
+      System.arraycopy(chunk.expressions, 0, expressions, next, chunk.lines.length);
+      next += chunk.lines.length;
+    } // for (chunk)
+    BigFraction[] values = executor.run(expressions, calculator, registers, errors);
+    next = 0;
+    for (Chunk chunk : chunks) {
+      for (int i = 0; i < chunk.lines.length; i++, next++) {
+        if (chunk.outputs[i] != null) {
+          write(chunk.outputs[i]);
+        } else if (errors[next] != null) {
+          write(failure(chunk.lines[i], errors[next]));
+        } else if (expressions[next].isStore()) {
+          write("STORED");
+        } else {
+          writeResult(chunk.lines[i], values[next]);
+        } // if (outputs)
+      } // for (i)
+    } // for (chunk)
+  } // runRegion(ByteBuffer, int)
+
+  /**
+   * Finds the end of the line that contains position.
+   *
+   * @param region the mapped bytes
+   * @param position where to start looking
+   * @param end where the last complete line ends
+   * @return the index just past the next newline
+   */
+  static int nextNewline(ByteBuffer region, int position, int end) {
+    while (position < end && region.get(position) != '\n') {
+      position++;
+    } // while (position)
+    return Math.min(position + 1, end);
+  } // nextNewline(ByteBuffer, int, int)
+
+  /**
+   * Formats a failed line the way QuickCalculator does.
+   *
+   * @param line the line
+   * @param e what went wrong
+   * @return the output line
+   */
+  static String failure(String line, Exception e) {
+    return line + ": FAILED [" + e.getMessage() + "]";
+  } // failure(String, Exception)
+
+  /**
+   * Writes one output line.
+   *
+   * @param text the line, without its newline
+   * @throws IOException if the output cannot be written
+   */
+  void write(String text) throws IOException {
+    writeText(text);
+    writeText("\n");
+  } // write(String)
+
+  /**
+   * Writes "line -> value" as one output line, with the digits of the value
+   * going straight into the buffer.
+   *
+   * @param line the input line
+   * @param value its value
+   * @throws IOException if the output cannot be written
+   */
+  void writeResult(String line, BigFraction value) throws IOException {
+    writeText(line);
+    writeText(" -> ");
+    buffer.mark();
+    try {
+      value.writeTo(buffer);
+    } catch (BufferOverflowException e) {
+      buffer.reset();
+      drain();
+      buffer.mark();
+      try {
+        value.writeTo(buffer);
+      } catch (BufferOverflowException again) {
+        // Longer than the whole buffer
+        buffer.reset();
+        writeText(value.toString());
+      } // try/catch
+    } // try/catch
+    writeText("\n");
+  } // writeResult(String, BigFraction)
+
+  /**
+   * Writes text, without adding a newline.
+   *
+   * @param text the text
+   * @throws IOException if the output cannot be written
+   */
+  private void writeText(String text) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    int offset = 0;
+    while (offset < bytes.length) {
+      if (!buffer.hasRemaining()) {
+        drain();
+      } // if (full)
+      int count = Math.min(buffer.remaining(), bytes.length - offset);
+      buffer.put(bytes, offset, count);
+      offset += count;
+    } // while (offset)
+  } // writeText(String)
+
+  /**
+   * Writes out everything buffered so far.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  void flush() throws IOException {
+    drain();
+  } // flush()
+
+  /**
+   * Empties the buffer into the channel.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  private void drain() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    } // while (remaining)
+    buffer.clear();
+  } // drain()
+
+  /**
+   * Chunk class holds the lines of one chunk, compiled in parallel.
+   */
+  static class Chunk {
+
+    /**
+     * The chunk's bytes.
+     */
+    final ByteBuffer bytes;
+
+    /**
+     * The lines, without line terminators.
+     */
+    String[] lines;
+
+    /**
+     * Compiled lines, or null where compiling failed.
+     */
+    BFExpression[] expressions;
+
+    /**
+     * Output lines of lines that did not compile, or null.
+     */
+    String[] outputs;
+
+    /**
+     * Constructor for Chunk.
+     *
+     * @param bytes the chunk's bytes
+     */
+    Chunk(ByteBuffer bytes) {
+      this.bytes = bytes;
+    } // Chunk(ByteBuffer)
+
+    /**
+     * Splits the chunk into lines and compiles them.
+     */
+    void prepare() {
+      byte[] data = new byte[bytes.remaining()];
+      bytes.get(0, data);
+      List<String> found = new ArrayList<>();
+      int start = 0;
+      for (int i = 0; i <= data.length; i++) {
+        if (i == data.length ? start < i : data[i] == '\n') {
+          int stop = i > start && data[i - 1] == '\r' ? i - 1 : i;
+          found.add(new String(data, start, stop - start, StandardCharsets.UTF_8));
+          start = i + 1;
+        } // if (end of line)
+      } // for (i)
+      lines = found.toArray(new String[0]);
+      expressions = new BFExpression[lines.length];
+      outputs = new String[lines.length];
+      for (int i = 0; i < lines.length; i++) {
+        try {
+          expressions[i] = BFExpression.compile(lines[i]);
+        } catch (Exception e) {
+          outputs[i] = failure(lines[i], e);
+        } // try/catch
+      } // for (i)
+    } // prepare()
+  } // Chunk class
+
+  /**
+   * Prepare class prepares a range of chunks, splitting the range in half
+   * until it is a single chunk.
+   */
+  static class Prepare extends RecursiveAction {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The chunks.
+     */
+    private final List<Chunk> chunks;
+
+    /**
+     * First chunk in the range.
+     */
+    private final int from;
+
+    /**
+     * One past the last chunk in the range.
+     */
+    private final int to;
+
+    /**
+     * Constructor for Prepare.
+     *
+     * @param chunks the chunks
+     * @param from first chunk in the range
+     * @param to one past the last chunk in the range
+     */
+    Prepare(List<Chunk> chunks, int from, int to) {
+      this.chunks = chunks;
+      this.from = from;
+      this.to = to;
+    } // Prepare(List, int, int)
+
+    /**
+     * Prepares the range.
+     */
+    @Override
+    protected void compute() {
+      if (to - from <= 1) {
+        if (from < to) {
+          chunks.get(from).prepare();
+        } // if (from)
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new Prepare(chunks, from, mid), new Prepare(chunks, mid, to));
+      } // if (size)
+    } // compute()
+  } // Prepare class
+} // BatchEvaluator class
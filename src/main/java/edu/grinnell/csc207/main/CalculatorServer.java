@@ -0,0 +1,248 @@
+package edu.grinnell.csc207.main;
+
+import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BFRegisterSet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CalculatorServer class serves the InteractiveCalculator protocol over a
+ * local TCP or Unix-domain socket. Each connection is a session with its own
+ * BFCalculator and BFRegisterSet, running on its own thread: a virtual
+ * thread on a JDK that has them, a small-stack platform thread otherwise.
+ *
+ * A client sends one expression, "STORE r" or "QUIT" per line and gets one
+ * line back for each, exactly as InteractiveCalculator would print it, minus
+ * the prompt. Clients may pipeline: replies are only flushed once every
+ * request that has already arrived has been answered.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class CalculatorServer implements AutoCloseable {
+
+  /**
+   * Port used when none is given.
+   */
+  public static final int DEFAULT_PORT = 2070;
+
+  /**
+   * Bytes of buffering in each direction of a session. Sessions are
+   * expected to be many and mostly idle, so this is kept small.
+   */
+  static final int SESSION_BUFFER = 512;
+
+  /**
+   * Stack size asked for when sessions fall back to platform threads.
+   */
+  static final long PLATFORM_STACK_BYTES = 256 * 1024;
+
+  /**
+   * The listening socket.
+   */
+  private final ServerSocketChannel server;
+
+  /**
+   * Where the server listens.
+   */
+  private final SocketAddress address;
+
+  /**
+   * Makes one thread per session.
+   */
+  private final ThreadFactory threads = sessionThreads();
+
+  /**
+   * Open sessions, closed along with the server.
+   */
+  private final Set<SocketChannel> sessions = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Starts listening. Call serve to accept sessions.
+   *
+   * @param address an InetSocketAddress, or a UnixDomainSocketAddress whose
+   *     file does not exist yet
+   * @throws IOException if the socket cannot be opened or bound
+   */
+  public CalculatorServer(SocketAddress address) throws IOException {
+    server = address instanceof UnixDomainSocketAddress
+        ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+        : ServerSocketChannel.open();
+    try {
+      server.bind(address);
+      this.address = server.getLocalAddress();
+    } catch (IOException e) {
+      server.close();
+      throw e;
+    } // try/catch
+  } // CalculatorServer(SocketAddress)
+
+  /**
+   * Returns where the server listens, with the actual port if it was
+   * bound to port 0.
+   *
+   * @return the address
+   */
+  public SocketAddress address() {
+    return address;
+  } // address()
+
+  /**
+   * Returns the number of sessions open right now.
+   *
+   * @return the count
+   */
+  public int sessions() {
+    return sessions.size();
+  } // sessions()
+
+  /**
+   * Accepts sessions until the server is closed.
+   *
+   * @throws IOException if accepting fails for any other reason
+   */
+  public void serve() throws IOException {
+    while (true) {
+      SocketChannel client;
+      try {
+        client = server.accept();
+      } catch (ClosedChannelException e) {
+        return;
+      } // try/catch
+      sessions.add(client);
+      if (!server.isOpen()) {
+        // Closed while accepting, after close() looked at the sessions
+        client.close();
+        return;
+      } // if (closed)
+      threads.newThread(() -> session(client)).start();
+    } // while
+  } // serve()
+
+  /**
+   * Stops accepting, ends every open session, and removes the socket file
+   * of a Unix-domain server.
+   *
+   * @throws IOException if the socket cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    server.close();
+    for (SocketChannel client : sessions) {
+      client.close();
+    } // for (client)
+    if (address instanceof UnixDomainSocketAddress) {
+      Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+    } // if (unix)
+  } // close()
+
+  /**
+   * Runs one session until the client sends QUIT or goes away.
+   *
+   * @param client the connection
+   */
+  void session(SocketChannel client) {
+    BFCalculator calculator = new BFCalculator();
+    BFRegisterSet registers = new BFRegisterSet();
+    try (client;
+        BufferedReader in = new BufferedReader(Channels.newReader(client,
+            StandardCharsets.UTF_8.newDecoder(), SESSION_BUFFER), SESSION_BUFFER);
+        PrintWriter out = new PrintWriter(Channels.newWriter(client,
+            StandardCharsets.UTF_8.newEncoder(), SESSION_BUFFER))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        String input = line.trim();
+        if (input.equalsIgnoreCase("QUIT")) {
+          break;
+        } // if (QUIT)
+        try {
+          if (InteractiveCalculator.processInput(input, calculator, registers, out)) {
+            out.println(calculator.get());
+          } // if (success)
+        } catch (Exception e) {
+          out.println("*** ERROR: An unexpected error occurred. ***");
+        } // try/catch
+        if (!in.ready()) {
+          // Nothing more pipelined behind this request
+          out.flush();
+        } // if (ready)
+      } // while (line)
+    } catch (IOException e) {
+      // The client went away; there is no one left to tell
+    } finally {
+      sessions.remove(client);
+    } // try/catch/finally
+  } // session(SocketChannel)
+
+  /**
+   * Makes the thread factory for sessions: virtual threads when the JDK
+   * has them, found reflectively so the code still builds for Java 17,
+   * and daemon platform threads with small stacks otherwise.
+   *
+   * @return the factory
+   */
+  static ThreadFactory sessionThreads() {
+    try {
+      Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+      Method name = builder.getMethod("name", String.class, long.class);
+      Method factory = builder.getMethod("factory");
+      return (ThreadFactory) factory.invoke(name.invoke(virtual, "session-", 0L));
+    } catch (ReflectiveOperationException e) {
+      AtomicLong count = new AtomicLong();
+      return task -> {
+        Thread thread = new Thread(null, task, "session-" + count.getAndIncrement(),
+            PLATFORM_STACK_BYTES);
+        thread.setDaemon(true);
+        return thread;
+      };
+    } // try/catch
+  } // sessionThreads()
+
+  /**
+   * Main method for the CalculatorServer. With no arguments it listens on
+   * DEFAULT_PORT on the loopback interface; "--port N" picks another port
+   * and "--unix PATH" listens on a Unix-domain socket instead.
+   *
+   * @param args Command-line arguments, as above.
+   */
+  public static void main(String[] args) {
+    PrintWriter output = new PrintWriter(System.out, true);
+    SocketAddress address;
+    if (args.length == 0) {
+      address = new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+    } else if (args.length == 2 && args[0].equals("--port")) {
+      address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+          Integer.parseInt(args[1]));
+    } else if (args.length == 2 && args[0].equals("--unix")) {
+      address = UnixDomainSocketAddress.of(Path.of(args[1]));
+    } else {
+      output.println("Usage: CalculatorServer [--port N | --unix PATH]");
+      return;
+    } // end of if
+    try (CalculatorServer server = new CalculatorServer(address)) {
+      output.println("Listening on " + server.address());
+      server.serve();
+    } catch (IOException e) {
+      output.println(address + ": FAILED [" + e.getMessage() + "]");
+    } // end of try-catch
+  } // main(String[] args)
+} // CalculatorServer class
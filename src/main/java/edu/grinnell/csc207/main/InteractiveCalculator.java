@@ -1,10 +1,18 @@
 package edu.grinnell.csc207.main;
 
-import edu.grinnell.csc207.util.BigFraction;
 import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BFExpression;
+import edu.grinnell.csc207.util.BFExpressionCache;
+import edu.grinnell.csc207.util.BFMappedRegisterSet;
+import edu.grinnell.csc207.util.BFMetrics;
 import edu.grinnell.csc207.util.BFRegisterSet;
+import edu.grinnell.csc207.util.BFRegisters;
+import edu.grinnell.csc207.util.BFResultCache;
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -15,20 +23,60 @@ import java.util.Scanner;
  */
 public class InteractiveCalculator {
 
+  /**
+   * Compiled expressions, shared by every call to processInput.
+   */
+  private static final BFExpressionCache PLANS = new BFExpressionCache();
+
+  /**
+   * Remembered results, or null unless "--cache" was given.
+   */
+  private static BFResultCache results;
+
   /**
    * Main method for the InteractiveCalculator. This method provides a
    * REPL (Read-Eval-Print Loop) interface, allowing users to input fraction
    * calculations interactively until the "QUIT" command is entered.
    * It continuously reads user input from the console, processes the input
    * using BFCalculator and BFRegisterSet, and outputs the result to the console.
+   * With "--registers FILE" the registers live in FILE and are shared with
+   * every other calculator that names the same file. Before that,
+   * "--cache BYTES" remembers results of up to about BYTES, so repeated
+   * expressions are not computed again until a register they read changes.
    *
-   * @param args Command-line arguments, not used in this program.
+   * @param args Command-line arguments: "[--cache BYTES] [--registers FILE]".
    */
   public static void main(String[] args) {
+    PrintWriter output = new PrintWriter(System.out, true);
+    if (args.length > 0 && args[0].equals("--cache")) {
+      try {
+        results = new BFResultCache(Long.parseLong(args[1]));
+      } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+        output.println("Usage: InteractiveCalculator [--cache BYTES] [--registers FILE]");
+        return;
+      } // end of try-catch
+      args = Arrays.copyOfRange(args, 2, args.length);
+    } // end of if
+    if (args.length == 2 && args[0].equals("--registers")) {
+      try (BFMappedRegisterSet shared = new BFMappedRegisterSet(Path.of(args[1]))) {
+        repl(shared, output);
+      } catch (IOException e) {
+        output.println(args[1] + ": FAILED [" + e.getMessage() + "]");
+      } // end of try-catch
+    } else {
+      repl(new BFRegisterSet(), output);
+    } // end of if
+  } // main(String[] args)
+
+  /**
+   * Reads and runs lines from standard input until "QUIT".
+   *
+   * @param registerSet the BFRegisterSet to use
+   * @param output the PrintWriter for output
+   */
+  private static void repl(BFRegisters registerSet, PrintWriter output) {
     Scanner scanner = new Scanner(System.in);
     BFCalculator calculator = new BFCalculator();
-    BFRegisterSet registerSet = new BFRegisterSet();
-    PrintWriter output = new PrintWriter(System.out, true);
     String input;
 
     // REPL loop for interactive input
@@ -49,10 +97,13 @@ public class InteractiveCalculator {
       } // end of if loop
     } // end of while
     scanner.close();
-  } // main(String[] args)
+  } // repl(BFRegisters, PrintWriter)
 
   /**
    * Processes the input command and performs the corresponding operation.
+   * The line is compiled once and the compiled plan is reused whenever the
+   * same line comes back. Package-private so that CalculatorServer speaks
+   * exactly the same protocol.
    *
    * @param input the input command
    * @param calculator the BFCalculator to use
@@ -60,103 +111,55 @@ public class InteractiveCalculator {
    * @param output the PrintWriter for output
    * @return true if the input is processed successfully, false otherwise
    */
-  private static boolean processInput(
-      String input, BFCalculator calculator, BFRegisterSet registerSet, PrintWriter output) {
+  static boolean processInput(
+      String input, BFCalculator calculator, BFRegisters registerSet, PrintWriter output) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      try {
+        return evaluate(input, calculator, registerSet, output);
+      } catch (RuntimeException e) {
+        BFMetrics.error(e);
+        throw e;
+      } finally {
+        BFMetrics.time(BFMetrics.Op.PROCESS_INPUT, start);
+      } // try/catch/finally
+    } // if (ENABLED)
+    return evaluate(input, calculator, registerSet, output);
+  } // processInput
 
-    // Split the input into tokens (space-separated)
-    String[] tokens = input.split(" ");
-    if (tokens.length == 0 || tokens[0].isEmpty()) {
+  /**
+   * Does the work of processInput.
+   *
+   * @param input the input command
+   * @param calculator the BFCalculator to use
+   * @param registerSet the BFRegisterSet to use
+   * @param output the PrintWriter for output
+   * @return true if the input is processed successfully, false otherwise
+   */
+  private static boolean evaluate(
+      String input, BFCalculator calculator, BFRegisters registerSet, PrintWriter output) {
+    BFExpression expression;
+    try {
+      // The result cache compiles and runs in one step
+      expression = results != null
+          ? results.execute(input, calculator, registerSet)
+          : PLANS.compile(input);
+    } catch (IllegalArgumentException e) {
+      if (BFMetrics.ENABLED) {
+        BFMetrics.error(e);
+      } // if (ENABLED)
       output.println("*** ERROR [Invalid expression] ***");
       return false;
+    } // end of try-catch
+    if (results == null) {
+      expression.execute(calculator, registerSet);
     } // end of if
 
-    // Handle the STORE command
-    if (tokens[0].equalsIgnoreCase("STORE")) {
-      if (tokens.length != 2 || tokens[1].length() != 1) {
-        output.println("*** ERROR [Invalid expression] ***");
-        return false;
-      } // end of if
-      char register = tokens[1].charAt(0);
-      BigFraction lastValue = calculator.get();
-      registerSet.store(register, lastValue);
+    // Do not print the calculator state after STORE
+    if (expression.isStore()) {
       output.println("STORED");
-      return false; // Do not print the calculator state after STORE
-    } // end of if
-
-    // Parse and compute the expression
-    BigFraction result = parseValue(tokens[0], registerSet);
-
-    // If the input is just a single fraction or register
-    if (tokens.length == 1) {
-      calculator.clear();
-      calculator.add(result);
-      return true;
+      return false;
     } // end of if
-
-    // Process the rest of the tokens
-    int i = 1;
-    while (i < tokens.length) {
-      String operator = tokens[i];
-      i++;
-
-      if (i >= tokens.length) {
-        output.println("*** ERROR [Invalid expression] ***");
-        return false;
-      } // end of if
-
-      BigFraction value = parseValue(tokens[i], registerSet);
-      result = applyOperator(result, value, operator, output);
-      if (result == null) {
-        return false; // Error occurred during operator application
-      } // Result is null
-      i++;
-    } // end of while
-
-    // Update calculator with the final result
-    calculator.clear();
-    calculator.add(result);
     return true;
-  } // processInput
-
-  /**
-   * Parses a token to return either a stored value from the register set
-   * or a new BigFraction object based on the token.
-   *
-   * @param token the string representing the value or register
-   * @param registerSet the BFRegisterSet to retrieve values from
-   * @return the BigFraction corresponding to the token
-   */
-  private static BigFraction parseValue(String token, BFRegisterSet registerSet) {
-    if (Character.isLetter(token.charAt(0))) {
-      return registerSet.get(token.charAt(0));
-    } else {
-      return new BigFraction(token);
-    } // end of if
-  } // parseValue
-
-  /**
-   * Applies the operator between two BigFraction values.
-   *
-   * @param result the current result of the calculation
-   * @param value the next value to apply the operator to
-   * @param operator the operator in the expression (+, -, *, /)
-   * @return the new result after applying the operator, or null if an invalid operator
-   * @param output the error message
-   */
-  private static BigFraction applyOperator(BigFraction result, BigFraction
-      value, String operator, PrintWriter output) {
-    switch (operator) {
-      case "+":
-        return result.add(value);
-      case "-":
-        return result.subtract(value);
-      case "*":
-        return result.multiply(value);
-      case "/":
-        return result.divide(value);
-      default:
-        output.println("*** ERROR [Invalid expression] ***");
-        return null;
-    } // end of switch
-  } // applyOperator
+  } // evaluate(String, BFCalculator, BFRegisters, PrintWriter)
 } // InteractiveCalculator class
@@ -1,10 +1,28 @@
 package edu.grinnell.csc207.main;
 
-import edu.grinnell.csc207.util.BigFraction;
 import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BFExpression;
+import edu.grinnell.csc207.util.BFExpressionCache;
+import edu.grinnell.csc207.util.BFMappedRegisterSet;
+import edu.grinnell.csc207.util.BFMetrics;
 import edu.grinnell.csc207.util.BFRegisterSet;
+import edu.grinnell.csc207.util.BFRegisters;
+import edu.grinnell.csc207.util.BFResultCache;
+import edu.grinnell.csc207.util.BFScriptExecutor;
+import edu.grinnell.csc207.util.BigFraction;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * QuickCalculator class allows processing mathematical expressions
@@ -14,119 +32,217 @@ import java.io.PrintWriter;
  */
 public class QuickCalculator {
 
+  /**
+   * Compiled expressions, shared by every call to processInput.
+   */
+  private static final BFExpressionCache PLANS = new BFExpressionCache();
+
+  /**
+   * Remembered results, or null unless "--cache" was given.
+   */
+  private static BFResultCache results;
+
 /**
  * Main method for the QuickCalculator. It processes command-line
  * arguments as fraction calculations and outputs the results.
  * Invalid expressions are handled and reported.
+ * With "--batch FILE [OUTPUT]" it instead runs every line of FILE,
+ * writing the results to OUTPUT or standard output. A leading
+ * "--registers FILE" keeps the registers in FILE, shared with every other
+ * calculator that names the same file. Before that, "--cache BYTES"
+ * remembers results of up to about BYTES, so repeated expressions are
+ * not computed again until a register they read changes.
  *
  * @param args Command-line arguments representing expressions to calculate.
  */
   public static void main(String[] args) {
     BFCalculator calculator = new BFCalculator();
-    BFRegisterSet registerSet = new BFRegisterSet();
     PrintWriter output = new PrintWriter(System.out, true);
 
-    for (String expression : args) {
+    if (args.length > 0 && args[0].equals("--cache")) {
       try {
-        processInput(expression, calculator, registerSet, output);
-      } catch (Exception e) {
-        output.println(expression + ": FAILED [" + e.getMessage() + "]");
+        results = new BFResultCache(Long.parseLong(args[1]));
+      } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+        output.println("Usage: QuickCalculator --cache BYTES ...");
+        return;
       } // end of try-catch
-    } // end of for loop
+      args = Arrays.copyOfRange(args, 2, args.length);
+    } // end of if
+    if (args.length > 0 && args[0].equals("--registers")) {
+      if (args.length < 2) {
+        output.println("Usage: QuickCalculator --registers FILE ...");
+        return;
+      } // end of if
+      try (BFMappedRegisterSet shared = new BFMappedRegisterSet(Path.of(args[1]))) {
+        run(Arrays.copyOfRange(args, 2, args.length), calculator, shared, output);
+      } catch (IOException e) {
+        output.println(args[1] + ": FAILED [" + e.getMessage() + "]");
+      } // end of try-catch
+      return;
+    } // end of if
+    run(args, calculator, new BFRegisterSet(), output);
   } // main(String[] args)
 
   /**
-   * Processes a single input expression and performs the corresponding
-   * operation based on the tokens extracted.
+   * Runs the expressions or batch file named by the arguments.
    *
-   * @param input the input expression
+   * @param args the arguments, without any "--registers FILE"
    * @param calculator the BFCalculator to use for computations
    * @param registerSet the BFRegisterSet to store or retrieve values
    * @param output the PrintWriter to output results
    */
-  private static void processInput(
-      String input, BFCalculator calculator, BFRegisterSet registerSet, PrintWriter output) {
-
-    // Split the input by spaces for parsing tokens
-    String[] tokens = input.split(" ");
-    if (tokens.length == 0 || tokens[0].isEmpty()) {
-      output.println("Invalid expression");
-    } // end of if
-
-    // Handle the STORE command
-    if (tokens[0].equalsIgnoreCase("STORE")) {
-      if (tokens.length != 2 || tokens[1].length() != 1) {
-        output.println("Invalid STORE command");
+  static void run(String[] args, BFCalculator calculator, BFRegisters registerSet,
+      PrintWriter output) {
+    if (args.length > 0 && args[0].equals("--batch")) {
+      if (args.length < 2 || args.length > 3) {
+        output.println("Usage: QuickCalculator --batch FILE [OUTPUT]");
+        return;
       } // end of if
-      char register = tokens[1].charAt(0);
-      BigFraction lastValue = calculator.get();
-      registerSet.store(register, lastValue);
-      output.println("STORED");
+      try {
+        runBatch(Path.of(args[1]), args.length == 3 ? Path.of(args[2]) : null,
+            calculator, registerSet);
+      } catch (IOException e) {
+        output.println(args[1] + ": FAILED [" + e.getMessage() + "]");
+      } // end of try-catch
       return;
     } // end of if
 
-    // Parse and compute the expression
-    BigFraction result = parseValue(tokens[0], registerSet);
-
-    int i = 1;
-    while (i < tokens.length) {
-      String operator = tokens[i];
-      i++;
-
-      if (i >= tokens.length) {
-        output.println("Invalid expression");
-      } // end of if
+    if (results == null && args.length > 1) {
+      runScript(args, calculator, registerSet, output);
+      return;
+    } // end of if
+    for (String expression : args) {
+      try {
+        processInput(expression, calculator, registerSet, output);
+      } catch (Exception e) {
+        output.println(expression + ": FAILED [" + e.getMessage() + "]");
+      } // end of try-catch
+    } // end of for loop
+  } // run(String[], BFCalculator, BFRegisters, PrintWriter)
 
-      BigFraction value = parseValue(tokens[i], registerSet);
-      result = applyOperator(result, value, operator, calculator, output);
-      i++;
-    } // end of while
+  /**
+   * Runs several expressions as one script, running the ones that do not
+   * depend on each other in parallel, and prints what running them one by
+   * one would print.
+   *
+   * @param args the expressions
+   * @param calculator the BFCalculator to use for computations
+   * @param registerSet the BFRegisterSet to store or retrieve values
+   * @param output the PrintWriter to output results
+   */
+  static void runScript(String[] args, BFCalculator calculator, BFRegisters registerSet,
+      PrintWriter output) {
+    BFExpression[] lines = new BFExpression[args.length];
+    RuntimeException[] errors = new RuntimeException[args.length];
+    for (int i = 0; i < args.length; i++) {
+      try {
+        lines[i] = PLANS.compile(args[i]);
+      } catch (RuntimeException e) {
+        if (BFMetrics.ENABLED) {
+          BFMetrics.error(e);
+        } // if (ENABLED)
+        errors[i] = e;
+      } // try/catch
+    } // for (i)
+    BigFraction[] values = new BFScriptExecutor(ForkJoinPool.commonPool())
+        .run(lines, calculator, registerSet, errors);
+    for (int i = 0; i < args.length; i++) {
+      if (errors[i] != null) {
+        output.println(args[i] + ": FAILED [" + errors[i].getMessage() + "]");
+      } else if (lines[i].isStore()) {
+        output.println("STORED");
+      } else {
+        output.append(args[i]).append(" -> ");
+        try {
+          values[i].appendTo(output);
+        } catch (IOException e) {
+          // PrintWriter records its own errors instead of throwing
+          throw new UncheckedIOException(e);
+        } // try/catch
+        output.println();
+      } // if (errors)
+    } // for (i)
+  } // runScript(String[], BFCalculator, BFRegisters, PrintWriter)
 
-    calculator.clear();
-    calculator.add(result);
-    output.println(input + " -> " + result);
-  } // processInput
+  /**
+   * Runs every line of a file through a BatchEvaluator.
+   *
+   * @param input the file of lines
+   * @param target the output file, or null for standard output
+   * @param calculator the BFCalculator to use for computations
+   * @param registerSet the BFRegisterSet to store or retrieve values
+   * @throws IOException if a file cannot be read or written
+   */
+  static void runBatch(Path input, Path target, BFCalculator calculator,
+      BFRegisters registerSet) throws IOException {
+    if (target == null) {
+      // Standard output stays open for whatever is printed after the batch
+      WritableByteChannel out = Channels.newChannel(new FileOutputStream(FileDescriptor.out));
+      new BatchEvaluator(calculator, registerSet, ForkJoinPool.commonPool(), out).run(input);
+      return;
+    } // if (target)
+    try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      new BatchEvaluator(calculator, registerSet, ForkJoinPool.commonPool(), out).run(input);
+    } // try
+  } // runBatch(Path, Path, BFCalculator, BFRegisters)
 
   /**
-   * Parses a token to return either a stored value from the register set
-   * or a new BigFraction object based on the token.
+   * Processes a single input expression and performs the corresponding
+   * operation. The line is compiled once and the compiled plan is reused
+   * whenever the same line comes back. Package-private so that the
+   * benchmarks can drive it directly.
    *
-   * @param token the string representing the value or register
-   * @param registerSet the BFRegisterSet to retrieve values from
-   * @return the BigFraction corresponding to the token
+   * @param input the input expression
+   * @param calculator the BFCalculator to use for computations
+   * @param registerSet the BFRegisterSet to store or retrieve values
+   * @param output the PrintWriter to output results
    */
-  private static BigFraction parseValue(String token, BFRegisterSet registerSet) {
-    if (Character.isLetter(token.charAt(0))) {
-      return registerSet.get(token.charAt(0));
-    } else {
-      return new BigFraction(token);
-    } // end of if-else
-  } // parseValue
+  static void processInput(
+      String input, BFCalculator calculator, BFRegisters registerSet, PrintWriter output) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      try {
+        evaluate(input, calculator, registerSet, output);
+      } catch (RuntimeException e) {
+        BFMetrics.error(e);
+        throw e;
+      } finally {
+        BFMetrics.time(BFMetrics.Op.PROCESS_INPUT, start);
+      } // try/catch/finally
+      return;
+    } // if (ENABLED)
+    evaluate(input, calculator, registerSet, output);
+  } // processInput
 
   /**
-   * Applies the operator between two BigFraction values.
+   * Does the work of processInput.
    *
-   * @param result the current result of the calculation
-   * @param value the next value to apply the operator to
-   * @param operator the operator in the expression (+, -, *, /)
-   * @param calculator the BFCalculator to use for the operation
-   * @param output for illegal output
-   * @return the new result after applying the operator
+   * @param input the input expression
+   * @param calculator the BFCalculator to use for computations
+   * @param registerSet the BFRegisterSet to store or retrieve values
+   * @param output the PrintWriter to output results
    */
-  private static BigFraction applyOperator(BigFraction result, BigFraction
-      value, String operator, BFCalculator calculator, PrintWriter output) {
-    switch (operator) {
-      case "+":
-        return result.add(value);
-      case "-":
-        return result.subtract(value);
-      case "*":
-        return result.multiply(value);
-      case "/":
-        return result.divide(value);
-      default:
-        output.println("Invalid operator: " + operator);
-        return result;
-    } // end of switch
-  } // applyOperator
+  private static void evaluate(
+      String input, BFCalculator calculator, BFRegisters registerSet, PrintWriter output) {
+    BFExpression expression;
+    if (results != null) {
+      expression = results.execute(input, calculator, registerSet);
+    } else {
+      expression = PLANS.compile(input);
+      expression.execute(calculator, registerSet);
+    } // if (results)
+    if (expression.isStore()) {
+      output.println("STORED");
+    } else {
+      output.append(input).append(" -> ");
+      try {
+        calculator.get().appendTo(output);
+      } catch (IOException e) {
+        // PrintWriter records its own errors instead of throwing
+        throw new UncheckedIOException(e);
+      } // try/catch
+      output.println();
+    } // if (isStore)
+  } // evaluate(String, BFCalculator, BFRegisters, PrintWriter)
 } // QuickCalculator class
@@ -1,31 +1,140 @@
 package edu.grinnell.csc207.util;
 
+import java.math.BigInteger;
+
 /**
  * BFCalculator class simulates a basic calculator that operates on BigFractions.
  * It stores the last computed value and provides methods for arithmetic operations.
  *
+ * In accumulator mode the calculator keeps a mutable numerator/denominator
+ * pair instead of a reduced BigFraction. Sums are brought over the least
+ * common denominator, products are formed without cancelling, and the pair
+ * is only reduced when get() is called or when it grows past a size
+ * threshold. The pair lives in two longs until it overflows.
+ *
+ * Outside accumulator mode each result is reduced according to the
+ * calculator's NormalizationPolicy, or the calling thread's if none is set.
+ *
+ * A calculator given a maximum denominator approximates instead of being
+ * exact: each result is replaced by the closest fraction whose denominator
+ * fits (see BigFraction.limitDenominator), which keeps long computations
+ * from slowing down as their denominators grow. Each step adds an error of
+ * at most 1/(2 * maxDenominator). In accumulator mode the bound is applied
+ * whenever the value is read.
+ *
  * Author: Slok Rajbhandari
  */
 public class BFCalculator {
 
+  /**
+   * Default bit length of the accumulated denominator that triggers a reduction.
+   */
+  public static final int DEFAULT_NORMALIZE_BITS = 512;
+
 /**
  * BigFraction type initialized to store the last value of the fraction.
+ * In accumulator mode this caches the reduced pair, or is null when the
+ * pair has changed since the last get().
  */
   private BigFraction lastValue;
 
+  /**
+   * True when the calculator runs in accumulator mode.
+   */
+  private final boolean accumulating;
+
+  /**
+   * Bit length past which the accumulated pair is reduced.
+   */
+  private final int normalizeBits;
+
+  /**
+   * True when the accumulated pair lives in bigNum and bigDen.
+   */
+  private boolean big;
+
+  /**
+   * Accumulated numerator while the pair fits in longs.
+   */
+  private long accNum;
+
+  /**
+   * Accumulated denominator while the pair fits in longs. Always positive.
+   */
+  private long accDen;
+
+  /**
+   * Accumulated numerator once the pair has overflowed.
+   */
+  private BigInteger bigNum;
+
+  /**
+   * Accumulated denominator once the pair has overflowed. Always positive.
+   */
+  private BigInteger bigDen;
+
+  /**
+   * Normalization policy for results, or null to use the thread's policy.
+   */
+  private NormalizationPolicy policy;
+
+  /**
+   * Largest denominator a result may keep, or null for exact results.
+   */
+  private BigInteger maxDenominator;
+
   /**
    * Constructor for BFCalculator. Initializes the lastValue to zero.
    */
   public BFCalculator() {
-    lastValue = new BigFraction("0");
+    this(false, DEFAULT_NORMALIZE_BITS);
   } // BFCalculator()
 
+  /**
+   * Constructor for BFCalculator that can run in accumulator mode.
+   *
+   * @param accumulate true to keep an unreduced numerator/denominator pair
+   */
+  public BFCalculator(boolean accumulate) {
+    this(accumulate, DEFAULT_NORMALIZE_BITS);
+  } // BFCalculator(boolean)
+
+  /**
+   * Constructor for BFCalculator with an explicit normalization threshold.
+   *
+   * @param accumulate true to keep an unreduced numerator/denominator pair
+   * @param normalizeBits denominator bit length past which the pair is reduced
+   */
+  public BFCalculator(boolean accumulate, int normalizeBits) {
+    if (normalizeBits < 1) {
+      throw new IllegalArgumentException("Invalid threshold: " + normalizeBits);
+    } // if (normalizeBits)
+    this.accumulating = accumulate;
+    this.normalizeBits = normalizeBits;
+    clear();
+  } // BFCalculator(boolean, int)
+
   /**
    * Gets the last computed value from the calculator.
    *
    * @return the last computed BigFraction
    */
   public BigFraction get() {
+    if (lastValue == null) {
+      if (big) {
+        normalizeBig();
+        lastValue = big
+            ? BigFraction.fromReduced(bigNum, bigDen)
+            : BigFraction.reduced(accNum, accDen);
+      } else {
+        lastValue = BigFraction.reduced(accNum, accDen);
+        accNum = lastValue.smallNumerator();
+        accDen = lastValue.smallDenominator();
+      } // if (big)
+      if (maxDenominator != null) {
+        approximateAccumulator();
+      } // if (maxDenominator)
+    } // if (lastValue)
     return lastValue;
   } // get()
 
@@ -35,7 +144,11 @@ public class BFCalculator {
    * @param val the BigFraction to add
    */
   public void add(BigFraction val) {
-    lastValue = lastValue.add(val);
+    if (accumulating) {
+      accumulateSum(val, false);
+    } else {
+      lastValue = bound(lastValue.add(val, policy()));
+    } // if (accumulating)
   } // add(BigFraction val)
 
   /**
@@ -44,7 +157,11 @@ public class BFCalculator {
    * @param val the BigFraction to subtract
    */
   public void subtract(BigFraction val) {
-    lastValue = lastValue.subtract(val);
+    if (accumulating) {
+      accumulateSum(val, true);
+    } else {
+      lastValue = bound(lastValue.subtract(val, policy()));
+    } // if (accumulating)
   } // subtract(BigFraction val)
 
   /**
@@ -53,7 +170,11 @@ public class BFCalculator {
    * @param val the BigFraction to multiply
    */
   public void multiply(BigFraction val) {
-    lastValue = lastValue.multiply(val);
+    if (accumulating) {
+      accumulateProduct(val, false);
+    } else {
+      lastValue = bound(lastValue.multiply(val, policy()));
+    } // if (accumulating)
   } // multiply(BigFraction val)
 
   /**
@@ -62,13 +183,308 @@ public class BFCalculator {
    * @param val the BigFraction to divide by
    */
   public void divide(BigFraction val) {
-    lastValue = lastValue.divide(val);
+    if (accumulating) {
+      if (val.signum() == 0) {
+        throw new ArithmeticException("Denominator cannot be zero");
+      } // if (val)
+      accumulateProduct(val, true);
+    } else {
+      lastValue = bound(lastValue.divide(val, policy()));
+    } // if (accumulating)
   } // divide(BigFraction val)
 
   /**
    * Clears the calculator by resetting the last computed value to zero.
    */
   public void clear() {
-    lastValue = new BigFraction("0");
+    lastValue = BigFraction.ZERO;
+    big = false;
+    accNum = 0;
+    accDen = 1;
+    bigNum = null;
+    bigDen = null;
   } // clear()
+
+  /**
+   * Sets the normalization policy used for results outside accumulator mode.
+   *
+   * @param policy the policy, or null to follow the calling thread's policy
+   */
+  public void setNormalizationPolicy(NormalizationPolicy policy) {
+    this.policy = policy;
+  } // setNormalizationPolicy(NormalizationPolicy)
+
+  /**
+   * Returns the normalization policy in effect for this calculator.
+   *
+   * @return the calculator's policy, or the calling thread's if none is set
+   */
+  public NormalizationPolicy policy() {
+    return policy == null ? NormalizationPolicy.current() : policy;
+  } // policy()
+
+  /**
+   * Sets the largest denominator results may keep. Each later result is
+   * replaced by the closest fraction with a denominator no larger.
+   *
+   * @param maxDenominator the bound, positive, or null for exact results
+   */
+  public void setMaxDenominator(BigInteger maxDenominator) {
+    if (maxDenominator != null && maxDenominator.signum() <= 0) {
+      throw new IllegalArgumentException("Invalid maximum denominator: " + maxDenominator);
+    } // if (maxDenominator)
+    this.maxDenominator = maxDenominator;
+  } // setMaxDenominator(BigInteger)
+
+  /**
+   * Sets the largest bit length a result's denominator may have, so each
+   * later result is within 2^-bits of the exact one.
+   *
+   * @param bits the bit length, positive
+   */
+  public void setMaxDenominatorBits(int bits) {
+    if (bits < 1) {
+      throw new IllegalArgumentException("Invalid bit length: " + bits);
+    } // if (bits)
+    setMaxDenominator(BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE));
+  } // setMaxDenominatorBits(int)
+
+  /**
+   * Returns the largest denominator results may keep.
+   *
+   * @return the bound, or null if results are exact
+   */
+  public BigInteger maxDenominator() {
+    return maxDenominator;
+  } // maxDenominator()
+
+  /**
+   * Returns what get() would return after clear() and add(value), without
+   * changing the calculator. Safe to call from any thread.
+   *
+   * @param value the value to load
+   * @param threadPolicy the policy to use if the calculator has none, as
+   *   policy() would return on the thread that would call add
+   * @return the value the calculator would show
+   */
+  BigFraction loaded(BigFraction value, NormalizationPolicy threadPolicy) {
+    BFCalculator scratch = new BFCalculator(accumulating, normalizeBits);
+    scratch.policy = threadPolicy;
+    scratch.maxDenominator = maxDenominator;
+    scratch.add(value);
+    return scratch.get();
+  } // loaded(BigFraction, NormalizationPolicy)
+
+  /**
+   * Applies the maximum denominator, if there is one, to a result.
+   *
+   * @param value the exact result
+   * @return the value to keep
+   */
+  private BigFraction bound(BigFraction value) {
+    return maxDenominator == null ? value : value.limitDenominator(maxDenominator);
+  } // bound(BigFraction)
+
+  /**
+   * Replaces a freshly read accumulator value, and the pair behind it, by
+   * its approximation.
+   */
+  private void approximateAccumulator() {
+    BigFraction approximation = lastValue.limitDenominator(maxDenominator);
+    if (approximation != lastValue) {
+      lastValue = approximation;
+      big = !approximation.isSmall();
+      if (big) {
+        bigNum = approximation.numerator();
+        bigDen = approximation.denominator();
+      } else {
+        accNum = approximation.smallNumerator();
+        accDen = approximation.smallDenominator();
+      } // if (big)
+    } // if (approximation)
+  } // approximateAccumulator()
+
+  /**
+   * Tells whether this calculator runs in accumulator mode.
+   *
+   * @return true in accumulator mode
+   */
+  public boolean isAccumulating() {
+    return accumulating;
+  } // isAccumulating()
+
+  /**
+   * Adds val (or -val) into the accumulated pair over the least common
+   * denominator.
+   *
+   * @param val the value to add
+   * @param negate true to subtract instead
+   */
+  private void accumulateSum(BigFraction val, boolean negate) {
+    lastValue = null;
+    if (!big && val.isSmall()) {
+      long n = negate ? -val.smallNumerator() : val.smallNumerator();
+      long d = val.smallDenominator();
+      if (addLongs(n, d)) {
+        return;
+      } // if (addLongs)
+      normalizeLongs();
+      if (addLongs(n, d)) {
+        return;
+      } // if (addLongs)
+    } // if (small)
+    promote();
+    BigInteger n = negate ? val.numerator().negate() : val.numerator();
+    BigInteger d = val.denominator();
+    if (bigDen.equals(d)) {
+      bigNum = bigNum.add(n);
+    } else {
+      BigInteger g = bigDen.gcd(d);
+      BigInteger dg = d.divide(g);
+      bigNum = bigNum.multiply(dg).add(n.multiply(bigDen.divide(g)));
+      bigDen = bigDen.multiply(dg);
+    } // if (bigDen)
+    checkSize();
+  } // accumulateSum(BigFraction, boolean)
+
+  /**
+   * Multiplies the accumulated pair by val, or by its reciprocal.
+   *
+   * @param val the value to multiply by
+   * @param reciprocal true to divide instead
+   */
+  private void accumulateProduct(BigFraction val, boolean reciprocal) {
+    lastValue = null;
+    if (!big && val.isSmall()) {
+      long n = reciprocal ? val.smallDenominator() : val.smallNumerator();
+      long d = reciprocal ? val.smallNumerator() : val.smallDenominator();
+      if (multiplyLongs(n, d)) {
+        return;
+      } // if (multiplyLongs)
+      normalizeLongs();
+      if (multiplyLongs(n, d)) {
+        return;
+      } // if (multiplyLongs)
+    } // if (small)
+    promote();
+    BigInteger n = reciprocal ? val.denominator() : val.numerator();
+    BigInteger d = reciprocal ? val.numerator() : val.denominator();
+    if (d.signum() < 0) {
+      n = n.negate();
+      d = d.negate();
+    } // if (d)
+    bigNum = bigNum.multiply(n);
+    bigDen = bigDen.multiply(d);
+    checkSize();
+  } // accumulateProduct(BigFraction, boolean)
+
+  /**
+   * Tries to add n/d to the long pair.
+   *
+   * @param n the numerator
+   * @param d the denominator, positive
+   * @return false, leaving the pair untouched, if the result would overflow
+   */
+  private boolean addLongs(long n, long d) {
+    try {
+      long sum;
+      long den;
+      if (accDen == d) {
+        sum = Math.addExact(accNum, n);
+        den = d;
+      } else {
+        long g = BigFraction.gcd(accDen, d);
+        long dg = d / g;
+        sum = Math.addExact(Math.multiplyExact(accNum, dg), Math.multiplyExact(n, accDen / g));
+        den = Math.multiplyExact(accDen, dg);
+      } // if (accDen)
+      return commitLongs(sum, den);
+    } catch (ArithmeticException overflow) {
+      return false;
+    } // try/catch
+  } // addLongs(long, long)
+
+  /**
+   * Tries to multiply the long pair by n/d.
+   *
+   * @param n the numerator, never Long.MIN_VALUE
+   * @param d the denominator, non-zero and never Long.MIN_VALUE
+   * @return false, leaving the pair untouched, if the result would overflow
+   */
+  private boolean multiplyLongs(long n, long d) {
+    if (d < 0) {
+      n = -n;
+      d = -d;
+    } // if (d)
+    try {
+      return commitLongs(Math.multiplyExact(accNum, n), Math.multiplyExact(accDen, d));
+    } catch (ArithmeticException overflow) {
+      return false;
+    } // try/catch
+  } // multiplyLongs(long, long)
+
+  /**
+   * Stores a new long pair unless its numerator is Long.MIN_VALUE, which
+   * the pair never holds so that it can always be negated.
+   *
+   * @param n the new numerator
+   * @param d the new denominator
+   * @return true if the pair was stored
+   */
+  private boolean commitLongs(long n, long d) {
+    if (n == Long.MIN_VALUE) {
+      return false;
+    } // if (n)
+    accNum = n;
+    accDen = d;
+    return true;
+  } // commitLongs(long, long)
+
+  /**
+   * Reduces the long pair in place.
+   */
+  private void normalizeLongs() {
+    long g = BigFraction.gcd(Math.abs(accNum), accDen);
+    accNum /= g;
+    accDen /= g;
+  } // normalizeLongs()
+
+  /**
+   * Moves the long pair into the BigInteger pair, if it is not already there.
+   */
+  private void promote() {
+    if (!big) {
+      bigNum = BigInteger.valueOf(accNum);
+      bigDen = BigInteger.valueOf(accDen);
+      big = true;
+    } // if (big)
+  } // promote()
+
+  /**
+   * Reduces the BigInteger pair once its denominator passes the threshold.
+   */
+  private void checkSize() {
+    if (bigDen.bitLength() > normalizeBits) {
+      normalizeBig();
+    } // if (bitLength)
+  } // checkSize()
+
+  /**
+   * Reduces the BigInteger pair in place, moving it back into longs if it fits.
+   */
+  private void normalizeBig() {
+    BigInteger g = bigNum.gcd(bigDen);
+    if (!g.equals(BigInteger.ONE)) {
+      bigNum = bigNum.divide(g);
+      bigDen = bigDen.divide(g);
+    } // if (g)
+    if (bigNum.bitLength() < Long.SIZE && bigDen.bitLength() < Long.SIZE
+        && bigNum.longValue() != Long.MIN_VALUE) {
+      accNum = bigNum.longValue();
+      accDen = bigDen.longValue();
+      bigNum = null;
+      bigDen = null;
+      big = false;
+    } // if (bitLength)
+  } // normalizeBig()
 } // BFCalculator class
@@ -0,0 +1,319 @@
+package edu.grinnell.csc207.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * BFCodec class reads and writes BigFractions in a compact binary form.
+ *
+ * Every value starts with a tag byte:
+ *
+ *   0  the numerator as a zigzag varint, then the denominator as a varint;
+ *      used whenever both fit in a long, so every value has one encoding
+ *   1  the numerator's length in bytes as a varint, then its big-endian
+ *      two's-complement bytes, then the same for the denominator
+ *
+ * Varints are little-endian base 128, seven bits a byte with the high bit
+ * set on every byte but the last. A list of values is its count as a varint
+ * followed by the values. Decoding never goes through decimal text, and
+ * does not reduce values again: it rejects any that are not in lowest terms
+ * over a positive denominator, as written here, so bad bytes can never
+ * become an unreduced BigFraction. For tag 1 that check is a full gcd of
+ * the parts, which on large values costs about as much as the parsing it
+ * replaces; tag 0 values only pay for a gcd of two longs.
+ *
+ * Author: Slok Rajbhandari
+ */
+public final class BFCodec {
+
+  /**
+   * Tag for a value whose parts fit in a long.
+   */
+  static final byte SMALL = 0;
+
+  /**
+   * Tag for a value with BigInteger parts.
+   */
+  static final byte BIG = 1;
+
+  /**
+   * Hidden constructor; this class only has static helpers.
+   */
+  private BFCodec() {
+  } // BFCodec()
+
+  /**
+   * Returns how many bytes write will use for a value.
+   *
+   * @param value the value
+   * @return the encoded size
+   */
+  public static int encodedSize(BigFraction value) {
+    if (value.isSmall()) {
+      return 1 + varintSize(zigzag(value.smallNumerator())) + varintSize(value.smallDenominator());
+    } else if (fitsSmall(value)) {
+      return 1 + varintSize(zigzag(value.numerator().longValue()))
+          + varintSize(value.denominator().longValue());
+    } // if (small)
+    int num = value.numerator().bitLength() / 8 + 1;
+    int den = value.denominator().bitLength() / 8 + 1;
+    return 1 + varintSize(num) + num + varintSize(den) + den;
+  } // encodedSize(BigFraction)
+
+  /**
+   * Writes a value at the buffer's position.
+   *
+   * @param value the value
+   * @param out the buffer
+   * @throws java.nio.BufferOverflowException if the value does not fit
+   */
+  public static void write(BigFraction value, ByteBuffer out) {
+    if (value.isSmall()) {
+      out.put(SMALL);
+      putVarint(out, zigzag(value.smallNumerator()));
+      putVarint(out, value.smallDenominator());
+    } else if (fitsSmall(value)) {
+      out.put(SMALL);
+      putVarint(out, zigzag(value.numerator().longValue()));
+      putVarint(out, value.denominator().longValue());
+    } else {
+      byte[] num = value.numerator().toByteArray();
+      byte[] den = value.denominator().toByteArray();
+      out.put(BIG);
+      putVarint(out, num.length);
+      out.put(num);
+      putVarint(out, den.length);
+      out.put(den);
+    } // if (small)
+  } // write(BigFraction, ByteBuffer)
+
+  /**
+   * Tells whether a value kept in BigIntegers, such as one that was reduced
+   * lazily, still has reduced parts that fit the small encoding.
+   *
+   * @param value the value, not isSmall()
+   * @return true if it is written with tag 0
+   */
+  private static boolean fitsSmall(BigFraction value) {
+    BigInteger num = value.numerator();
+    return num.bitLength() < Long.SIZE && num.longValue() != Long.MIN_VALUE
+        && value.denominator().bitLength() < Long.SIZE;
+  } // fitsSmall(BigFraction)
+
+  /**
+   * Reads a value at the buffer's position. A tag 1 value is checked with a
+   * full gcd of its parts.
+   *
+   * @param in the buffer
+   * @return the value
+   * @throws BufferUnderflowException if the buffer ends inside the value
+   * @throws IllegalArgumentException if the bytes are not a valid value
+   */
+  public static BigFraction read(ByteBuffer in) {
+    byte tag = in.get();
+    if (tag == SMALL) {
+      long num = unzigzag(getVarint(in));
+      long den = getVarint(in);
+      if (den <= 0 || num == Long.MIN_VALUE || BigFraction.gcd(Math.abs(num), den) != 1) {
+        throw new IllegalArgumentException("Invalid encoding: " + num + "/" + den);
+      } // if (den)
+      return BigFraction.fromReducedLongs(num, den);
+    } else if (tag == BIG) {
+      BigInteger num = getBigInteger(in);
+      BigInteger den = getBigInteger(in);
+      if (den.signum() <= 0) {
+        throw new IllegalArgumentException("Invalid encoding: denominator " + den);
+      } else if (!num.gcd(den).equals(BigInteger.ONE)) {
+        throw new IllegalArgumentException("Invalid encoding: " + num + "/" + den);
+      } // if (den)
+      return BigFraction.fromReduced(num, den);
+    } else {
+      throw new IllegalArgumentException("Invalid encoding: tag " + tag);
+    } // if (tag)
+  } // read(ByteBuffer)
+
+  /**
+   * Returns how many bytes encodeAll will use for some values.
+   *
+   * @param values the values
+   * @return the encoded size
+   */
+  public static long encodedSize(BigFraction[] values) {
+    long size = varintSize(values.length);
+    for (BigFraction value : values) {
+      size += encodedSize(value);
+    } // for (value)
+    return size;
+  } // encodedSize(BigFraction[])
+
+  /**
+   * Writes a count and then every value.
+   *
+   * @param values the values
+   * @param out the buffer
+   * @throws java.nio.BufferOverflowException if the values do not fit
+   */
+  public static void encodeAll(BigFraction[] values, ByteBuffer out) {
+    putVarint(out, values.length);
+    for (BigFraction value : values) {
+      write(value, out);
+    } // for (value)
+  } // encodeAll(BigFraction[], ByteBuffer)
+
+  /**
+   * Reads a list written by encodeAll.
+   *
+   * @param in the buffer
+   * @return the values
+   * @throws BufferUnderflowException if the buffer ends inside the list
+   * @throws IllegalArgumentException if the bytes are not a valid list
+   */
+  public static BigFraction[] decodeAll(ByteBuffer in) {
+    long count = getVarint(in);
+    // Every value takes at least three bytes
+    if (count < 0 || count > in.remaining() / 3) {
+      throw new IllegalArgumentException("Invalid encoding: count " + count);
+    } // if (count)
+    BigFraction[] values = new BigFraction[(int) count];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = read(in);
+    } // for (i)
+    return values;
+  } // decodeAll(ByteBuffer)
+
+  /**
+   * Writes a list at the channel's position, in one pass through a direct
+   * buffer.
+   *
+   * @param values the values
+   * @param channel the channel
+   * @throws IOException if the channel cannot be written
+   */
+  public static void writeAll(BigFraction[] values, FileChannel channel) throws IOException {
+    long size = encodedSize(values);
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too much to encode at once: " + size + " bytes");
+    } // if (size)
+    ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+    encodeAll(values, buffer);
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    } // while (remaining)
+  } // writeAll(BigFraction[], FileChannel)
+
+  /**
+   * Reads a list written by writeAll at the channel's position, straight
+   * from a read-only mapping of the file, and moves the position past it.
+   *
+   * @param channel the channel
+   * @return the values
+   * @throws IOException if the channel cannot be read or holds no valid list
+   */
+  public static BigFraction[] readAll(FileChannel channel) throws IOException {
+    long start = channel.position();
+    long length = Math.min(channel.size() - start, Integer.MAX_VALUE);
+    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+    BigFraction[] values;
+    try {
+      values = decodeAll(map);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("Invalid encoding at byte " + (start + map.position()), e);
+    } // try/catch
+    channel.position(start + map.position());
+    return values;
+  } // readAll(FileChannel)
+
+  /**
+   * Maps a signed value to an unsigned one with small magnitudes first:
+   * 0, -1, 1, -2, ... become 0, 1, 2, 3, ...
+   *
+   * @param value the value
+   * @return the zigzag form
+   */
+  static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  } // zigzag(long)
+
+  /**
+   * Undoes zigzag.
+   *
+   * @param value the zigzag form
+   * @return the value
+   */
+  static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  } // unzigzag(long)
+
+  /**
+   * Returns how many bytes a varint takes.
+   *
+   * @param value the value, read as unsigned
+   * @return the size, 1 to 10
+   */
+  static int varintSize(long value) {
+    return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7);
+  } // varintSize(long)
+
+  /**
+   * Writes a varint.
+   *
+   * @param out the buffer
+   * @param value the value, read as unsigned
+   */
+  static void putVarint(ByteBuffer out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.put((byte) (value | 0x80));
+      value >>>= 7;
+    } // while (value)
+    out.put((byte) value);
+  } // putVarint(ByteBuffer, long)
+
+  /**
+   * Reads a varint.
+   *
+   * @param in the buffer
+   * @return the value, read as unsigned
+   * @throws IllegalArgumentException if it runs past ten bytes
+   */
+  static long getVarint(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      } // if (last)
+    } // for (shift)
+    throw new IllegalArgumentException("Invalid encoding: varint too long");
+  } // getVarint(ByteBuffer)
+
+  /**
+   * Reads a length-prefixed two's-complement BigInteger, without copying
+   * when the buffer has an accessible array.
+   *
+   * @param in the buffer
+   * @return the value
+   */
+  private static BigInteger getBigInteger(ByteBuffer in) {
+    long length = getVarint(in);
+    if (length <= 0 || length > in.remaining()) {
+      throw new IllegalArgumentException("Invalid encoding: length " + length);
+    } // if (length)
+    int count = (int) length;
+    BigInteger value;
+    if (in.hasArray()) {
+      value = new BigInteger(in.array(), in.arrayOffset() + in.position(), count);
+      in.position(in.position() + count);
+    } else {
+      byte[] bytes = new byte[count];
+      in.get(bytes);
+      value = new BigInteger(bytes);
+    } // if (hasArray)
+    return value;
+  } // getBigInteger(ByteBuffer)
+} // BFCodec class
@@ -0,0 +1,552 @@
+package edu.grinnell.csc207.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * BFExpression class is a calculator line compiled once into a reusable plan.
+ * Literals are parsed at compile time, register names are resolved to slots
+ * and operators to BFOperator constants, so running the plan again only does
+ * the arithmetic.
+ *
+ * Expressions follow the usual precedence: ^ binds tightest and groups to
+ * the right, then * and /, then + and -, each group left to right, and
+ * parentheses override it all. The compiler also optimizes: operations on
+ * literals are done once at compile time, a subexpression that appears
+ * more than once is evaluated once, and a chain of additions and
+ * subtractions is run as one sum that adds terms sharing a denominator
+ * before anything else. The plan is a list of steps, each reading the
+ * values of earlier ones.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class BFExpression {
+
+  /**
+   * Message for lines that are not well-formed expressions.
+   */
+  public static final String INVALID_EXPRESSION = "Invalid expression";
+
+  /**
+   * Message for malformed STORE commands.
+   */
+  public static final String INVALID_STORE = "Invalid STORE command";
+
+  /**
+   * The text the expression was compiled from.
+   */
+  private final String text;
+
+  /**
+   * Register written by a STORE command, or -1 for an ordinary expression.
+   */
+  private final int storeSlot;
+
+  /**
+   * The value of each step that is a literal, or null.
+   */
+  private final BigFraction[] literals;
+
+  /**
+   * The register read by each step that reads one, or -1.
+   */
+  private final int[] slots;
+
+  /**
+   * The operator of each step that applies one, or null.
+   */
+  private final BFOperator[] operators;
+
+  /**
+   * The step giving each operator's left operand.
+   */
+  private final int[] lefts;
+
+  /**
+   * The step giving each operator's right operand.
+   */
+  private final int[] rights;
+
+  /**
+   * The steps added up by each step that is a sum, or null.
+   */
+  private final int[][] terms;
+
+  /**
+   * Which of those terms are subtracted.
+   */
+  private final boolean[][] negated;
+
+  /**
+   * Constructor for a STORE command.
+   *
+   * @param text the source text
+   * @param storeSlot the register written
+   */
+  private BFExpression(String text, int storeSlot) {
+    this(text, storeSlot, 0);
+  } // BFExpression(String, int)
+
+  /**
+   * Constructor for BFExpression with room for a plan.
+   *
+   * @param text the source text
+   * @param storeSlot the register written by STORE, or -1
+   * @param steps the number of steps
+   */
+  private BFExpression(String text, int storeSlot, int steps) {
+    this.text = text;
+    this.storeSlot = storeSlot;
+    this.literals = new BigFraction[steps];
+    this.slots = new int[steps];
+    this.operators = new BFOperator[steps];
+    this.lefts = new int[steps];
+    this.rights = new int[steps];
+    this.terms = new int[steps][];
+    this.negated = new boolean[steps][];
+  } // BFExpression(String, int, int)
+
+  /**
+   * Compiles a calculator line: either "STORE r" or an expression of
+   * operands, operators and parentheses, with operands and operators
+   * separated by spaces. Parentheses may touch what they enclose.
+   *
+   * @param input the line
+   * @return the compiled expression
+   * @throws IllegalArgumentException if the line is malformed
+   * @throws ArithmeticException if a literal has a zero denominator
+   */
+  public static BFExpression compile(String input) {
+    String[] tokens = tokenize(input);
+    if (tokens.length == 0) {
+      throw new IllegalArgumentException(INVALID_EXPRESSION);
+    } // if (tokens)
+
+    // Handle the STORE command
+    if (tokens[0].equalsIgnoreCase("STORE")) {
+      if (tokens.length != 2 || tokens[1].length() != 1) {
+        throw new IllegalArgumentException(INVALID_STORE);
+      } // if (tokens)
+      return new BFExpression(input, BFRegisters.slot(tokens[1].charAt(0)));
+    } // if (STORE)
+
+    Parser parser = new Parser(tokens);
+    BFNode root = parser.expression();
+    if (parser.next < tokens.length) {
+      throw parser.unexpected();
+    } // if (next)
+    return plan(input, root);
+  } // compile(String)
+
+  /**
+   * Lays out an expression's nodes as steps, every node after the nodes it
+   * reads. Shared nodes get one step.
+   *
+   * @param input the source text
+   * @param root the expression
+   * @return the plan
+   */
+  private static BFExpression plan(String input, BFNode root) {
+    List<BFNode> order = new ArrayList<>();
+    IdentityHashMap<BFNode, Integer> steps = new IdentityHashMap<>();
+    ArrayDeque<BFNode> pending = new ArrayDeque<>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      BFNode node = pending.peek();
+      if (steps.containsKey(node)) {
+        pending.pop();
+        continue;
+      } // if (done)
+      int before = pending.size();
+      if (node.kind == BFNode.BINARY) {
+        pushIfNew(pending, steps, node.right);
+        pushIfNew(pending, steps, node.left);
+      } else if (node.kind == BFNode.SUM) {
+        for (int i = node.terms.length - 1; i >= 0; i--) {
+          pushIfNew(pending, steps, node.terms[i]);
+        } // for (i)
+      } // if (kind)
+      if (pending.size() == before) {
+        pending.pop();
+        steps.put(node, order.size());
+        order.add(node);
+      } // if (ready)
+    } // while (pending)
+
+    BFExpression plan = new BFExpression(input, -1, order.size());
+    Arrays.fill(plan.slots, -1);
+    for (int i = 0; i < order.size(); i++) {
+      BFNode node = order.get(i);
+      if (node.kind == BFNode.LITERAL) {
+        plan.literals[i] = node.value;
+      } else if (node.kind == BFNode.REGISTER) {
+        plan.slots[i] = node.slot;
+      } else if (node.kind == BFNode.BINARY) {
+        plan.operators[i] = node.op;
+        plan.lefts[i] = steps.get(node.left);
+        plan.rights[i] = steps.get(node.right);
+      } else {
+        plan.terms[i] = new int[node.terms.length];
+        for (int j = 0; j < node.terms.length; j++) {
+          plan.terms[i][j] = steps.get(node.terms[j]);
+        } // for (j)
+        plan.negated[i] = node.negated;
+      } // if (kind)
+    } // for (i)
+    return plan;
+  } // plan(String, BFNode)
+
+  /**
+   * Queues a node to be laid out unless it already has a step.
+   *
+   * @param pending the nodes waiting for a step
+   * @param steps the steps given so far
+   * @param node the node
+   */
+  private static void pushIfNew(ArrayDeque<BFNode> pending, IdentityHashMap<BFNode, Integer> steps,
+      BFNode node) {
+    if (!steps.containsKey(node)) {
+      pending.push(node);
+    } // if (new)
+  } // pushIfNew(ArrayDeque<BFNode>, IdentityHashMap<BFNode, Integer>, BFNode)
+
+  /**
+   * Splits a line into tokens at runs of spaces, then splits opening
+   * parentheses off the front of each token and closing ones off the end.
+   *
+   * @param input the line
+   * @return the tokens, none of them empty
+   */
+  static String[] tokenize(String input) {
+    String trimmed = input.trim();
+    if (trimmed.isEmpty()) {
+      return new String[0];
+    } // if (empty)
+    List<String> tokens = new ArrayList<>();
+    for (String word : trimmed.split(" +")) {
+      int from = 0;
+      int to = word.length();
+      while (from < to && word.charAt(from) == '(') {
+        tokens.add("(");
+        from++;
+      } // while (open)
+      int end = to;
+      while (end > from && word.charAt(end - 1) == ')') {
+        end--;
+      } // while (close)
+      if (from < end) {
+        tokens.add(word.substring(from, end));
+      } // if (operand)
+      for (int i = end; i < to; i++) {
+        tokens.add(")");
+      } // for (i)
+    } // for (word)
+    return tokens.toArray(new String[0]);
+  } // tokenize(String)
+
+  /**
+   * Puts a line in a form the compiler sees the same way: words separated
+   * by single spaces, with none leading or trailing. Returns the line itself
+   * when it is already in that form.
+   *
+   * @param input the line
+   * @return the normalized line
+   */
+  static String normalize(String input) {
+    int n = input.length();
+    boolean clean = n > 0 && input.charAt(0) != ' ' && input.charAt(n - 1) != ' ';
+    for (int i = 1; clean && i < n; i++) {
+      clean = input.charAt(i) != ' ' || input.charAt(i - 1) != ' ';
+    } // for (i)
+    if (clean) {
+      return input;
+    } // if (clean)
+    String trimmed = input.trim();
+    return trimmed.isEmpty() ? trimmed : String.join(" ", trimmed.split(" +"));
+  } // normalize(String)
+
+  /**
+   * Tells whether this is a STORE command.
+   *
+   * @return true for STORE
+   */
+  public boolean isStore() {
+    return storeSlot >= 0;
+  } // isStore()
+
+  /**
+   * Tells whether evaluating this expression reads any register. STORE
+   * commands read the calculator rather than a register.
+   *
+   * @return true if some operand is a register
+   */
+  public boolean readsRegisters() {
+    for (int slot : slots) {
+      if (slot >= 0) {
+        return true;
+      } // if (slot)
+    } // for (slot)
+    return false;
+  } // readsRegisters()
+
+  /**
+   * Lists the registers evaluating this expression reads.
+   *
+   * @return their slots, ascending and without repeats; empty for STORE
+   */
+  int[] registerSlots() {
+    return Arrays.stream(slots).filter(slot -> slot >= 0).sorted().distinct().toArray();
+  } // registerSlots()
+
+  /**
+   * Returns the text this expression was compiled from.
+   *
+   * @return the text
+   */
+  public String text() {
+    return text;
+  } // text()
+
+  /**
+   * Evaluates an ordinary expression against a register set.
+   *
+   * @param registers the registers to read
+   * @return the value of the expression
+   */
+  public BigFraction evaluate(BFRegisters registers) {
+    return evaluate(registers, null);
+  } // evaluate(BFRegisters)
+
+  /**
+   * Evaluates an ordinary expression against register values held apart
+   * from any register set.
+   *
+   * @param registers the value of each register it reads, by slot
+   * @return the value of the expression
+   */
+  BigFraction evaluate(BigFraction[] registers) {
+    return evaluate(null, registers);
+  } // evaluate(BigFraction[])
+
+  /**
+   * Does the work of both evaluate methods.
+   *
+   * @param registers the register set to read, when values is null
+   * @param values the register values to read, or null
+   * @return the value of the expression
+   */
+  private BigFraction evaluate(BFRegisters registers, BigFraction[] values) {
+    if (isStore()) {
+      throw new IllegalStateException("STORE has no value");
+    } // if (isStore)
+    BigFraction[] steps = new BigFraction[literals.length];
+    for (int i = 0; i < steps.length; i++) {
+      if (literals[i] != null) {
+        steps[i] = literals[i];
+      } else if (slots[i] >= 0) {
+        steps[i] = values != null ? values[slots[i]] : registers.get(slots[i]);
+      } else if (operators[i] != null) {
+        steps[i] = operators[i].apply(steps[lefts[i]], steps[rights[i]]);
+      } else {
+        steps[i] = sum(steps, terms[i], negated[i]);
+      } // if (step)
+    } // for (i)
+    return steps[steps.length - 1];
+  } // evaluate(BFRegisters, BigFraction[])
+
+  /**
+   * Returns the register a STORE command writes.
+   *
+   * @return its slot, or -1 for an ordinary expression
+   */
+  int storeSlot() {
+    return storeSlot;
+  } // storeSlot()
+
+  /**
+   * Runs the line against a calculator: a STORE copies the calculator's
+   * value into its register, and an expression replaces that value.
+   *
+   * @param calculator the calculator
+   * @param registers the registers
+   */
+  public void execute(BFCalculator calculator, BFRegisters registers) {
+    if (isStore()) {
+      registers.store((char) ('a' + storeSlot), calculator.get());
+    } else {
+      BigFraction result = evaluate(registers);
+      calculator.clear();
+      calculator.add(result);
+    } // if (isStore)
+  } // execute(BFCalculator, BFRegisters)
+
+  /**
+   * Runs a sum step.
+   *
+   * @param values the values of the steps so far
+   * @param steps the steps to add up
+   * @param subtract which of them are subtracted
+   * @return the sum
+   */
+  private static BigFraction sum(BigFraction[] values, int[] steps, boolean[] subtract) {
+    BigFraction[] operands = new BigFraction[steps.length];
+    for (int j = 0; j < steps.length; j++) {
+      operands[j] = values[steps[j]];
+    } // for (j)
+    return BFReduction.sumByDenominator(operands, subtract);
+  } // sum(BigFraction[], int[], boolean[])
+
+  /**
+   * Returns the string representation of the expression.
+   *
+   * @return the source text
+   */
+  @Override
+  public String toString() {
+    return text;
+  } // toString()
+
+  /**
+   * Parser class reads tokens by recursive descent, building nodes through
+   * one BFNode.Table:
+   *
+   *   expression := term (('+' | '-') term)*
+   *   term := factor (('*' | '/') factor)*
+   *   factor := primary ('^' factor)?
+   *   primary := literal | register | '(' expression ')'
+   */
+  private static final class Parser {
+    /**
+     * The tokens.
+     */
+    final String[] tokens;
+
+    /**
+     * Index of the next token to read.
+     */
+    int next;
+
+    /**
+     * Makes the nodes.
+     */
+    final BFNode.Table table = new BFNode.Table();
+
+    /**
+     * Constructor for Parser.
+     *
+     * @param tokens the tokens
+     */
+    Parser(String[] tokens) {
+      this.tokens = tokens;
+    } // Parser(String[])
+
+    /**
+     * Reads a sum or difference of terms. The whole chain becomes one sum.
+     *
+     * @return the node
+     */
+    BFNode expression() {
+      BFNode first = term();
+      if (!peek(BFOperator.ADD) && !peek(BFOperator.SUBTRACT)) {
+        return first;
+      } // if (single)
+      List<BFNode> parts = new ArrayList<>();
+      List<Boolean> subtracted = new ArrayList<>();
+      parts.add(first);
+      subtracted.add(false);
+      while (peek(BFOperator.ADD) || peek(BFOperator.SUBTRACT)) {
+        subtracted.add(tokens[next++].equals(BFOperator.SUBTRACT.symbol()));
+        parts.add(term());
+      } // while (peek)
+      boolean[] subtract = new boolean[parts.size()];
+      for (int i = 0; i < subtract.length; i++) {
+        subtract[i] = subtracted.get(i);
+      } // for (i)
+      return table.sum(parts, subtract);
+    } // expression()
+
+    /**
+     * Reads a product or quotient of factors.
+     *
+     * @return the node
+     */
+    BFNode term() {
+      BFNode node = factor();
+      while (peek(BFOperator.MULTIPLY) || peek(BFOperator.DIVIDE)) {
+        BFOperator op = BFOperator.fromSymbol(tokens[next++]);
+        node = table.apply(op, node, factor());
+      } // while (peek)
+      return node;
+    } // term()
+
+    /**
+     * Reads a power, which groups to the right.
+     *
+     * @return the node
+     */
+    BFNode factor() {
+      BFNode base = primary();
+      if (peek(BFOperator.POWER)) {
+        next++;
+        return table.apply(BFOperator.POWER, base, factor());
+      } // if (peek)
+      return base;
+    } // factor()
+
+    /**
+     * Reads a literal, a register or a parenthesized expression.
+     *
+     * @return the node
+     */
+    BFNode primary() {
+      if (next >= tokens.length) {
+        throw new IllegalArgumentException(INVALID_EXPRESSION);
+      } // if (end)
+      String token = tokens[next];
+      if (token.equals("(")) {
+        next++;
+        BFNode inner = expression();
+        if (next >= tokens.length || !tokens[next].equals(")")) {
+          throw unexpected();
+        } // if (unclosed)
+        next++;
+        return inner;
+      } else if (token.equals(")") || BFOperator.fromSymbol(token) != null) {
+        throw new IllegalArgumentException(INVALID_EXPRESSION);
+      } // if (token)
+      next++;
+      if (Character.isLetter(token.charAt(0))) {
+        if (token.length() != 1) {
+          throw new IllegalArgumentException("Invalid register: " + token);
+        } // if (token)
+        return table.register(BFRegisters.slot(token.charAt(0)));
+      } // if (isLetter)
+      return table.literal(BigFraction.parse(token));
+    } // primary()
+
+    /**
+     * Tells whether the next token is an operator.
+     *
+     * @param op the operator
+     * @return true if it is next
+     */
+    boolean peek(BFOperator op) {
+      return next < tokens.length && tokens[next].equals(op.symbol());
+    } // peek(BFOperator)
+
+    /**
+     * Describes a token found where an operator or the end was expected.
+     *
+     * @return the error to throw
+     */
+    IllegalArgumentException unexpected() {
+      if (next >= tokens.length || tokens[next].equals(")") || tokens[next].equals("(")) {
+        return new IllegalArgumentException(INVALID_EXPRESSION);
+      } // if (structure)
+      return new IllegalArgumentException("Invalid operator: " + tokens[next]);
+    } // unexpected()
+  } // Parser class
+} // BFExpression class
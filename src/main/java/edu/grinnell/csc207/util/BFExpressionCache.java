@@ -0,0 +1,74 @@
+package edu.grinnell.csc207.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BFExpressionCache class keeps recently compiled expressions so that a line
+ * seen again skips tokenizing and parsing. The least recently used entry is
+ * dropped once the cache is full. Lines that fail to compile are not cached.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class BFExpressionCache {
+
+  /**
+   * Default number of expressions kept.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * Compiled expressions by source text, in access order.
+   */
+  private final LinkedHashMap<String, BFExpression> plans;
+
+  /**
+   * Constructor for BFExpressionCache with the default capacity.
+   */
+  public BFExpressionCache() {
+    this(DEFAULT_CAPACITY);
+  } // BFExpressionCache()
+
+  /**
+   * Constructor for BFExpressionCache.
+   *
+   * @param capacity the number of expressions kept
+   */
+  public BFExpressionCache(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    } // if (capacity)
+    this.plans = new LinkedHashMap<String, BFExpression>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, BFExpression> eldest) {
+        return size() > capacity;
+      } // removeEldestEntry(Map.Entry)
+    };
+  } // BFExpressionCache(int)
+
+  /**
+   * Returns the compiled form of a line, compiling it if it is not cached.
+   *
+   * @param input the line
+   * @return the compiled expression
+   * @throws IllegalArgumentException if the line is malformed
+   * @throws ArithmeticException if a literal has a zero denominator
+   */
+  public synchronized BFExpression compile(String input) {
+    BFExpression plan = plans.get(input);
+    if (plan == null) {
+      plan = BFExpression.compile(input);
+      plans.put(input, plan);
+    } // if (plan)
+    return plan;
+  } // compile(String)
+
+  /**
+   * Returns the number of cached expressions.
+   *
+   * @return the size
+   */
+  public synchronized int size() {
+    return plans.size();
+  } // size()
+} // BFExpressionCache class
@@ -0,0 +1,81 @@
+package edu.grinnell.csc207.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * BFInterner class hash-conses fractions that a workload keeps recreating,
+ * so that equal values end up as one shared instance. It is a fixed-size,
+ * direct-mapped table: each value has exactly one slot, and a newer value
+ * simply replaces whatever was there. Memory use is bounded and lookups
+ * never take a lock.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class BFInterner {
+
+  /**
+   * Default number of slots.
+   */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  /**
+   * The slots.
+   */
+  private final AtomicReferenceArray<BigFraction> table;
+
+  /**
+   * Mask that turns a hash into a slot index.
+   */
+  private final int mask;
+
+  /**
+   * Constructor for BFInterner with the default capacity.
+   */
+  public BFInterner() {
+    this(DEFAULT_CAPACITY);
+  } // BFInterner()
+
+  /**
+   * Constructor for BFInterner.
+   *
+   * @param capacity the number of slots, rounded up to a power of two
+   */
+  public BFInterner(int capacity) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    } // if (capacity)
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    } // if (size)
+    this.table = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  } // BFInterner(int)
+
+  /**
+   * Returns the shared instance equal to value, making value the shared
+   * instance if there is none yet.
+   *
+   * @param value the fraction
+   * @return a fraction equal to value
+   */
+  public BigFraction intern(BigFraction value) {
+    int hash = value.valueHash();
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    BigFraction existing = table.get(slot);
+    if (existing != null && existing.sameValue(value)) {
+      return existing;
+    } // if (existing)
+    table.set(slot, value);
+    return value;
+  } // intern(BigFraction)
+
+  /**
+   * Returns the number of slots.
+   *
+   * @return the capacity
+   */
+  public int capacity() {
+    return mask + 1;
+  } // capacity()
+} // BFInterner class
@@ -0,0 +1,544 @@
+package edu.grinnell.csc207.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * BFMappedRegisterSet class keeps registers 'a' through 'z' in a memory-mapped
+ * file, so every process that opens the same file sees the same registers
+ * while they run and after they exit.
+ *
+ * The file holds a small header followed by one fixed-size slot per register,
+ * each value in the BFCodec format.
+ * Each slot starts with a sequence number that is odd while a store is in
+ * progress, so readers copy the value straight out of the mapping and retry
+ * if the number moved underneath them. Writers take a FileLock on the slot,
+ * which the operating system drops if the process dies. A process that dies
+ * mid-store leaves the number odd, though, and the lock then tells the two
+ * apart: whoever next takes it and finds the number odd knows the store was
+ * abandoned, and resets the register to zero, since its bytes may be
+ * half-written. Readers only take the lock to do that, when a number stays
+ * odd longer than any live store takes. A value that has not changed since
+ * it was last read in this process is not decoded again, so repeated reads
+ * return the same instance.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class BFMappedRegisterSet extends BFRegisters implements AutoCloseable {
+
+  /**
+   * Slot size used when none is given.
+   */
+  public static final int DEFAULT_SLOT_BYTES = 4096;
+
+  /**
+   * "BFRG", the first four bytes of every register file.
+   */
+  static final int MAGIC = 0x47524642;
+
+  /**
+   * Layout version. Version 1 slots were not in the BFCodec format.
+   */
+  static final int VERSION = 2;
+
+  /**
+   * Bytes before the first slot.
+   */
+  static final int HEADER_BYTES = 64;
+
+  /**
+   * Offset in a slot of its sequence number.
+   */
+  static final int SEQUENCE = 0;
+
+  /**
+   * Offset in a slot of its payload length; 0 means the register holds zero.
+   */
+  static final int LENGTH = 8;
+
+  /**
+   * Offset in a slot of its payload.
+   */
+  static final int PAYLOAD = 16;
+
+  /**
+   * Spins a reader waits on an odd sequence number before it takes the lock
+   * to see whether the store was abandoned.
+   */
+  static final int REPAIR_SPINS = 1 << 12;
+
+  /**
+   * Atomic access to the sequence numbers in the mapping.
+   */
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  /**
+   * Per-slot monitors for each open file, shared by every instance in this
+   * JVM. FileLock only excludes other processes, and two overlapping
+   * FileLocks from one JVM are an error, so threads queue here first. A
+   * file's entry goes once the last instance on it is closed.
+   */
+  private static final ConcurrentHashMap<Path, Monitors> MONITORS = new ConcurrentHashMap<>();
+
+  /**
+   * The file.
+   */
+  private final FileChannel channel;
+
+  /**
+   * The file's real path, its key in MONITORS.
+   */
+  private final Path path;
+
+  /**
+   * The whole file, mapped.
+   */
+  private final MappedByteBuffer map;
+
+  /**
+   * Bytes per slot, including the slot's own header.
+   */
+  private final int slotBytes;
+
+  /**
+   * Monitors for this file's slots, plus one for the header at index SIZE.
+   */
+  private final Object[] monitors;
+
+  /**
+   * The last value read or written in each slot, with its sequence number.
+   */
+  private final Seen[] seen = new Seen[SIZE];
+
+  /**
+   * Opens or creates a register file with the default slot size.
+   *
+   * @param file the file
+   * @throws IOException if the file cannot be opened or is not a register file
+   */
+  public BFMappedRegisterSet(Path file) throws IOException {
+    this(file, DEFAULT_SLOT_BYTES);
+  } // BFMappedRegisterSet(Path)
+
+  /**
+   * Opens or creates a register file. An empty file becomes a register
+   * file; any other existing file must already be one, and keeps the slot
+   * size it was created with.
+   *
+   * @param file the file
+   * @param slotBytes bytes per register in a new file, a multiple of 8 and
+   *     at least 64; this bounds the largest value a register can hold
+   * @throws IOException if the file cannot be opened or is not a register file
+   */
+  public BFMappedRegisterSet(Path file, int slotBytes) throws IOException {
+    if (!validSlotBytes(slotBytes)) {
+      throw new IllegalArgumentException("Invalid slot size: " + slotBytes);
+    } // if (slotBytes)
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      path = file.toRealPath();
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    } // try/catch
+    monitors = MONITORS.compute(path, (key, shared) -> {
+      Monitors entry = shared == null ? new Monitors() : shared;
+      entry.users++;
+      return entry;
+    }).slots;
+    try {
+      synchronized (monitors[SIZE]) {
+        FileLock lock = channel.lock(0, HEADER_BYTES, false);
+        try {
+          ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+          long size = channel.size();
+          if (size == 0) {
+            header.putInt(MAGIC).putInt(VERSION).putInt(SIZE).putInt(slotBytes).flip();
+            channel.write(header, 0);
+          } else if (size < HEADER_BYTES) {
+            throw new IOException("Not a register file: " + file);
+          } else {
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION
+                || header.getInt() != SIZE) {
+              throw new IOException("Not a register file: " + file);
+            } // if (header)
+            slotBytes = header.getInt();
+            if (!validSlotBytes(slotBytes)) {
+              throw new IOException("Not a register file: " + file);
+            } // if (slotBytes)
+          } // if (new)
+          this.slotBytes = slotBytes;
+          // Mapping past the end grows the file with zeros, which read as 0
+          map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+              HEADER_BYTES + (long) SIZE * slotBytes);
+          map.order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+          lock.release();
+        } // try/finally
+      } // synchronized
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    } // try/catch
+  } // BFMappedRegisterSet(Path, int)
+
+  /**
+   * Stores the provided BigFraction in the specified register of the file.
+   * @param register the register to store the value in ('a' through 'z')
+   * @param val the BigFraction to store
+   * @throws IllegalArgumentException if val does not fit in a slot
+   */
+  @Override
+  public void store(char register, BigFraction val) {
+    int slot = slot(register);
+    byte[] payload = encode(val);
+    locked(slot, () -> {
+      write(slot, val, payload);
+      return null;
+    });
+  } // store(char, BigFraction)
+
+  /**
+   * Retrieves the BigFraction stored in the specified register of the file.
+   * @param register the register to retrieve the value from ('a' through 'z')
+   * @return the BigFraction stored in the register
+   */
+  @Override
+  public BigFraction get(char register) {
+    return get(slot(register));
+  } // get(char)
+
+  /**
+   * Retrieves the BigFraction stored in a register already resolved by slot().
+   * @param slot the register's index, 0 for 'a' through 25 for 'z'
+   * @return the BigFraction stored in the register
+   */
+  @Override
+  BigFraction get(int slot) {
+    int base = base(slot);
+    for (int spins = 0; true; spins++) {
+      long before = (long) LONGS.getAcquire(map, base + SEQUENCE);
+      if ((before & 1) == 0) {
+        Seen last = seen[slot];
+        if (last != null && last.sequence == before) {
+          return last.value;
+        } // if (unchanged)
+        BigFraction value = read(base);
+        VarHandle.acquireFence();
+        if ((long) LONGS.getVolatile(map, base + SEQUENCE) == before) {
+          if (value == null) {
+            throw new IllegalStateException("Corrupt register " + (char) ('a' + slot));
+          } // if (value)
+          seen[slot] = new Seen(before, value);
+          return value;
+        } // if (consistent)
+      } else if (spins >= REPAIR_SPINS) {
+        settle(slot);
+        spins = 0;
+        continue;
+      } // if (even)
+      Thread.onSpinWait();
+    } // for (spins)
+  } // get(int)
+
+  /**
+   * Returns the register's sequence number in the file, which every store
+   * from any process moves.
+   * @param slot the register's index, 0 for 'a' through 25 for 'z'
+   * @return the register's version
+   */
+  @Override
+  long version(int slot) {
+    return (long) LONGS.getAcquire(map, base(slot) + SEQUENCE);
+  } // version(int)
+
+  /**
+   * Replaces the value in a register with op(value in register, val). The
+   * slot is locked throughout, so op runs exactly once.
+   * @param register the register to update ('a' through 'z')
+   * @param op how to combine the old value with val
+   * @param val the right operand
+   * @return the new value of the register
+   */
+  @Override
+  public BigFraction accumulate(char register, BinaryOperator<BigFraction> op, BigFraction val) {
+    return update(slot(register), old -> op.apply(old, val), false);
+  } // accumulate(char, BinaryOperator, BigFraction)
+
+  /**
+   * Stores update in a register only if it still holds expect, by identity.
+   * A store from another process always replaces the instance.
+   * @param register the register ('a' through 'z')
+   * @param expect the instance the register should hold
+   * @param update the new value
+   * @return true if the register was updated
+   */
+  @Override
+  public boolean compareAndSet(char register, BigFraction expect, BigFraction update) {
+    int slot = slot(register);
+    byte[] payload = encode(update);
+    return locked(slot, () -> {
+      if (get(slot) != expect) {
+        return false;
+      } // if (changed)
+      write(slot, update, payload);
+      return true;
+    });
+  } // compareAndSet(char, BigFraction, BigFraction)
+
+  /**
+   * Replaces the value in a register with fn(value in register). The slot
+   * is locked throughout, so fn runs exactly once.
+   * @param register the register to update ('a' through 'z')
+   * @param fn how to compute the new value from the old
+   * @return the old value of the register
+   */
+  @Override
+  public BigFraction getAndUpdate(char register, UnaryOperator<BigFraction> fn) {
+    return update(slot(register), fn, true);
+  } // getAndUpdate(char, UnaryOperator)
+
+  /**
+   * Returns the number of bytes each register has, including its header.
+   *
+   * @return the slot size
+   */
+  public int slotBytes() {
+    return slotBytes;
+  } // slotBytes()
+
+  /**
+   * Closes the file. The mapping itself stays valid until it is collected,
+   * but this set must not be used afterwards. Closing again does nothing.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!channel.isOpen()) {
+      return;
+    } // if (closed)
+    try {
+      channel.close();
+    } finally {
+      MONITORS.computeIfPresent(path, (key, shared) -> --shared.users == 0 ? null : shared);
+    } // try/finally
+  } // close()
+
+  /**
+   * Applies fn to a register while holding its lock.
+   *
+   * @param slot the register's index
+   * @param fn how to compute the new value from the old
+   * @param returnOld whether to return the old value instead of the new
+   * @return the old or new value
+   */
+  private BigFraction update(int slot, UnaryOperator<BigFraction> fn, boolean returnOld) {
+    return locked(slot, () -> {
+      BigFraction old = get(slot);
+      BigFraction next = fn.apply(old);
+      write(slot, next, encode(next));
+      return returnOld ? old : next;
+    });
+  } // update(int, UnaryOperator, boolean)
+
+  /**
+   * Runs an action while holding a slot's monitor and FileLock.
+   *
+   * @param <T> what the action returns
+   * @param slot the register's index
+   * @param action the action
+   * @return what the action returned
+   */
+  private <T> T locked(int slot, Supplier<T> action) {
+    synchronized (monitors[slot]) {
+      try {
+        FileLock lock = lockSlot(slot);
+        try {
+          return action.get();
+        } finally {
+          lock.release();
+        } // try/finally
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } // try/catch
+    } // synchronized
+  } // locked(int, Supplier)
+
+  /**
+   * Waits for any store to a slot to finish by taking its lock, which also
+   * resets the register if the store was abandoned.
+   *
+   * @param slot the register's index
+   */
+  private void settle(int slot) {
+    locked(slot, () -> null);
+  } // settle(int)
+
+  /**
+   * Locks one slot of the file against other processes, then resets the
+   * register if a process died storing to it.
+   *
+   * @param slot the register's index
+   * @return the lock
+   * @throws IOException if the lock cannot be taken
+   */
+  private FileLock lockSlot(int slot) throws IOException {
+    FileLock lock = channel.lock(base(slot), slotBytes, false);
+    if (((long) LONGS.getVolatile(map, base(slot) + SEQUENCE) & 1) != 0) {
+      write(slot, BigFraction.ZERO, new byte[0]);
+    } // if (abandoned)
+    return lock;
+  } // lockSlot(int)
+
+  /**
+   * Writes a slot. The caller holds the slot's monitor and FileLock. The
+   * sequence number is rounded up to even first, in case a store was
+   * abandoned, so it is odd exactly while this one is under way.
+   *
+   * @param slot the register's index
+   * @param value the value
+   * @param payload its encoding
+   */
+  private void write(int slot, BigFraction value, byte[] payload) {
+    int base = base(slot);
+    long sequence = ((long) LONGS.getVolatile(map, base + SEQUENCE) + 1) & ~1L;
+    LONGS.setOpaque(map, base + SEQUENCE, sequence + 1);
+    VarHandle.storeStoreFence();
+    map.put(base + PAYLOAD, payload);
+    map.putInt(base + LENGTH, payload.length);
+    LONGS.setRelease(map, base + SEQUENCE, sequence + 2);
+    seen[slot] = new Seen(sequence + 2, value);
+  } // write(int, BigFraction, byte[])
+
+  /**
+   * Reads a slot without locking. The result is only meaningful if the
+   * sequence number is unchanged afterwards.
+   *
+   * @param base the slot's offset
+   * @return the value, or null if the slot was caught mid-store
+   */
+  private BigFraction read(int base) {
+    int length = map.getInt(base + LENGTH);
+    if (length == 0) {
+      return BigFraction.ZERO;
+    } // if (zero)
+    if (length < 0 || length > slotBytes - PAYLOAD) {
+      return null;
+    } // if (torn)
+    try {
+      return BFCodec.read(map.slice(base + PAYLOAD, length));
+    } catch (RuntimeException e) {
+      return null;
+    } // try/catch
+  } // read(int)
+
+  /**
+   * Encodes a value for a slot.
+   *
+   * @param value the value
+   * @return the payload
+   * @throws IllegalArgumentException if the value does not fit in a slot
+   */
+  private byte[] encode(BigFraction value) {
+    int size = BFCodec.encodedSize(value);
+    if (size > slotBytes - PAYLOAD) {
+      throw new IllegalArgumentException("Value too large for a register of "
+          + slotBytes + " bytes");
+    } // if (size)
+    byte[] payload = new byte[size];
+    BFCodec.write(value, ByteBuffer.wrap(payload));
+    return payload;
+  } // encode(BigFraction)
+
+  /**
+   * Checks that a slot size is usable.
+   *
+   * @param slotBytes the size
+   * @return true if it is a multiple of 8, at least 64, and small enough
+   *     for the whole file to be mapped at once
+   */
+  private static boolean validSlotBytes(int slotBytes) {
+    return slotBytes >= 64 && slotBytes % 8 == 0
+        && slotBytes <= (Integer.MAX_VALUE - HEADER_BYTES) / SIZE;
+  } // validSlotBytes(int)
+
+  /**
+   * Finds a slot in the file.
+   *
+   * @param slot the register's index
+   * @return the offset of its first byte
+   */
+  private int base(int slot) {
+    return HEADER_BYTES + slot * slotBytes;
+  } // base(int)
+
+  /**
+   * Monitors class holds the monitors of one file, and counts the open
+   * instances using them. Only changed inside MONITORS.compute.
+   */
+  private static final class Monitors {
+    /**
+     * One monitor per slot, plus one for the header at index SIZE.
+     */
+    final Object[] slots = new Object[SIZE + 1];
+
+    /**
+     * Open instances on the file.
+     */
+    int users;
+
+    /**
+     * Constructor for Monitors.
+     */
+    Monitors() {
+      for (int i = 0; i < slots.length; i++) {
+        slots[i] = new Object();
+      } // for (i)
+    } // Monitors()
+  } // Monitors class
+
+  /**
+   * Seen class pairs a decoded value with the sequence number it was read
+   * at. Its fields are final, so it can be shared without locking.
+   */
+  private static final class Seen {
+    /**
+     * The slot's sequence number.
+     */
+    final long sequence;
+
+    /**
+     * The value at that sequence number.
+     */
+    final BigFraction value;
+
+    /**
+     * Constructor for Seen.
+     *
+     * @param sequence the slot's sequence number
+     * @param value the value at that sequence number
+     */
+    Seen(long sequence, BigFraction value) {
+      this.sequence = sequence;
+      this.value = value;
+    } // Seen(long, BigFraction)
+  } // Seen class
+} // BFMappedRegisterSet class
@@ -0,0 +1,423 @@
+package edu.grinnell.csc207.util;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * BFMetrics class counts and times the calculator's hot paths: BigFraction
+ * arithmetic, reduction and gcd, parsing, and processInput in both command
+ * line calculators. It also records the operand sizes arithmetic sees and
+ * the errors processInput runs into.
+ *
+ * Metrics are off unless the JVM is started with -Dbf.metrics=true. Every
+ * call site tests ENABLED first, and since it is a static final the JIT
+ * drops the instrumented branch entirely when it is false. When on, the
+ * counters are published over JMX as a BFMetricsMXBean, and
+ * -Dbf.metrics.dump=SECONDS also prints a report to standard error that
+ * often and once more at exit.
+ *
+ * Author: Slok Rajbhandari
+ */
+public final class BFMetrics {
+
+  /**
+   * Whether call sites should record anything.
+   */
+  public static final boolean ENABLED = Boolean.getBoolean("bf.metrics");
+
+  /**
+   * Name the MXBean is registered under.
+   */
+  public static final String OBJECT_NAME = "edu.grinnell.csc207:type=BFMetrics";
+
+  /**
+   * Op enumerates what is timed.
+   */
+  public enum Op {
+    /**
+     * BigFraction.add.
+     */
+    ADD,
+
+    /**
+     * BigFraction.subtract.
+     */
+    SUBTRACT,
+
+    /**
+     * BigFraction.multiply.
+     */
+    MULTIPLY,
+
+    /**
+     * BigFraction.divide.
+     */
+    DIVIDE,
+
+    /**
+     * BigFraction.pow.
+     */
+    POWER,
+
+    /**
+     * Reducing a new or pending BigFraction to lowest terms.
+     */
+    REDUCE,
+
+    /**
+     * A single gcd, long or BigInteger.
+     */
+    GCD,
+
+    /**
+     * Parsing a fraction from text.
+     */
+    PARSE,
+
+    /**
+     * One line through a calculator's processInput.
+     */
+    PROCESS_INPUT
+  } // Op enum
+
+  /**
+   * Buckets in each histogram, one per power of two.
+   */
+  static final int BUCKETS = Long.SIZE;
+
+  /**
+   * Latency histograms, by operation.
+   */
+  private static final LongAdder[][] LATENCY = table(Op.values().length);
+
+  /**
+   * Total nanoseconds, by operation.
+   */
+  private static final LongAdder[] NANOS = row(Op.values().length);
+
+  /**
+   * Operand size histograms, by operation; only arithmetic fills them.
+   */
+  private static final LongAdder[][] BITS = table(Op.values().length);
+
+  /**
+   * Error counts, by kind.
+   */
+  private static final ConcurrentHashMap<String, LongAdder> ERRORS = new ConcurrentHashMap<>();
+
+  static {
+    if (ENABLED) {
+      register();
+      long seconds = Long.getLong("bf.metrics.dump", 0);
+      if (seconds > 0) {
+        PrintWriter err = new PrintWriter(System.err, true);
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+          Thread thread = new Thread(task, "bf-metrics-dump");
+          thread.setDaemon(true);
+          return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(err), seconds, seconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(err)));
+      } // if (seconds)
+    } // if (ENABLED)
+  } // static
+
+  /**
+   * Hidden constructor; this class only has static helpers.
+   */
+  private BFMetrics() {
+  } // BFMetrics()
+
+  /**
+   * Starts timing.
+   *
+   * @return the start time, for time or operation
+   */
+  public static long start() {
+    return System.nanoTime();
+  } // start()
+
+  /**
+   * Records one run of an operation.
+   *
+   * @param op the operation
+   * @param start what start returned when it began
+   */
+  public static void time(Op op, long start) {
+    long nanos = System.nanoTime() - start;
+    NANOS[op.ordinal()].add(nanos);
+    LATENCY[op.ordinal()][bucket(nanos)].increment();
+  } // time(Op, long)
+
+  /**
+   * Records one run of an arithmetic operation and the size of its operands.
+   *
+   * @param op the operation
+   * @param start what start returned when it began
+   * @param left the left operand
+   * @param right the right operand
+   */
+  static void operation(Op op, long start, BigFraction left, BigFraction right) {
+    time(op, start);
+    BITS[op.ordinal()][bucket(Math.max(left.bitLength(), right.bitLength()))].increment();
+  } // operation(Op, long, BigFraction, BigFraction)
+
+  /**
+   * Counts an error, by its type and the fixed part of its message, so
+   * "Invalid operator: %" and "Invalid operator: ^" count together.
+   *
+   * @param e the error
+   */
+  public static void error(Throwable e) {
+    String message = e.getMessage();
+    String kind = e.getClass().getSimpleName();
+    if (message != null) {
+      int colon = message.indexOf(':');
+      kind += ": " + (colon < 0 ? message : message.substring(0, colon));
+    } // if (message)
+    ERRORS.computeIfAbsent(kind, key -> new LongAdder()).increment();
+  } // error(Throwable)
+
+  /**
+   * Registers the MXBean, if it is not registered already. Done at startup
+   * when metrics are on.
+   *
+   * @return the name it is registered under
+   */
+  public static ObjectName register() {
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), name);
+      } // if (registered)
+      return name;
+    } catch (JMException e) {
+      throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+    } // try/catch
+  } // register()
+
+  /**
+   * Returns every counter as text.
+   *
+   * @return the report
+   */
+  public static String report() {
+    StringBuilder out = new StringBuilder();
+    out.append(String.format("%-14s %10s %12s %10s %12s %12s%n",
+        "operation", "count", "total ms", "mean ns", "p50 ns <", "p99 ns <"));
+    for (Op op : Op.values()) {
+      long[] histogram = sum(LATENCY[op.ordinal()]);
+      long count = total(histogram);
+      if (count > 0) {
+        long nanos = NANOS[op.ordinal()].sum();
+        out.append(String.format("%-14s %10d %12.3f %10d %12d %12d%n", op, count,
+            nanos / 1e6, nanos / count, upper(histogram, 0.50), upper(histogram, 0.99)));
+      } // if (count)
+    } // for (op)
+    out.append(String.format("operand bits, as [bits <] count%n"));
+    for (Op op : Op.values()) {
+      long[] histogram = sum(BITS[op.ordinal()]);
+      if (total(histogram) > 0) {
+        out.append(String.format("%-14s", op));
+        for (int k = 0; k < BUCKETS; k++) {
+          if (histogram[k] > 0) {
+            out.append(" [").append(1L << k).append("] ").append(histogram[k]);
+          } // if (histogram)
+        } // for (k)
+        out.append(String.format("%n"));
+      } // if (total)
+    } // for (op)
+    out.append(String.format("errors%n"));
+    for (Map.Entry<String, Long> error : errorCounts().entrySet()) {
+      out.append(String.format("  %-50s %10d%n", error.getKey(), error.getValue()));
+    } // for (error)
+    return out.toString();
+  } // report()
+
+  /**
+   * Prints the report.
+   *
+   * @param out where to print it
+   */
+  public static void dump(PrintWriter out) {
+    out.print(report());
+    out.flush();
+  } // dump(PrintWriter)
+
+  /**
+   * Sets every counter back to zero.
+   */
+  public static void reset() {
+    for (int i = 0; i < NANOS.length; i++) {
+      NANOS[i].reset();
+      for (int k = 0; k < BUCKETS; k++) {
+        LATENCY[i][k].reset();
+        BITS[i][k].reset();
+      } // for (k)
+    } // for (i)
+    ERRORS.clear();
+  } // reset()
+
+  /**
+   * Returns the error counts.
+   *
+   * @return counts by kind, sorted
+   */
+  static Map<String, Long> errorCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    ERRORS.forEach((kind, count) -> counts.put(kind, count.sum()));
+    return counts;
+  } // errorCounts()
+
+  /**
+   * Finds the histogram bucket of a non-negative value.
+   *
+   * @param value the value
+   * @return floor(log2(value)) + 1, or 0 for 0
+   */
+  static int bucket(long value) {
+    return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(value));
+  } // bucket(long)
+
+  /**
+   * Finds a bound under which some fraction of a histogram's values lie.
+   *
+   * @param histogram the histogram
+   * @param quantile the fraction, from 0 to 1
+   * @return the upper bound of the bucket holding that quantile
+   */
+  static long upper(long[] histogram, double quantile) {
+    long target = (long) Math.ceil(total(histogram) * quantile);
+    long seen = 0;
+    for (int k = 0; k < histogram.length; k++) {
+      seen += histogram[k];
+      if (seen >= target) {
+        return 1L << k;
+      } // if (seen)
+    } // for (k)
+    return Long.MAX_VALUE;
+  } // upper(long[], double)
+
+  /**
+   * Reads a histogram.
+   *
+   * @param adders its buckets
+   * @return their counts
+   */
+  private static long[] sum(LongAdder[] adders) {
+    long[] counts = new long[adders.length];
+    for (int k = 0; k < adders.length; k++) {
+      counts[k] = adders[k].sum();
+    } // for (k)
+    return counts;
+  } // sum(LongAdder[])
+
+  /**
+   * Adds up a histogram.
+   *
+   * @param histogram the histogram
+   * @return its total count
+   */
+  private static long total(long[] histogram) {
+    long total = 0;
+    for (long count : histogram) {
+      total += count;
+    } // for (count)
+    return total;
+  } // total(long[])
+
+  /**
+   * Makes a row of counters.
+   *
+   * @param n how many
+   * @return the counters
+   */
+  private static LongAdder[] row(int n) {
+    LongAdder[] row = new LongAdder[n];
+    for (int i = 0; i < n; i++) {
+      row[i] = new LongAdder();
+    } // for (i)
+    return row;
+  } // row(int)
+
+  /**
+   * Makes one histogram per operation.
+   *
+   * @param n how many operations
+   * @return the histograms
+   */
+  private static LongAdder[][] table(int n) {
+    LongAdder[][] table = new LongAdder[n][];
+    for (int i = 0; i < n; i++) {
+      table[i] = row(BUCKETS);
+    } // for (i)
+    return table;
+  } // table(int)
+
+  /**
+   * Bean class publishes the static counters over JMX.
+   */
+  private static final class Bean implements BFMetricsMXBean {
+    /**
+     * Reads one counter per operation.
+     *
+     * @param source the counters
+     * @return the values, by operation name
+     */
+    private static Map<String, Long> byOp(LongAdder[] source) {
+      Map<String, Long> values = new TreeMap<>();
+      for (Op op : Op.values()) {
+        values.put(op.name(), source[op.ordinal()].sum());
+      } // for (op)
+      return values;
+    } // byOp(LongAdder[])
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+      Map<String, Long> counts = new TreeMap<>();
+      for (Op op : Op.values()) {
+        counts.put(op.name(), total(sum(LATENCY[op.ordinal()])));
+      } // for (op)
+      return counts;
+    } // getOperationCounts()
+
+    @Override
+    public Map<String, Long> getTotalNanos() {
+      return byOp(NANOS);
+    } // getTotalNanos()
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+      return errorCounts();
+    } // getErrorCounts()
+
+    @Override
+    public long[] latencyHistogram(String operation) {
+      return sum(LATENCY[Op.valueOf(operation).ordinal()]);
+    } // latencyHistogram(String)
+
+    @Override
+    public long[] bitLengthHistogram(String operation) {
+      return sum(BITS[Op.valueOf(operation).ordinal()]);
+    } // bitLengthHistogram(String)
+
+    @Override
+    public String getReport() {
+      return report();
+    } // getReport()
+
+    @Override
+    public void reset() {
+      BFMetrics.reset();
+    } // reset()
+  } // Bean class
+} // BFMetrics class
@@ -0,0 +1,66 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Map;
+
+/**
+ * BFMetricsMXBean is what BFMetrics publishes over JMX, under the name
+ * "edu.grinnell.csc207:type=BFMetrics". Operation names are those of
+ * BFMetrics.Op.
+ *
+ * Author: Slok Rajbhandari
+ */
+public interface BFMetricsMXBean {
+
+  /**
+   * Returns how many times each operation ran.
+   *
+   * @return counts by operation
+   */
+  Map<String, Long> getOperationCounts();
+
+  /**
+   * Returns the total time spent in each operation.
+   *
+   * @return nanoseconds by operation
+   */
+  Map<String, Long> getTotalNanos();
+
+  /**
+   * Returns how many times each kind of error happened.
+   *
+   * @return counts by error
+   */
+  Map<String, Long> getErrorCounts();
+
+  /**
+   * Returns an operation's latencies: entry k counts the runs that took at
+   * least 2^(k-1) but fewer than 2^k nanoseconds; entry 0 counts runs
+   * timed at zero.
+   *
+   * @param operation the operation
+   * @return the histogram
+   */
+  long[] latencyHistogram(String operation);
+
+  /**
+   * Returns an arithmetic operation's operand sizes: entry k counts the
+   * runs whose larger operand had at least 2^(k-1) but fewer than 2^k
+   * significant bits; entry 0 counts zeros.
+   *
+   * @param operation the operation
+   * @return the histogram
+   */
+  long[] bitLengthHistogram(String operation);
+
+  /**
+   * Returns everything as text, as the periodic dump prints it.
+   *
+   * @return the report
+   */
+  String getReport();
+
+  /**
+   * Sets every counter back to zero.
+   */
+  void reset();
+} // BFMetricsMXBean interface
@@ -0,0 +1,332 @@
+package edu.grinnell.csc207.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * BFNode class is one node of a parsed calculator expression: a literal, a
+ * register, an operator applied to two nodes, or a sum of several signed
+ * terms. Nodes never change once made.
+ *
+ * Nodes are only made through a Table, which optimizes as it goes. Operators
+ * whose operands are both literals are applied right away, unless that
+ * throws, in which case the error is left for evaluation to report. Chains
+ * of additions and subtractions are flattened into one sum whose literal
+ * terms are added up at once, grouped by denominator. And asking for a node
+ * equal to one the table already made returns that node, so a repeated
+ * subexpression becomes one shared node and is only evaluated once.
+ *
+ * Author: Slok Rajbhandari
+ */
+final class BFNode {
+
+  /**
+   * Kind of a literal node.
+   */
+  static final int LITERAL = 0;
+
+  /**
+   * Kind of a register node.
+   */
+  static final int REGISTER = 1;
+
+  /**
+   * Kind of an operator node.
+   */
+  static final int BINARY = 2;
+
+  /**
+   * Kind of a sum node.
+   */
+  static final int SUM = 3;
+
+  /**
+   * Sums of fewer terms than this stay binary operators.
+   */
+  static final int SUM_TERMS = 3;
+
+  /**
+   * What kind of node this is.
+   */
+  final int kind;
+
+  /**
+   * The value of a literal, or null.
+   */
+  final BigFraction value;
+
+  /**
+   * The slot of a register, or -1.
+   */
+  final int slot;
+
+  /**
+   * The operator of a binary node, or null.
+   */
+  final BFOperator op;
+
+  /**
+   * The left operand of a binary node, or null.
+   */
+  final BFNode left;
+
+  /**
+   * The right operand of a binary node, or null.
+   */
+  final BFNode right;
+
+  /**
+   * The terms of a sum, or null.
+   */
+  final BFNode[] terms;
+
+  /**
+   * Which terms of a sum are subtracted, or null.
+   */
+  final boolean[] negated;
+
+  /**
+   * The hash, computed once; children hash by identity.
+   */
+  private final int hash;
+
+  /**
+   * Constructor for BFNode.
+   *
+   * @param kind the kind
+   * @param value the literal value, or null
+   * @param slot the register slot, or -1
+   * @param op the operator, or null
+   * @param left the left operand, or null
+   * @param right the right operand, or null
+   * @param terms the terms of a sum, or null
+   * @param negated which terms are subtracted, or null
+   */
+  private BFNode(int kind, BigFraction value, int slot, BFOperator op, BFNode left,
+      BFNode right, BFNode[] terms, boolean[] negated) {
+    this.kind = kind;
+    this.value = value;
+    this.slot = slot;
+    this.op = op;
+    this.left = left;
+    this.right = right;
+    this.terms = terms;
+    this.negated = negated;
+    int h = 31 * kind + slot;
+    h = 31 * h + (value == null ? 0 : value.hashCode());
+    h = 31 * h + (op == null ? 0 : op.hashCode());
+    h = 31 * h + System.identityHashCode(left);
+    h = 31 * h + System.identityHashCode(right);
+    if (terms != null) {
+      for (int i = 0; i < terms.length; i++) {
+        h = 31 * h + System.identityHashCode(terms[i]) + (negated[i] ? 1 : 0);
+      } // for (i)
+    } // if (terms)
+    this.hash = h;
+  } // BFNode(int, BigFraction, int, BFOperator, BFNode, BFNode, BFNode[], boolean[])
+
+  /**
+   * Tells whether this node is a literal.
+   *
+   * @return true for a literal
+   */
+  boolean isLiteral() {
+    return kind == LITERAL;
+  } // isLiteral()
+
+  /**
+   * Tells whether another node has the same shape. Children are compared
+   * by identity, which is enough because a Table makes them unique first.
+   *
+   * @param other the other object
+   * @return true if it is an equal node
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    } else if (!(other instanceof BFNode)) {
+      return false;
+    } // if (other)
+    BFNode that = (BFNode) other;
+    if (this.hash != that.hash || this.kind != that.kind || this.slot != that.slot
+        || this.op != that.op || this.left != that.left || this.right != that.right) {
+      return false;
+    } else if (this.value != null && !this.value.equals(that.value)) {
+      return false;
+    } else if (this.terms == null) {
+      return true;
+    } // if (fields)
+    if (this.terms.length != that.terms.length || !Arrays.equals(this.negated, that.negated)) {
+      return false;
+    } // if (length)
+    for (int i = 0; i < terms.length; i++) {
+      if (this.terms[i] != that.terms[i]) {
+        return false;
+      } // if (term)
+    } // for (i)
+    return true;
+  } // equals(Object)
+
+  /**
+   * Hashes the node's shape.
+   *
+   * @return the hash
+   */
+  @Override
+  public int hashCode() {
+    return hash;
+  } // hashCode()
+
+  /**
+   * Table class makes the nodes of one expression, optimizing them and
+   * handing back existing nodes for repeated subexpressions.
+   */
+  static final class Table {
+    /**
+     * Every node made so far, each mapped to itself.
+     */
+    private final HashMap<BFNode, BFNode> nodes = new HashMap<>();
+
+    /**
+     * Makes a literal.
+     *
+     * @param value the value
+     * @return the node
+     */
+    BFNode literal(BigFraction value) {
+      return intern(new BFNode(LITERAL, value, -1, null, null, null, null, null));
+    } // literal(BigFraction)
+
+    /**
+     * Makes a register read.
+     *
+     * @param slot the register's slot
+     * @return the node
+     */
+    BFNode register(int slot) {
+      return intern(new BFNode(REGISTER, null, slot, null, null, null, null, null));
+    } // register(int)
+
+    /**
+     * Applies an operator, folding it if both operands are literals. Sums
+     * and differences go through sum.
+     *
+     * @param op the operator
+     * @param left the left operand
+     * @param right the right operand
+     * @return the node
+     */
+    BFNode apply(BFOperator op, BFNode left, BFNode right) {
+      if (op == BFOperator.ADD || op == BFOperator.SUBTRACT) {
+        return sum(List.of(left, right), new boolean[] {false, op == BFOperator.SUBTRACT});
+      } // if (sum)
+      if (left.isLiteral() && right.isLiteral()) {
+        try {
+          return literal(op.apply(left.value, right.value));
+        } catch (ArithmeticException e) {
+          // Leave it to fail when evaluated, as it always has
+        } // try/catch
+      } // if (literals)
+      return intern(new BFNode(BINARY, null, -1, op, left, right, null, null));
+    } // apply(BFOperator, BFNode, BFNode)
+
+    /**
+     * Adds up signed terms. Terms that are themselves sums are spliced in,
+     * and the literal terms are added up now, grouped by denominator, into
+     * a single leading literal.
+     *
+     * @param parts the terms
+     * @param subtract which terms are subtracted
+     * @return the node
+     */
+    BFNode sum(List<BFNode> parts, boolean[] subtract) {
+      List<BFNode> terms = new ArrayList<>();
+      List<Boolean> negated = new ArrayList<>();
+      List<BigFraction> constants = new ArrayList<>();
+      List<Boolean> negatedConstants = new ArrayList<>();
+      for (int i = 0; i < parts.size(); i++) {
+        BFNode part = parts.get(i);
+        if (part.kind == SUM) {
+          for (int j = 0; j < part.terms.length; j++) {
+            split(part.terms[j], subtract[i] ^ part.negated[j], terms, negated, constants,
+                negatedConstants);
+          } // for (j)
+        } else if (part.kind == BINARY
+            && (part.op == BFOperator.ADD || part.op == BFOperator.SUBTRACT)) {
+          split(part.left, subtract[i], terms, negated, constants, negatedConstants);
+          split(part.right, subtract[i] ^ (part.op == BFOperator.SUBTRACT), terms, negated,
+              constants, negatedConstants);
+        } else {
+          split(part, subtract[i], terms, negated, constants, negatedConstants);
+        } // if (kind)
+      } // for (i)
+      if (!constants.isEmpty()) {
+        BigFraction constant = BFReduction.sumByDenominator(constants.toArray(new BigFraction[0]),
+            toArray(negatedConstants));
+        if (terms.isEmpty()) {
+          return literal(constant);
+        } else if (constant.signum() != 0) {
+          terms.add(0, literal(constant));
+          negated.add(0, false);
+        } // if (terms)
+      } // if (constants)
+      if (terms.size() == 1 && !negated.get(0)) {
+        return terms.get(0);
+      } else if (terms.size() < SUM_TERMS && !negated.get(0)) {
+        BFOperator op = terms.size() == 2 && negated.get(1) ? BFOperator.SUBTRACT : BFOperator.ADD;
+        return intern(new BFNode(BINARY, null, -1, op, terms.get(0), terms.get(1), null, null));
+      } // if (size)
+      return intern(new BFNode(SUM, null, -1, null, null, null,
+          terms.toArray(new BFNode[0]), toArray(negated)));
+    } // sum(List<BFNode>, boolean[])
+
+    /**
+     * Files one term of a sum under the literals or the other terms.
+     *
+     * @param term the term
+     * @param subtract whether it is subtracted
+     * @param terms the other terms so far
+     * @param negated which of them are subtracted
+     * @param constants the literal values so far
+     * @param negatedConstants which of them are subtracted
+     */
+    private static void split(BFNode term, boolean subtract, List<BFNode> terms,
+        List<Boolean> negated, List<BigFraction> constants, List<Boolean> negatedConstants) {
+      if (term.isLiteral()) {
+        constants.add(term.value);
+        negatedConstants.add(subtract);
+      } else {
+        terms.add(term);
+        negated.add(subtract);
+      } // if (isLiteral)
+    } // split(BFNode, boolean, List<BFNode>, List<Boolean>, List<BigFraction>, List<Boolean>)
+
+    /**
+     * Hands back the node already made that equals node, or node itself.
+     *
+     * @param node the new node
+     * @return the unique equal node
+     */
+    private BFNode intern(BFNode node) {
+      BFNode existing = nodes.putIfAbsent(node, node);
+      return existing == null ? node : existing;
+    } // intern(BFNode)
+
+    /**
+     * Unboxes a list of flags.
+     *
+     * @param flags the flags
+     * @return them as an array
+     */
+    private static boolean[] toArray(List<Boolean> flags) {
+      boolean[] array = new boolean[flags.size()];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = flags.get(i);
+      } // for (i)
+      return array;
+    } // toArray(List<Boolean>)
+  } // Table class
+} // BFNode class
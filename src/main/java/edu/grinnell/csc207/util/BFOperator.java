@@ -0,0 +1,142 @@
+package edu.grinnell.csc207.util;
+
+import java.math.BigInteger;
+import java.util.function.BinaryOperator;
+
+/**
+ * BFOperator enumerates the binary operators a calculator expression can use.
+ * Each constant applies itself, so evaluating a compiled expression never
+ * has to look at operator text again. The constants are BinaryOperators,
+ * so they can be handed straight to BFRegisterSet.accumulate or reduce.
+ *
+ * Author: Slok Rajbhandari
+ */
+public enum BFOperator implements BinaryOperator<BigFraction> {
+  /**
+   * Addition.
+   */
+  ADD("+") {
+    @Override
+    public BigFraction apply(BigFraction left, BigFraction right) {
+      return left.add(right);
+    } // apply(BigFraction, BigFraction)
+  },
+
+  /**
+   * Subtraction.
+   */
+  SUBTRACT("-") {
+    @Override
+    public BigFraction apply(BigFraction left, BigFraction right) {
+      return left.subtract(right);
+    } // apply(BigFraction, BigFraction)
+  },
+
+  /**
+   * Multiplication.
+   */
+  MULTIPLY("*") {
+    @Override
+    public BigFraction apply(BigFraction left, BigFraction right) {
+      return left.multiply(right);
+    } // apply(BigFraction, BigFraction)
+  },
+
+  /**
+   * Division.
+   */
+  DIVIDE("/") {
+    @Override
+    public BigFraction apply(BigFraction left, BigFraction right) {
+      return left.divide(right);
+    } // apply(BigFraction, BigFraction)
+  },
+
+  /**
+   * Integer power. The right operand must be an integer that fits in an
+   * int, and may be negative.
+   */
+  POWER("^") {
+    @Override
+    public BigFraction apply(BigFraction left, BigFraction right) {
+      return left.pow(exponent(right));
+    } // apply(BigFraction, BigFraction)
+  };
+
+  /**
+   * The operator as written in an expression.
+   */
+  private final String symbol;
+
+  /**
+   * Constructor for BFOperator.
+   *
+   * @param symbol the operator as written in an expression
+   */
+  BFOperator(String symbol) {
+    this.symbol = symbol;
+  } // BFOperator(String)
+
+  /**
+   * Applies the operator.
+   *
+   * @param left the left operand
+   * @param right the right operand
+   * @return the result
+   */
+  @Override
+  public abstract BigFraction apply(BigFraction left, BigFraction right);
+
+  /**
+   * Returns the operator as written in an expression.
+   *
+   * @return the symbol
+   */
+  public String symbol() {
+    return symbol;
+  } // symbol()
+
+  /**
+   * Reads the right operand of POWER as an exponent.
+   *
+   * @param value the operand
+   * @return its value as an int
+   * @throws ArithmeticException if it is not an integer in int range
+   */
+  static int exponent(BigFraction value) {
+    if (value.isSmall()) {
+      long n = value.smallNumerator();
+      if (value.smallDenominator() == 1 && n == (int) n) {
+        return (int) n;
+      } // if (int)
+    } else if (value.denominator().equals(BigInteger.ONE)
+        && value.numerator().bitLength() < Integer.SIZE) {
+      // A pending value may keep the BigInteger form after reducing
+      return value.numerator().intValue();
+    } // if (isSmall)
+    throw new ArithmeticException("Invalid exponent: " + value);
+  } // exponent(BigFraction)
+
+  /**
+   * Looks up the operator written as token.
+   *
+   * @param token the token
+   * @return the operator, or null if token is not an operator
+   */
+  public static BFOperator fromSymbol(String token) {
+    switch (token) {
+      case "+":
+        return ADD;
+      case "-":
+        return SUBTRACT;
+      case "*":
+        return MULTIPLY;
+      case "/":
+        return DIVIDE;
+      case "^":
+        return POWER;
+      default:
+        return null;
+    } // switch
+  } // fromSymbol(String)
+} // BFOperator enum
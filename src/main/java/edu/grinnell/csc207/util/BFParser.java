@@ -0,0 +1,303 @@
+package edu.grinnell.csc207.util;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * BFParser class scans fractions such as "3/4", "-5", " +22 / -7 " straight
+ * from characters or bytes. Each part may have a sign, and whitespace is
+ * allowed around the whole fraction and around the slash. Digit runs of up
+ * to 18 digits are accumulated in a long, so the usual case builds no
+ * strings and no BigIntegers; longer runs are folded into a BigInteger 18
+ * digits at a time.
+ *
+ * Author: Slok Rajbhandari
+ */
+final class BFParser {
+
+  /**
+   * Most decimal digits that always fit in a long.
+   */
+  static final int LONG_DIGITS = 18;
+
+  /**
+   * Powers of ten from 10^0 to 10^18.
+   */
+  private static final BigInteger[] POWERS_OF_TEN = new BigInteger[LONG_DIGITS + 1];
+
+  static {
+    for (int i = 0; i <= LONG_DIGITS; i++) {
+      POWERS_OF_TEN[i] = BigInteger.TEN.pow(i);
+    } // for (i)
+  } // static
+
+  /**
+   * Hidden constructor; this class only has static helpers.
+   */
+  private BFParser() {
+  } // BFParser()
+
+  /**
+   * Parses text[from..to).
+   *
+   * @param text the characters
+   * @param from the first index
+   * @param to one past the last index
+   * @return the fraction
+   * @throws NumberFormatException if the text is not a fraction
+   * @throws ArithmeticException if the denominator is zero
+   */
+  static BigFraction parse(CharSequence text, int from, int to) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      BigFraction value = scan(text, from, to);
+      BFMetrics.time(BFMetrics.Op.PARSE, start);
+      return value;
+    } // if (ENABLED)
+    return scan(text, from, to);
+  } // parse(CharSequence, int, int)
+
+  /**
+   * Does the work of parse(CharSequence, int, int).
+   *
+   * @param text the characters
+   * @param from the first index
+   * @param to one past the last index
+   * @return the fraction
+   */
+  private static BigFraction scan(CharSequence text, int from, int to) {
+    long num = 0;
+    long den = 1;
+    BigInteger bigNum = null;
+    BigInteger bigDen = null;
+    int i = skipSpace(text, from, to);
+    for (int part = 0; part < 2; part++) {
+      boolean negative = false;
+      if (i < to && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+        negative = text.charAt(i) == '-';
+        i++;
+      } // if (sign)
+      int start = i;
+      long value = 0;
+      int digits = 0;
+      BigInteger big = null;
+      while (i < to) {
+        int digit = text.charAt(i) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        } // if (not a digit)
+        if (digits == LONG_DIGITS) {
+          big = fold(big, value, digits);
+          value = 0;
+          digits = 0;
+        } // if (full)
+        value = value * 10 + digit;
+        digits++;
+        i++;
+      } // while (i)
+      if (i == start) {
+        throw invalid(text.subSequence(from, to));
+      } // if (no digits)
+      if (big != null) {
+        big = fold(big, value, digits);
+        big = negative ? big.negate() : big;
+      } else if (negative) {
+        value = -value;
+      } // if (big)
+      i = skipSpace(text, i, to);
+      if (part == 0) {
+        num = value;
+        bigNum = big;
+        if (i < to && text.charAt(i) == '/') {
+          i = skipSpace(text, i + 1, to);
+        } else {
+          break;
+        } // if (slash)
+      } else {
+        den = value;
+        bigDen = big;
+      } // if (part)
+    } // for (part)
+    if (i != to) {
+      throw invalid(text.subSequence(from, to));
+    } // if (trailing)
+    return build(num, bigNum, den, bigDen);
+  } // scan(CharSequence, int, int)
+
+  /**
+   * Parses the bytes between a buffer's position and limit as ASCII, then
+   * moves the position to the limit.
+   *
+   * @param buffer the bytes
+   * @return the fraction
+   * @throws NumberFormatException if the bytes are not a fraction
+   * @throws ArithmeticException if the denominator is zero
+   */
+  static BigFraction parse(ByteBuffer buffer) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      BigFraction value = scan(buffer);
+      BFMetrics.time(BFMetrics.Op.PARSE, start);
+      return value;
+    } // if (ENABLED)
+    return scan(buffer);
+  } // parse(ByteBuffer)
+
+  /**
+   * Does the work of parse(ByteBuffer).
+   *
+   * @param buffer the bytes
+   * @return the fraction
+   */
+  private static BigFraction scan(ByteBuffer buffer) {
+    int from = buffer.position();
+    int to = buffer.limit();
+    long num = 0;
+    long den = 1;
+    BigInteger bigNum = null;
+    BigInteger bigDen = null;
+    int i = skipSpace(buffer, from, to);
+    for (int part = 0; part < 2; part++) {
+      boolean negative = false;
+      if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+        negative = buffer.get(i) == '-';
+        i++;
+      } // if (sign)
+      int start = i;
+      long value = 0;
+      int digits = 0;
+      BigInteger big = null;
+      while (i < to) {
+        int digit = buffer.get(i) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        } // if (not a digit)
+        if (digits == LONG_DIGITS) {
+          big = fold(big, value, digits);
+          value = 0;
+          digits = 0;
+        } // if (full)
+        value = value * 10 + digit;
+        digits++;
+        i++;
+      } // while (i)
+      if (i == start) {
+        throw invalid(buffer, from, to);
+      } // if (no digits)
+      if (big != null) {
+        big = fold(big, value, digits);
+        big = negative ? big.negate() : big;
+      } else if (negative) {
+        value = -value;
+      } // if (big)
+      i = skipSpace(buffer, i, to);
+      if (part == 0) {
+        num = value;
+        bigNum = big;
+        if (i < to && buffer.get(i) == '/') {
+          i = skipSpace(buffer, i + 1, to);
+        } else {
+          break;
+        } // if (slash)
+      } else {
+        den = value;
+        bigDen = big;
+      } // if (part)
+    } // for (part)
+    if (i != to) {
+      throw invalid(buffer, from, to);
+    } // if (trailing)
+    buffer.position(to);
+    return build(num, bigNum, den, bigDen);
+  } // scan(ByteBuffer)
+
+  /**
+   * Appends a run of decimal digits to a BigInteger.
+   *
+   * @param big the digits so far, or null for none
+   * @param value the new digits
+   * @param digits how many new digits there are
+   * @return big * 10^digits + value
+   */
+  private static BigInteger fold(BigInteger big, long value, int digits) {
+    BigInteger tail = BigInteger.valueOf(value);
+    return big == null ? tail : big.multiply(POWERS_OF_TEN[digits]).add(tail);
+  } // fold(BigInteger, long, int)
+
+  /**
+   * Builds the fraction from its scanned parts.
+   *
+   * @param num the numerator, if bigNum is null
+   * @param bigNum the numerator, or null if it fit in num
+   * @param den the denominator, if bigDen is null
+   * @param bigDen the denominator, or null if it fit in den
+   * @return the fraction
+   */
+  private static BigFraction build(long num, BigInteger bigNum, long den, BigInteger bigDen) {
+    if (bigNum == null && bigDen == null) {
+      return BigFraction.valueOf(num, den);
+    } // if (small)
+    return new BigFraction(bigNum == null ? BigInteger.valueOf(num) : bigNum,
+        bigDen == null ? BigInteger.valueOf(den) : bigDen);
+  } // build(long, BigInteger, long, BigInteger)
+
+  /**
+   * Skips whitespace characters.
+   *
+   * @param text the characters
+   * @param i where to start
+   * @param to where to stop
+   * @return the index of the first non-whitespace character, or to
+   */
+  private static int skipSpace(CharSequence text, int i, int to) {
+    while (i < to && Character.isWhitespace(text.charAt(i))) {
+      i++;
+    } // while (i)
+    return i;
+  } // skipSpace(CharSequence, int, int)
+
+  /**
+   * Skips ASCII whitespace bytes.
+   *
+   * @param buffer the bytes
+   * @param i where to start
+   * @param to where to stop
+   * @return the index of the first non-whitespace byte, or to
+   */
+  private static int skipSpace(ByteBuffer buffer, int i, int to) {
+    while (i < to) {
+      byte b = buffer.get(i);
+      if (b != ' ' && (b < '\t' || b > '\r')) {
+        break;
+      } // if (not whitespace)
+      i++;
+    } // while (i)
+    return i;
+  } // skipSpace(ByteBuffer, int, int)
+
+  /**
+   * Makes the exception for malformed input.
+   *
+   * @param text the input
+   * @return the exception
+   */
+  private static NumberFormatException invalid(CharSequence text) {
+    return new NumberFormatException("Invalid fraction: \"" + text + "\"");
+  } // invalid(CharSequence)
+
+  /**
+   * Makes the exception for malformed input bytes.
+   *
+   * @param buffer the bytes
+   * @param from the first index
+   * @param to one past the last index
+   * @return the exception
+   */
+  private static NumberFormatException invalid(ByteBuffer buffer, int from, int to) {
+    StringBuilder text = new StringBuilder(to - from);
+    for (int i = from; i < to; i++) {
+      text.append((char) (buffer.get(i) & 0xFF));
+    } // for (i)
+    return invalid(text);
+  } // invalid(ByteBuffer, int, int)
+} // BFParser class
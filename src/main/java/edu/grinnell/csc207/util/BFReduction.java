@@ -0,0 +1,204 @@
+package edu.grinnell.csc207.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collector;
+
+/**
+ * BFReduction class combines many BigFractions with a balanced tree of
+ * operations instead of a left-to-right fold. Pairing values of similar
+ * size keeps every intermediate result small, where a fold makes each
+ * step slower than the one before. Large inputs are split across the
+ * common fork-join pool.
+ *
+ * Author: Slok Rajbhandari
+ */
+final class BFReduction {
+
+  /**
+   * Ranges shorter than this are reduced on the calling thread.
+   */
+  static final int SEQUENTIAL_THRESHOLD = 512;
+
+  /**
+   * Hidden constructor; this class only has static helpers.
+   */
+  private BFReduction() {
+  } // BFReduction()
+
+  /**
+   * Combines values[from..to) with op, pairing neighbors level by level.
+   *
+   * @param values the values; left untouched
+   * @param from the first index
+   * @param to one past the last index
+   * @param op the operator, which must be associative
+   * @param identity the result for an empty range
+   * @return the combined value
+   */
+  static BigFraction reduce(BigFraction[] values, int from, int to, BFOperator op,
+      BigFraction identity) {
+    if (to - from <= SEQUENTIAL_THRESHOLD) {
+      return reduceSequential(values, from, to, op, identity);
+    } // if (small)
+    return ForkJoinPool.commonPool().invoke(new Task(values, from, to, op, identity));
+  } // reduce(BigFraction[], int, int, BFOperator, BigFraction)
+
+  /**
+   * Combines values[from..to) with op on the calling thread.
+   *
+   * @param values the values; left untouched
+   * @param from the first index
+   * @param to one past the last index
+   * @param op the operator, which must be associative
+   * @param identity the result for an empty range
+   * @return the combined value
+   */
+  static BigFraction reduceSequential(BigFraction[] values, int from, int to, BFOperator op,
+      BigFraction identity) {
+    int count = to - from;
+    if (count == 0) {
+      return identity;
+    } // if (empty)
+    BigFraction[] level = new BigFraction[count];
+    System.arraycopy(values, from, level, 0, count);
+    while (count > 1) {
+      int half = 0;
+      for (int i = 0; i + 1 < count; i += 2) {
+        level[half++] = op.apply(level[i], level[i + 1]);
+      } // for (i)
+      if ((count & 1) != 0) {
+        level[half++] = level[count - 1];
+      } // if (odd)
+      count = half;
+    } // while (count)
+    return level[0];
+  } // reduceSequential(BigFraction[], int, int, BFOperator, BigFraction)
+
+  /**
+   * Adds and subtracts terms, first adding up the numerators of terms that
+   * share a denominator, which needs no gcd and only one reduction per
+   * denominator, then adding the per-denominator sums as a tree.
+   *
+   * @param terms the terms; left untouched
+   * @param negated which terms are subtracted
+   * @return the sum
+   */
+  static BigFraction sumByDenominator(BigFraction[] terms, boolean[] negated) {
+    Map<BigInteger, BigInteger> groups = new LinkedHashMap<>();
+    for (int i = 0; i < terms.length; i++) {
+      BigInteger numerator = terms[i].numerator();
+      groups.merge(terms[i].denominator(), negated[i] ? numerator.negate() : numerator,
+          BigInteger::add);
+    } // for (i)
+    BigFraction[] sums = new BigFraction[groups.size()];
+    int count = 0;
+    for (Map.Entry<BigInteger, BigInteger> group : groups.entrySet()) {
+      sums[count++] = new BigFraction(group.getValue(), group.getKey());
+    } // for (group)
+    return reduceSequential(sums, 0, count, BFOperator.ADD, BigFraction.ZERO);
+  } // sumByDenominator(BigFraction[], boolean[])
+
+  /**
+   * Makes a collector that gathers values and reduces them as a tree.
+   *
+   * @param op the operator, which must be associative
+   * @param identity the result for no values
+   * @param mean true to divide the result by the number of values
+   * @return the collector
+   */
+  static Collector<BigFraction, ?, BigFraction> collector(BFOperator op, BigFraction identity,
+      boolean mean) {
+    return Collector.of(ArrayList<BigFraction>::new, List::add,
+        (left, right) -> {
+          left.addAll(right);
+          return left;
+        },
+        list -> {
+          BigFraction[] values = list.toArray(new BigFraction[0]);
+          BigFraction result = reduce(values, 0, values.length, op, identity);
+          if (mean) {
+            if (values.length == 0) {
+              throw new ArithmeticException("Mean of no values");
+            } // if (empty)
+            result = result.divide(BigFraction.valueOf(values.length));
+          } // if (mean)
+          return result;
+        });
+  } // collector(BFOperator, BigFraction, boolean)
+
+  /**
+   * Task class reduces one half of a range in parallel with the other.
+   */
+  static class Task extends RecursiveTask<BigFraction> {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The values.
+     */
+    private final BigFraction[] values;
+
+    /**
+     * First index of the range.
+     */
+    private final int from;
+
+    /**
+     * One past the last index of the range.
+     */
+    private final int to;
+
+    /**
+     * The operator.
+     */
+    private final BFOperator op;
+
+    /**
+     * The result for an empty range.
+     */
+    private final BigFraction identity;
+
+    /**
+     * Constructor for Task.
+     *
+     * @param values the values
+     * @param from first index of the range
+     * @param to one past the last index of the range
+     * @param op the operator
+     * @param identity the result for an empty range
+     */
+    Task(BigFraction[] values, int from, int to, BFOperator op, BigFraction identity) {
+      this.values = values;
+      this.from = from;
+      this.to = to;
+      this.op = op;
+      this.identity = identity;
+    } // Task(BigFraction[], int, int, BFOperator, BigFraction)
+
+    /**
+     * Reduces the range.
+     *
+     * @return the combined value
+     */
+    @Override
+    protected BigFraction compute() {
+      if (to - from <= SEQUENTIAL_THRESHOLD) {
+        return reduceSequential(values, from, to, op, identity);
+      } // if (small)
+      int mid = (from + to) >>> 1;
+      Task left = new Task(values, from, mid, op, identity);
+      left.fork();
+      BigFraction right = new Task(values, mid, to, op, identity).compute();
+      return op.apply(left.join(), right);
+    } // compute()
+  } // Task class
+} // BFReduction class
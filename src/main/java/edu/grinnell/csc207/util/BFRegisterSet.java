@@ -1,25 +1,41 @@
 package edu.grinnell.csc207.util;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
 /**
  * BFRegisterSet class provides a set of registers ('a' through 'z')
- * for storing and retrieving BigFractions.
+ * for storing and retrieving BigFractions. Registers may be shared between
+ * threads: every read sees the latest store, and the read-modify-write
+ * operations retry with compare-and-set instead of locking, so concurrent
+ * updates to the same register are never lost. Each register also counts
+ * its updates, so a cached result can tell whether a register it read has
+ * changed since.
  *
  * Author: Slok Rajbhandari
  */
-public class BFRegisterSet {
+public class BFRegisterSet extends BFRegisters {
 
 /**
  * Array initialized for empty registers.
  */
-  private BigFraction[] registers;
+  private final AtomicReferenceArray<BigFraction> registers;
+
+  /**
+   * Number of updates to each register. A count only moves after the new
+   * value is in place, so a value read after a count is at least as new.
+   */
+  private final AtomicLongArray versions = new AtomicLongArray(SIZE);
 
   /**
    * Constructor for BFRegisterSet. Initializes all registers to zero.
    */
   public BFRegisterSet() {
-    registers = new BigFraction[26];
-    for (int i = 0; i < 26; i++) {
-      registers[i] = new BigFraction("0");
+    registers = new AtomicReferenceArray<>(SIZE);
+    for (int i = 0; i < SIZE; i++) {
+      registers.setPlain(i, BigFraction.ZERO);
     } // for(int)
   } // BFRegisterSet()
 
@@ -28,13 +44,11 @@ public class BFRegisterSet {
    * @param register the register to store the value in ('a' through 'z')
    * @param val the BigFraction to store
    */
+  @Override
   public void store(char register, BigFraction val) {
-    int index = register - 'a';
-    if (index >= 0 && index < 26) {
-      registers[index] = val;
-    } else {
-      throw new IllegalArgumentException("Invalid register: " + register);
-    } // if(index)
+    int index = slot(register);
+    registers.set(index, val);
+    versions.incrementAndGet(index);
   } // store(char register, BigFraction val)
 
   /**
@@ -42,12 +56,95 @@ public class BFRegisterSet {
    * @param register the register to retrieve the value from ('a' through 'z')
    * @return the BigFraction stored in the register
    */
+  @Override
   public BigFraction get(char register) {
-    int index = register - 'a';
-    if (index >= 0 && index < 26) {
-      return registers[index];
-    } else {
-      throw new IllegalArgumentException("Invalid register: " + register);
-    } // if(index)
+    return registers.get(slot(register));
   } // get(char register)
+
+  /**
+   * Retrieves the BigFraction stored in a register already resolved by slot().
+   * @param slot the register's index, 0 for 'a' through 25 for 'z'
+   * @return the BigFraction stored in the register
+   */
+  @Override
+  BigFraction get(int slot) {
+    return registers.get(slot);
+  } // get(int slot)
+
+  /**
+   * Replaces the value in a register with op(value in register, val), as
+   * one atomic step. If another thread changes the register first, op is
+   * applied again to the new value, so it should have no side effects.
+   * @param register the register to update ('a' through 'z')
+   * @param op how to combine the old value with val, e.g. BFOperator.ADD
+   * @param val the right operand
+   * @return the new value of the register
+   */
+  @Override
+  public BigFraction accumulate(char register, BinaryOperator<BigFraction> op, BigFraction val) {
+    int index = slot(register);
+    BigFraction prev = registers.get(index);
+    while (true) {
+      BigFraction next = op.apply(prev, val);
+      BigFraction seen = registers.compareAndExchange(index, prev, next);
+      if (seen == prev) {
+        versions.incrementAndGet(index);
+        return next;
+      } // if (won)
+      prev = seen;
+      Thread.onSpinWait();
+    } // while
+  } // accumulate(char, BinaryOperator, BigFraction)
+
+  /**
+   * Stores update in a register only if it still holds expect. The test is
+   * by identity, not by value, so expect should be an instance read from
+   * the register.
+   * @param register the register ('a' through 'z')
+   * @param expect the instance the register should hold
+   * @param update the new value
+   * @return true if the register was updated
+   */
+  @Override
+  public boolean compareAndSet(char register, BigFraction expect, BigFraction update) {
+    int index = slot(register);
+    if (!registers.compareAndSet(index, expect, update)) {
+      return false;
+    } // if (lost)
+    versions.incrementAndGet(index);
+    return true;
+  } // compareAndSet(char, BigFraction, BigFraction)
+
+  /**
+   * Replaces the value in a register with fn(value in register), as one
+   * atomic step. As with accumulate, fn may be applied more than once.
+   * @param register the register to update ('a' through 'z')
+   * @param fn how to compute the new value from the old
+   * @return the old value of the register
+   */
+  @Override
+  public BigFraction getAndUpdate(char register, UnaryOperator<BigFraction> fn) {
+    int index = slot(register);
+    BigFraction prev = registers.get(index);
+    while (true) {
+      BigFraction seen = registers.compareAndExchange(index, prev, fn.apply(prev));
+      if (seen == prev) {
+        versions.incrementAndGet(index);
+        return prev;
+      } // if (won)
+      prev = seen;
+      Thread.onSpinWait();
+    } // while
+  } // getAndUpdate(char, UnaryOperator)
+
+  /**
+   * Returns a number that changes whenever a register is updated. Read it
+   * before reading the register: if it is unchanged later, so is the value.
+   * @param slot the register's index, 0 for 'a' through 25 for 'z'
+   * @return the register's version
+   */
+  @Override
+  long version(int slot) {
+    return versions.get(slot);
+  } // version(int slot)
 } // BFRegisterSet class
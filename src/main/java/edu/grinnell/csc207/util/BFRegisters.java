@@ -0,0 +1,101 @@
+package edu.grinnell.csc207.util;
+
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
+/**
+ * BFRegisters class is what the calculators need of registers 'a' through
+ * 'z', however they are kept: BFRegisterSet keeps them in memory and
+ * BFMappedRegisterSet in a file shared between processes. Every
+ * implementation may be shared between threads, and its read-modify-write
+ * operations never lose a concurrent update.
+ *
+ * Author: Slok Rajbhandari
+ */
+public abstract class BFRegisters {
+
+  /**
+   * Number of registers.
+   */
+  public static final int SIZE = 26;
+
+  /**
+   * Constructor for BFRegisters, for subclasses.
+   */
+  BFRegisters() {
+  } // BFRegisters()
+
+  /**
+   * Stores the provided BigFraction in the specified register.
+   * @param register the register to store the value in ('a' through 'z')
+   * @param val the BigFraction to store
+   */
+  public abstract void store(char register, BigFraction val);
+
+  /**
+   * Retrieves the BigFraction stored in the specified register.
+   * @param register the register to retrieve the value from ('a' through 'z')
+   * @return the BigFraction stored in the register
+   */
+  public abstract BigFraction get(char register);
+
+  /**
+   * Retrieves the BigFraction stored in a register already resolved by slot().
+   * @param slot the register's index, 0 for 'a' through 25 for 'z'
+   * @return the BigFraction stored in the register
+   */
+  abstract BigFraction get(int slot);
+
+  /**
+   * Replaces the value in a register with op(value in register, val), as
+   * one atomic step.
+   * @param register the register to update ('a' through 'z')
+   * @param op how to combine the old value with val, e.g. BFOperator.ADD
+   * @param val the right operand
+   * @return the new value of the register
+   */
+  public abstract BigFraction accumulate(char register, BinaryOperator<BigFraction> op,
+      BigFraction val);
+
+  /**
+   * Stores update in a register only if it still holds expect. The test is
+   * by identity, not by value, so expect should be an instance read from
+   * the register.
+   * @param register the register ('a' through 'z')
+   * @param expect the instance the register should hold
+   * @param update the new value
+   * @return true if the register was updated
+   */
+  public abstract boolean compareAndSet(char register, BigFraction expect, BigFraction update);
+
+  /**
+   * Replaces the value in a register with fn(value in register), as one
+   * atomic step.
+   * @param register the register to update ('a' through 'z')
+   * @param fn how to compute the new value from the old
+   * @return the old value of the register
+   */
+  public abstract BigFraction getAndUpdate(char register, UnaryOperator<BigFraction> fn);
+
+  /**
+   * Returns a number that changes whenever a register is updated. Read it
+   * before reading the register: if it is unchanged later, so is the value.
+   * @param slot the register's index, 0 for 'a' through 25 for 'z'
+   * @return the register's version
+   */
+  abstract long version(int slot);
+
+  /**
+   * Resolves a register name to its index.
+   * @param register the register name ('a' through 'z')
+   * @return the index, 0 for 'a' through 25 for 'z'
+   */
+  static int slot(char register) {
+    int index = register - 'a';
+    if (index >= 0 && index < SIZE) {
+      return index;
+    } else {
+      throw new IllegalArgumentException("Invalid register: " + register);
+    } // if(index)
+  } // slot(char register)
+} // BFRegisters class
@@ -0,0 +1,280 @@
+package edu.grinnell.csc207.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BFResultCache class remembers the value of each recently run line, so a
+ * line that comes back is neither compiled nor computed again. Lines are
+ * keyed by their normalized text, so extra spaces do not matter.
+ *
+ * A cached value records which register set it read and the version of
+ * every register it read there. It is used only for that set, and only
+ * while those versions are unchanged, so a STORE to any register the line
+ * reads invalidates it, and a STORE to any other register does not. The
+ * set is only held weakly, so caching a session's results does not keep
+ * its registers alive. The cache is bounded by an estimate of the bytes it
+ * holds, dropping the least recently used lines first.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class BFResultCache {
+
+  /**
+   * Default bound on the bytes held.
+   */
+  public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+  /**
+   * Estimated bytes for an entry apart from its text, slots and value.
+   */
+  static final int ENTRY_BYTES = 160;
+
+  /**
+   * Entries by normalized text, in access order.
+   */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Bound on bytes.
+   */
+  private final long maxBytes;
+
+  /**
+   * Estimated bytes held.
+   */
+  private long bytes;
+
+  /**
+   * Lines answered from the cache.
+   */
+  private final LongAdder hits = new LongAdder();
+
+  /**
+   * Lines that had to be computed.
+   */
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Entries dropped to stay under the bound.
+   */
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Constructor for BFResultCache with the default bound.
+   */
+  public BFResultCache() {
+    this(DEFAULT_MAX_BYTES);
+  } // BFResultCache()
+
+  /**
+   * Constructor for BFResultCache.
+   *
+   * @param maxBytes the most bytes to hold, estimated
+   */
+  public BFResultCache(long maxBytes) {
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("Invalid cache size: " + maxBytes);
+    } // if (maxBytes)
+    this.maxBytes = maxBytes;
+  } // BFResultCache(long)
+
+  /**
+   * Runs a line against a calculator, like BFExpression.execute, using the
+   * cached value when the registers it reads have not changed. STORE lines
+   * are cached compiled but always run.
+   *
+   * @param input the line
+   * @param calculator the calculator
+   * @param registers the registers
+   * @return the compiled line
+   * @throws IllegalArgumentException if the line is malformed
+   * @throws ArithmeticException if the line divides by zero
+   */
+  public BFExpression execute(String input, BFCalculator calculator, BFRegisters registers) {
+    String key = BFExpression.normalize(input);
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    } // synchronized
+    if (entry == null) {
+      BFExpression plan = BFExpression.compile(key);
+      entry = new Entry(plan, plan.registerSlots(), null, null, null);
+      if (plan.isStore()) {
+        put(key, entry);
+      } // if (isStore)
+    } // if (entry)
+    BFExpression plan = entry.plan;
+    if (plan.isStore()) {
+      plan.execute(calculator, registers);
+      return plan;
+    } // if (isStore)
+    BigFraction value = entry.valueFor(registers);
+    if (value != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+      long[] versions = new long[entry.slots.length];
+      for (int i = 0; i < versions.length; i++) {
+        versions[i] = registers.version(entry.slots[i]);
+      } // for (i)
+      value = plan.evaluate(registers);
+      put(key, new Entry(plan, entry.slots, registers, versions, value));
+    } // if (value)
+    calculator.clear();
+    calculator.add(value);
+    return plan;
+  } // execute(String, BFCalculator, BFRegisters)
+
+  /**
+   * Returns the number of lines answered from the cache.
+   *
+   * @return the count
+   */
+  public long hits() {
+    return hits.sum();
+  } // hits()
+
+  /**
+   * Returns the number of lines that had to be computed.
+   *
+   * @return the count
+   */
+  public long misses() {
+    return misses.sum();
+  } // misses()
+
+  /**
+   * Returns the number of entries dropped to stay under the bound.
+   *
+   * @return the count
+   */
+  public long evictions() {
+    return evictions.sum();
+  } // evictions()
+
+  /**
+   * Returns the number of cached lines.
+   *
+   * @return the size
+   */
+  public synchronized int size() {
+    return entries.size();
+  } // size()
+
+  /**
+   * Returns the estimated bytes held.
+   *
+   * @return the estimate
+   */
+  public synchronized long bytes() {
+    return bytes;
+  } // bytes()
+
+  /**
+   * Caches an entry, then drops the least recently used entries until the
+   * cache is back under its bound.
+   *
+   * @param key the normalized line
+   * @param entry the entry
+   */
+  private synchronized void put(String key, Entry entry) {
+    long weight = weigh(key, entry);
+    Entry old = entries.put(key, entry);
+    bytes += weight - (old == null ? 0 : weigh(key, old));
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (bytes > maxBytes && eldest.hasNext()) {
+      Map.Entry<String, Entry> victim = eldest.next();
+      bytes -= weigh(victim.getKey(), victim.getValue());
+      eldest.remove();
+      evictions.increment();
+    } // while (bytes)
+  } // put(String, Entry)
+
+  /**
+   * Estimates the bytes an entry holds.
+   *
+   * @param key its normalized line
+   * @param entry the entry
+   * @return the estimate
+   */
+  private static long weigh(String key, Entry entry) {
+    long weight = ENTRY_BYTES + 2L * key.length() + 16L * entry.slots.length;
+    BigFraction value = entry.value;
+    if (value != null && !value.isSmall()) {
+      weight += 80 + (value.numerator().bitLength() + value.denominator().bitLength()) / 8;
+    } // if (big)
+    return weight;
+  } // weigh(String, Entry)
+
+  /**
+   * Entry class is one cached line: its plan, and its value as of the
+   * register versions it was computed at. Entries are never changed, only
+   * replaced, so they can be read without holding the cache's lock.
+   */
+  private static final class Entry {
+    /**
+     * The compiled line.
+     */
+    final BFExpression plan;
+
+    /**
+     * The registers the line reads.
+     */
+    final int[] slots;
+
+    /**
+     * The register set the value was computed from, or null.
+     */
+    final WeakReference<BFRegisters> registers;
+
+    /**
+     * The version of each register in slots when the value was computed.
+     */
+    final long[] versions;
+
+    /**
+     * The value, or null if there is none yet.
+     */
+    final BigFraction value;
+
+    /**
+     * Constructor for Entry.
+     *
+     * @param plan the compiled line
+     * @param slots the registers the line reads
+     * @param registers the register set the value was computed from
+     * @param versions the version of each register in slots
+     * @param value the value
+     */
+    Entry(BFExpression plan, int[] slots, BFRegisters registers, long[] versions,
+        BigFraction value) {
+      this.plan = plan;
+      this.slots = slots;
+      this.registers = registers == null ? null : new WeakReference<>(registers);
+      this.versions = versions;
+      this.value = value;
+    } // Entry(BFExpression, int[], BFRegisters, long[], BigFraction)
+
+    /**
+     * Returns the value if it is still current for a register set.
+     *
+     * @param current the register set
+     * @return the value, or null if it must be computed again
+     */
+    BigFraction valueFor(BFRegisters current) {
+      if (value == null || current != registers.get()) {
+        return null;
+      } // if (value)
+      for (int i = 0; i < slots.length; i++) {
+        if (current.version(slots[i]) != versions[i]) {
+          return null;
+        } // if (changed)
+      } // for (i)
+      return value;
+    } // valueFor(BFRegisters)
+  } // Entry class
+} // BFResultCache class
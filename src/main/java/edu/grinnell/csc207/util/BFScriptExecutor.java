@@ -0,0 +1,483 @@
+package edu.grinnell.csc207.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BFScriptExecutor class runs a script of compiled calculator lines on a
+ * fork-join pool, running lines that do not depend on each other at the
+ * same time, with exactly the results running them in order would give.
+ *
+ * Lines are linked by what they read and write. An expression depends on
+ * the STORE that last wrote each register it reads before it. A STORE
+ * depends on the last expression before it, whose value it copies out of
+ * the calculator; if that line fails, the STORE copies the value of the
+ * last one before that which succeeded, waiting for it if need be. Each
+ * line reads its registers from the lines it depends on rather than from
+ * the register set, so a later STORE never changes what an earlier line
+ * sees. Registers no earlier STORE writes are read when the script starts.
+ * Once every line is done, the STOREs are applied to the register set in
+ * order and the calculator is left holding the last successful value, as
+ * if the lines had run one by one. A pool with a single worker has nothing
+ * to overlap, so there the lines simply run one by one.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class BFScriptExecutor {
+
+  /**
+   * Register values of a line that reads none.
+   */
+  private static final BigFraction[] NO_REGISTERS = new BigFraction[0];
+
+  /**
+   * The pool lines run on.
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Constructor for BFScriptExecutor.
+   *
+   * @param pool the pool to run lines on
+   */
+  public BFScriptExecutor(ForkJoinPool pool) {
+    this.pool = pool;
+  } // BFScriptExecutor(ForkJoinPool)
+
+  /**
+   * Runs a script against a calculator and registers. Call it from outside
+   * the pool.
+   *
+   * @param lines the compiled lines, with null for lines that did not
+   *   compile, which are skipped
+   * @param calculator the calculator; STOREs read it, and it ends holding
+   *   the last successful value
+   * @param registers the registers; expressions read them, and they end
+   *   holding what the STOREs wrote
+   * @param errors where to put the exception each failed line threw, or
+   *   null; at least as long as lines
+   * @return for each line, the calculator's value after an expression or
+   *   the value a STORE wrote; null for failed or skipped lines
+   */
+  public BigFraction[] run(BFExpression[] lines, BFCalculator calculator,
+      BFRegisters registers, RuntimeException[] errors) {
+    if (pool.getParallelism() == 1) {
+      return runInOrder(lines, calculator, registers, errors);
+    } // if (getParallelism)
+    Script script = new Script(lines.length, calculator, calculator.get());
+    Node[] writers = new Node[BFRegisters.SIZE];
+    Node lastExpression = null;
+    List<Node> ready = new ArrayList<>();
+    for (int i = 0; i < lines.length; i++) {
+      BFExpression line = lines[i];
+      if (line == null) {
+        continue;
+      } // if (line)
+      Node node = new Node(script, line);
+      script.nodes[i] = node;
+      if (line.isStore()) {
+        node.after(lastExpression);
+        writers[line.storeSlot()] = node;
+      } else {
+        int[] slots = line.registerSlots();
+        node.inputs = slots.length == 0 ? NO_REGISTERS : new BigFraction[BFRegisters.SIZE];
+        for (int slot : slots) {
+          if (writers[slot] == null) {
+            node.inputs[slot] = registers.get(slot);
+          } else {
+            if (node.writers == null) {
+              node.writers = new Node[BFRegisters.SIZE];
+            } // if (node.writers)
+            node.writers[slot] = writers[slot];
+            node.after(writers[slot]);
+          } // if (writers)
+        } // for (slot)
+        node.previous = lastExpression;
+        lastExpression = node;
+      } // if (isStore)
+      if (node.pending.get() == 0) {
+        ready.add(node);
+      } // if (pending)
+    } // for (i)
+
+    script.count(ready);
+    pool.invoke(script);
+
+    BigFraction[] values = new BigFraction[lines.length];
+    Node last = null;
+    for (int i = 0; i < lines.length; i++) {
+      Node node = script.nodes[i];
+      if (node == null) {
+        continue;
+      } // if (node)
+      if (node.error == null && lines[i].isStore()) {
+        try {
+          registers.store((char) ('a' + lines[i].storeSlot()), node.value);
+        } catch (RuntimeException e) {
+          node.error = e;
+        } // try/catch
+      } else if (node.error == null) {
+        last = node;
+      } // if (error)
+      if (node.error == null) {
+        values[i] = node.value;
+      } else if (errors != null) {
+        errors[i] = node.error;
+      } // if (error)
+    } // for (i)
+    if (last != null) {
+      calculator.clear();
+      calculator.add(last.result);
+    } // if (last)
+    return values;
+  } // run(BFExpression[], BFCalculator, BFRegisters, RuntimeException[])
+
+  /**
+   * Runs a script one line at a time on the calling thread, with the same
+   * arguments and results as run.
+   *
+   * @param lines the compiled lines, with null for lines to skip
+   * @param calculator the calculator
+   * @param registers the registers
+   * @param errors where to put the exception each failed line threw, or null
+   * @return the value of each line, as run returns
+   */
+  private static BigFraction[] runInOrder(BFExpression[] lines, BFCalculator calculator,
+      BFRegisters registers, RuntimeException[] errors) {
+    BigFraction[] values = new BigFraction[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      if (lines[i] == null) {
+        continue;
+      } // if (lines)
+      long start = BFMetrics.ENABLED ? BFMetrics.start() : 0;
+      try {
+        lines[i].execute(calculator, registers);
+        values[i] = lines[i].isStore()
+            ? registers.get(lines[i].storeSlot())
+            : calculator.get();
+      } catch (RuntimeException e) {
+        if (BFMetrics.ENABLED) {
+          BFMetrics.error(e);
+        } // if (ENABLED)
+        if (errors != null) {
+          errors[i] = e;
+        } // if (errors)
+      } finally {
+        if (BFMetrics.ENABLED) {
+          BFMetrics.time(BFMetrics.Op.PROCESS_INPUT, start);
+        } // if (ENABLED)
+      } // try/catch/finally
+    } // for (i)
+    return values;
+  } // runInOrder(BFExpression[], BFCalculator, BFRegisters, RuntimeException[])
+
+  /**
+   * Script class completes once every line of a script is done.
+   */
+  private static final class Script extends CountedCompleter<Void> {
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The line nodes, null where a line is skipped.
+     */
+    final Node[] nodes;
+
+    /**
+     * The calculator, for the values it would show.
+     */
+    final BFCalculator calculator;
+
+    /**
+     * The policy the calculator would use on the thread running the script.
+     */
+    final NormalizationPolicy policy;
+
+    /**
+     * What the calculator held before the script.
+     */
+    final BigFraction initial;
+
+    /**
+     * The lines that depend on nothing.
+     */
+    private List<Node> ready;
+
+    /**
+     * Constructor for Script.
+     *
+     * @param size the number of lines
+     * @param calculator the calculator
+     * @param initial what the calculator held before the script
+     */
+    Script(int size, BFCalculator calculator, BigFraction initial) {
+      this.nodes = new Node[size];
+      this.calculator = calculator;
+      this.policy = calculator.policy();
+      this.initial = initial;
+    } // Script(int, BFCalculator, BigFraction)
+
+    /**
+     * Sets the lines to start with and counts the lines to wait for.
+     *
+     * @param start the lines that depend on nothing
+     */
+    void count(List<Node> start) {
+      this.ready = start;
+      int count = 0;
+      for (Node node : nodes) {
+        if (node != null) {
+          count++;
+        } // if (node)
+      } // for (node)
+      setPendingCount(count);
+    } // count(List<Node>)
+
+    /**
+     * Starts the lines that depend on nothing; each line that finishes
+     * counts down once more.
+     */
+    @Override
+    public void compute() {
+      for (Node node : ready) {
+        node.fork();
+      } // for (node)
+      tryComplete();
+    } // compute()
+  } // Script class
+
+  /**
+   * Node class is one line of a script, run once every line it depends on
+   * is done.
+   */
+  private static final class Node extends RecursiveAction {
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The script the line belongs to.
+     */
+    final Script script;
+
+    /**
+     * The line.
+     */
+    final BFExpression line;
+
+    /**
+     * Lines still to finish before this one can run.
+     */
+    final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Lines waiting for this one.
+     */
+    private final List<Node> dependents = new ArrayList<>();
+
+    /**
+     * What to do once this line's carried value is known, for lines that
+     * found out late that they need it.
+     */
+    private List<Runnable> waiters;
+
+    /**
+     * Whether this line's carried value is known.
+     */
+    private boolean resolved;
+
+    /**
+     * For an expression, the register values it reads, by slot.
+     */
+    BigFraction[] inputs;
+
+    /**
+     * For an expression, the STORE supplying each register, by slot, or
+     * null if there are none.
+     */
+    Node[] writers;
+
+    /**
+     * For an expression, the expression before it, or null.
+     */
+    Node previous;
+
+    /**
+     * For a STORE, the expression whose value it copies, or null.
+     */
+    Node source;
+
+    /**
+     * What evaluating an expression gave.
+     */
+    BigFraction result;
+
+    /**
+     * The calculator's value after an expression, or a STORE's value.
+     */
+    BigFraction value;
+
+    /**
+     * The calculator's value after this expression, even if it failed.
+     */
+    BigFraction carried;
+
+    /**
+     * What the line threw, or null.
+     */
+    RuntimeException error;
+
+    /**
+     * Constructor for Node.
+     *
+     * @param script the script
+     * @param line the line
+     */
+    Node(Script script, BFExpression line) {
+      this.script = script;
+      this.line = line;
+    } // Node(Script, BFExpression)
+
+    /**
+     * Makes this line wait for another. Only called before the script
+     * starts. For a STORE the other line is also where its value comes from.
+     *
+     * @param other the line to wait for, or null for none
+     */
+    void after(Node other) {
+      if (line.isStore()) {
+        source = other;
+      } // if (isStore)
+      if (other != null) {
+        pending.incrementAndGet();
+        other.dependents.add(this);
+      } // if (other)
+    } // after(Node)
+
+    /**
+     * Runs the line, then passes its value on.
+     */
+    @Override
+    protected void compute() {
+      try {
+        if (BFMetrics.ENABLED) {
+          long start = BFMetrics.start();
+          try {
+            execute();
+          } finally {
+            BFMetrics.time(BFMetrics.Op.PROCESS_INPUT, start);
+          } // try/finally
+          if (error != null) {
+            BFMetrics.error(error);
+          } // if (error)
+        } else {
+          execute();
+        } // if (ENABLED)
+        if (error != null && previous != null && previous.whenResolved(this::resolveLater)) {
+          return;
+        } // if (waiting)
+        resolve();
+      } catch (Throwable t) {
+        script.completeExceptionally(t);
+      } // try/catch
+    } // compute()
+
+    /**
+     * Evaluates an expression or reads the value a STORE copies.
+     */
+    private void execute() {
+      if (line.isStore()) {
+        value = source == null ? script.initial : source.carried;
+        return;
+      } // if (isStore)
+      for (int slot = 0; writers != null && slot < writers.length; slot++) {
+        if (writers[slot] != null) {
+          inputs[slot] = writers[slot].value;
+        } // if (writers)
+      } // for (slot)
+      try {
+        result = line.evaluate(inputs);
+        value = script.calculator.loaded(result, script.policy);
+      } catch (RuntimeException e) {
+        error = e;
+      } // try/catch
+      inputs = null;
+      writers = null;
+    } // execute()
+
+    /**
+     * Resolves this line from a task of its own, so a long run of failed
+     * lines waiting on each other does not resolve in one deep call chain.
+     */
+    private void resolveLater() {
+      ForkJoinTask.adapt(this::resolveSafely).fork();
+    } // resolveLater()
+
+    /**
+     * Resolves this line, failing the script if anything goes wrong.
+     */
+    private void resolveSafely() {
+      try {
+        resolve();
+      } catch (Throwable t) {
+        script.completeExceptionally(t);
+      } // try/catch
+    } // resolveSafely()
+
+    /**
+     * Settles the value this line leaves in the calculator, then starts the
+     * lines that were waiting for it.
+     */
+    private void resolve() {
+      if (!line.isStore()) {
+        if (error == null) {
+          carried = value;
+        } else {
+          carried = previous == null ? script.initial : previous.carried;
+        } // if (error)
+      } // if (isStore)
+      List<Runnable> late;
+      synchronized (this) {
+        resolved = true;
+        late = waiters;
+        waiters = null;
+      } // synchronized
+      if (late != null) {
+        for (Runnable waiter : late) {
+          waiter.run();
+        } // for (waiter)
+      } // if (late)
+      for (Node dependent : dependents) {
+        if (dependent.pending.decrementAndGet() == 0) {
+          dependent.fork();
+        } // if (ready)
+      } // for (dependent)
+      script.tryComplete();
+    } // resolve()
+
+    /**
+     * Arranges for something to happen once this line is resolved.
+     *
+     * @param waiter what to do
+     * @return false, doing nothing, if this line is already resolved
+     */
+    synchronized boolean whenResolved(Runnable waiter) {
+      if (resolved) {
+        return false;
+      } // if (resolved)
+      if (waiters == null) {
+        waiters = new ArrayList<>();
+      } // if (waiters)
+      waiters.add(waiter);
+      return true;
+    } // whenResolved(Runnable)
+  } // Node class
+} // BFScriptExecutor class
@@ -1,27 +1,156 @@
 package edu.grinnell.csc207.util;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.MathContext;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Collection;
+import java.util.stream.Collector;
 
 /**
  * BigFraction class that represents a fraction using BigInteger for high precision.
  * It supports operations like addition, subtraction, multiplication, and division.
  * All fractions are stored in their simplest form.
+ *
+ * Values whose numerator and denominator both fit in a long are kept in a pair
+ * of long fields and computed with overflow-checked primitive arithmetic. A
+ * result is only promoted to BigInteger when it actually overflows.
+ *
+ * Larger results are reduced according to a NormalizationPolicy, either the
+ * calling thread's or one passed to the arithmetic methods. Under a lazy
+ * policy a result keeps its unreduced numerator and denominator until it is
+ * observed, at which point it is reduced in place. Everything observable is
+ * still in lowest terms.
+ *
+ * The valueOf factories hand out shared instances for small numerators and
+ * denominators, and arithmetic results in that range reuse them too.
+ *
+ * Fractions are ordered, compared and hashed by value, so they can be
+ * sorted and used as keys whichever representation they are in. As a
+ * Number they convert to correctly rounded doubles and floats, and
+ * toBigDecimal rounds to any MathContext.
  * Author: Slok Rajbhandari
  */
-public class BigFraction {
+public class BigFraction extends Number implements Comparable<BigFraction> {
+
+  /**
+   * Largest magnitude of a cached numerator.
+   */
+  static final int CACHED_NUMERATOR = 64;
+
+  /**
+   * Largest cached denominator.
+   */
+  static final int CACHED_DENOMINATOR = 16;
+
+  /**
+   * Bound on the relative error of the double estimate in compareTo: four
+   * roundings of 2^-53 each, with room to spare.
+   */
+  private static final double ESTIMATE_ERROR = 0x1p-48;
+
+  /**
+   * Values below this convert to double exactly.
+   */
+  private static final long DOUBLE_EXACT = 1L << 53;
+
+  /**
+   * Values below this convert to float exactly.
+   */
+  private static final long FLOAT_EXACT = 1L << 24;
+
+  /**
+   * Significand bits of a double, including the implicit one.
+   */
+  private static final int DOUBLE_PRECISION = 53;
+
+  /**
+   * Significand bits of a float, including the implicit one.
+   */
+  private static final int FLOAT_PRECISION = 24;
+
+  /**
+   * Bits kept beyond the output precision when very large parts are cut
+   * down before a conversion. The more there are, the less often the cut
+   * leaves the result in doubt.
+   */
+  private static final int TRUNCATION_SLACK = 64;
+
+  /**
+   * log10(2), for counting digits from bits.
+   */
+  private static final double LOG10_2 = Math.log10(2);
+
+  /**
+   * Version of the serialized form.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Shared instances of n/d for d in 1..CACHED_DENOMINATOR and |n| up to
+   * CACHED_NUMERATOR, indexed by [d - 1][n + CACHED_NUMERATOR]. Entries that
+   * are not in lowest terms are null.
+   */
+  private static final BigFraction[][] CACHE = buildCache();
+
+  /**
+   * The value zero.
+   */
+  public static final BigFraction ZERO = valueOf(0);
+
+  /**
+   * The value one.
+   */
+  public static final BigFraction ONE = valueOf(1);
 
   /**
    * Numerator of BigInteger type, required to make
-   * fraction.
+   * fraction. For small fractions this is filled in lazily.
    */
   private BigInteger numerator;
 
   /**
-   * Numerator of BigInteger type, required to make
-   * fraction.
+   * Denominator of BigInteger type, required to make
+   * fraction. For small fractions this is filled in lazily.
    */
   private BigInteger denominator;
 
+  /**
+   * True when the fraction is held in num and den instead of the BigIntegers.
+   */
+  private boolean small;
+
+  /**
+   * Numerator of a small fraction. Never Long.MIN_VALUE, so it can be negated.
+   */
+  private long num;
+
+  /**
+   * Denominator of a small fraction. Always positive.
+   */
+  private long den;
+
+  /**
+   * True while the BigInteger pair has not been reduced yet. Only written
+   * under the lock, and read first so the pair is seen consistently.
+   */
+  private volatile boolean pending;
+
+  /**
+   * The text of the fraction once it has been rendered, or null. Like
+   * String's hash, it may be computed more than once by racing threads,
+   * which always agree.
+   */
+  private transient String rendered;
+
+  /**
+   * The hash of the value once it has been computed, or 0. Racy like
+   * rendered.
+   */
+  private transient int hash;
+
   /**
    * Constructor for BigFraction that initializes the fraction with given numerator and denominator.
    *
@@ -29,12 +158,12 @@ public class BigFraction {
    * @param den the denominator of the fraction
    */
   public BigFraction(BigInteger num, BigInteger den) {
-    if (den.equals(BigInteger.ZERO)) {
+    if (den.signum() == 0) {
       throw new ArithmeticException("Denominator cannot be zero");
     } // end of if(den)
     this.numerator = num;
     this.denominator = den;
-    reduce(); // Simplify the fraction upon creation
+    settle(NormalizationPolicy.current()); // Simplify the fraction upon creation
   } // BigFraction(BigInteger num, BigInteger den)
 
   /**
@@ -45,33 +174,107 @@ public class BigFraction {
    * @param den the denominator of the fraction
    */
   public BigFraction(int num, int den) {
-    this(BigInteger.valueOf(num), BigInteger.valueOf(den));
+    if (den == 0) {
+      throw new ArithmeticException("Denominator cannot be zero");
+    } // end of if(den)
+    setSmall(num, den);
   } // BigFraction(int num, int den)
 
   /**
    * Constructor for BigFraction from a string input (e.g., "3/4" or "5").
+   * Either part may have a sign, and whitespace around the fraction or
+   * the slash is ignored. BigFraction.parse does the same without
+   * allocating a new instance for small values.
    *
    * @param fraction the string representation of the fraction
    */
   public BigFraction(String fraction) {
-    String[] parts = fraction.split("/");
-    if (parts.length == 2) {
-      this.numerator = new BigInteger(parts[0]);
-      this.denominator = new BigInteger(parts[1]);
-    } else {
-      this.numerator = new BigInteger(parts[0]);
-      this.denominator = BigInteger.ONE;
-    } // if loop (parts.length)
-    reduce();
+    BigFraction parsed = BFParser.parse(fraction, 0, fraction.length());
+    synchronized (parsed) {
+      this.small = parsed.small;
+      this.num = parsed.num;
+      this.den = parsed.den;
+      this.numerator = parsed.numerator;
+      this.denominator = parsed.denominator;
+      this.pending = parsed.pending;
+    } // synchronized
   } // BigFraction(String fraction)
 
+  /**
+   * Builds a fraction from fields that the caller fills in.
+   */
+  private BigFraction() {
+  } // BigFraction()
+
+  /**
+   * Parses a fraction such as "3/4", "-5" or " +22 / -7 ".
+   *
+   * @param text the text
+   * @return the fraction, shared if it is small
+   * @throws NumberFormatException if the text is not a fraction
+   * @throws ArithmeticException if the denominator is zero
+   */
+  public static BigFraction parse(CharSequence text) {
+    return BFParser.parse(text, 0, text.length());
+  } // parse(CharSequence)
+
+  /**
+   * Parses a fraction from part of a character array.
+   *
+   * @param chars the characters
+   * @param offset the first character
+   * @param length how many characters to read
+   * @return the fraction
+   * @throws NumberFormatException if the characters are not a fraction
+   * @throws ArithmeticException if the denominator is zero
+   */
+  public static BigFraction parse(char[] chars, int offset, int length) {
+    return BFParser.parse(CharBuffer.wrap(chars), offset, offset + length);
+  } // parse(char[], int, int)
+
+  /**
+   * Parses a fraction from part of a byte array of ASCII digits.
+   *
+   * @param bytes the bytes
+   * @param offset the first byte
+   * @param length how many bytes to read
+   * @return the fraction
+   * @throws NumberFormatException if the bytes are not a fraction
+   * @throws ArithmeticException if the denominator is zero
+   */
+  public static BigFraction parse(byte[] bytes, int offset, int length) {
+    return BFParser.parse(ByteBuffer.wrap(bytes, offset, length));
+  } // parse(byte[], int, int)
+
+  /**
+   * Parses a fraction from the bytes between a buffer's position and limit,
+   * read as ASCII, and moves the position to the limit. Nothing is decoded
+   * to a String.
+   *
+   * @param buffer the bytes
+   * @return the fraction
+   * @throws NumberFormatException if the bytes are not a fraction
+   * @throws ArithmeticException if the denominator is zero
+   */
+  public static BigFraction parse(ByteBuffer buffer) {
+    return BFParser.parse(buffer);
+  } // parse(ByteBuffer)
+
   /**
    * Returns the numerator of the fraction.
    *
    * @return the numerator as a BigInteger
    */
   public BigInteger numerator() {
-    return numerator;
+    if (pending) {
+      normalize();
+    } // if (pending)
+    BigInteger result = numerator;
+    if (result == null) {
+      result = BigInteger.valueOf(num);
+      numerator = result;
+    } // if (result)
+    return result;
   } // numerator()
 
   /**
@@ -80,7 +283,15 @@ public class BigFraction {
    * @return the denominator as a BigInteger
    */
   public BigInteger denominator() {
-    return denominator;
+    if (pending) {
+      normalize();
+    } // if (pending)
+    BigInteger result = denominator;
+    if (result == null) {
+      result = BigInteger.valueOf(den);
+      denominator = result;
+    } // if (result)
+    return result;
   } // denominator()
 
   /**
@@ -89,7 +300,7 @@ public class BigFraction {
    * @return the numerator as a BigInteger
    */
   public BigInteger getNumerator() {
-    return this.numerator;
+    return numerator();
   } // getNumerator()
 
   /**
@@ -98,7 +309,7 @@ public class BigFraction {
    * @return the denominator as a BigInteger
    */
   public BigInteger getDenominator() {
-    return this.denominator;
+    return denominator();
   } // getDenominator()
 
   /**
@@ -108,12 +319,26 @@ public class BigFraction {
    * @return the result of addition
    */
   public BigFraction add(BigFraction other) {
-    BigInteger num = this.numerator.multiply(other.denominator)
-        .add(other.numerator.multiply(this.denominator));
-    BigInteger den = this.denominator.multiply(other.denominator);
-    return new BigFraction(num, den);
+    return add(other, NormalizationPolicy.current());
   } // add(BigFraction other)
 
+  /**
+   * Adds two BigFraction values under the given normalization policy.
+   *
+   * @param other the other BigFraction to add
+   * @param policy when to reduce the result
+   * @return the result of addition
+   */
+  public BigFraction add(BigFraction other, NormalizationPolicy policy) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      BigFraction result = addOrSubtract(other, false, policy);
+      BFMetrics.operation(BFMetrics.Op.ADD, start, this, other);
+      return result;
+    } // if (ENABLED)
+    return addOrSubtract(other, false, policy);
+  } // add(BigFraction, NormalizationPolicy)
+
   /**
    * Subtracts another BigFraction from this one.
    *
@@ -121,12 +346,27 @@ public class BigFraction {
    * @return the result of subtraction
    */
   public BigFraction subtract(BigFraction other) {
-    BigInteger num = this.numerator.multiply(other.denominator)
-        .subtract(other.numerator.multiply(this.denominator));
-    BigInteger den = this.denominator.multiply(other.denominator);
-    return new BigFraction(num, den);
+    return subtract(other, NormalizationPolicy.current());
   } // subtract(BigFraction other)
 
+  /**
+   * Subtracts another BigFraction from this one under the given
+   * normalization policy.
+   *
+   * @param other the other BigFraction to subtract
+   * @param policy when to reduce the result
+   * @return the result of subtraction
+   */
+  public BigFraction subtract(BigFraction other, NormalizationPolicy policy) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      BigFraction result = addOrSubtract(other, true, policy);
+      BFMetrics.operation(BFMetrics.Op.SUBTRACT, start, this, other);
+      return result;
+    } // if (ENABLED)
+    return addOrSubtract(other, true, policy);
+  } // subtract(BigFraction, NormalizationPolicy)
+
   /**
    * Multiplies two BigFraction values and returns the result.
    *
@@ -134,10 +374,46 @@ public class BigFraction {
    * @return the result of multiplication
    */
   public BigFraction multiply(BigFraction other) {
-    return new BigFraction(this.numerator.multiply(other.numerator),
-        this.denominator.multiply(other.denominator));
+    return multiply(other, NormalizationPolicy.current());
   } // multiply(BigFraction other)
 
+  /**
+   * Multiplies two BigFraction values under the given normalization policy.
+   *
+   * @param other the other BigFraction to multiply
+   * @param policy when to reduce the result
+   * @return the result of multiplication
+   */
+  public BigFraction multiply(BigFraction other, NormalizationPolicy policy) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      BigFraction result = times(other, policy);
+      BFMetrics.operation(BFMetrics.Op.MULTIPLY, start, this, other);
+      return result;
+    } // if (ENABLED)
+    return times(other, policy);
+  } // multiply(BigFraction, NormalizationPolicy)
+
+  /**
+   * Does the work of multiply.
+   *
+   * @param other the other BigFraction to multiply
+   * @param policy when to reduce the result
+   * @return the result of multiplication
+   */
+  private BigFraction times(BigFraction other, NormalizationPolicy policy) {
+    if (this.small && other.small) {
+      return multiplySmall(this.num, this.den, other.num, other.den);
+    } // if (small)
+    if (!policy.isEager()) {
+      BigInteger[] a = this.rawPair();
+      BigInteger[] b = other.rawPair();
+      return fromUnreduced(a[0].multiply(b[0]), a[1].multiply(b[1]), policy);
+    } // if (policy)
+    return multiplyBig(this.numerator(), this.denominator(),
+        other.numerator(), other.denominator());
+  } // times(BigFraction, NormalizationPolicy)
+
   /**
    * Divides this BigFraction by another and returns the result.
    *
@@ -145,34 +421,1337 @@ public class BigFraction {
    * @return the result of division
    */
   public BigFraction divide(BigFraction other) {
-    return new BigFraction(this.numerator.multiply(other.denominator),
-        this.denominator.multiply(other.numerator));
+    return divide(other, NormalizationPolicy.current());
   } // divide(BigFraction other)
 
+  /**
+   * Divides this BigFraction by another under the given normalization policy.
+   *
+   * @param other the other BigFraction to divide by
+   * @param policy when to reduce the result
+   * @return the result of division
+   */
+  public BigFraction divide(BigFraction other, NormalizationPolicy policy) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      BigFraction result = quotient(other, policy);
+      BFMetrics.operation(BFMetrics.Op.DIVIDE, start, this, other);
+      return result;
+    } // if (ENABLED)
+    return quotient(other, policy);
+  } // divide(BigFraction, NormalizationPolicy)
+
+  /**
+   * Does the work of divide.
+   *
+   * @param other the other BigFraction to divide by
+   * @param policy when to reduce the result
+   * @return the result of division
+   */
+  private BigFraction quotient(BigFraction other, NormalizationPolicy policy) {
+    if (other.signum() == 0) {
+      throw new ArithmeticException("Denominator cannot be zero");
+    } // if (other)
+    if (this.small && other.small) {
+      // other.num is never Long.MIN_VALUE, so moving its sign is safe
+      return other.num < 0
+          ? multiplySmall(this.num, this.den, -other.den, -other.num)
+          : multiplySmall(this.num, this.den, other.den, other.num);
+    } // if (small)
+    if (!policy.isEager()) {
+      BigInteger[] a = this.rawPair();
+      BigInteger[] b = other.rawPair();
+      BigInteger n = a[0].multiply(b[1]);
+      BigInteger d = a[1].multiply(b[0]);
+      return d.signum() < 0
+          ? fromUnreduced(n.negate(), d.negate(), policy)
+          : fromUnreduced(n, d, policy);
+    } // if (policy)
+    BigInteger otherNum = other.numerator();
+    BigInteger otherDen = other.denominator();
+    return otherNum.signum() < 0
+        ? multiplyBig(this.numerator(), this.denominator(), otherDen.negate(), otherNum.negate())
+        : multiplyBig(this.numerator(), this.denominator(), otherDen, otherNum);
+  } // quotient(BigFraction, NormalizationPolicy)
+
+  /**
+   * Raises the fraction to an integer power. A power of a fraction in
+   * lowest terms is in lowest terms too, so the numerator and denominator
+   * are raised separately, by repeated squaring, and never reduced. Small
+   * fractions stay in longs until a power overflows them.
+   *
+   * @param exponent the power, which may be negative
+   * @return this^exponent, one for exponent 0
+   * @throws ArithmeticException if the fraction is zero and the exponent
+   *     is negative
+   */
+  public BigFraction pow(int exponent) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      BigFraction result = power(exponent);
+      BFMetrics.operation(BFMetrics.Op.POWER, start, this, this);
+      return result;
+    } // if (ENABLED)
+    return power(exponent);
+  } // pow(int)
+
+  /**
+   * Does the work of pow.
+   *
+   * @param exponent the power
+   * @return this^exponent
+   */
+  private BigFraction power(int exponent) {
+    if (exponent < 0) {
+      BigFraction reciprocal = reciprocal();
+      return exponent == Integer.MIN_VALUE
+          ? reciprocal.power(Integer.MAX_VALUE).times(reciprocal, NormalizationPolicy.EAGER)
+          : reciprocal.power(-exponent);
+    } else if (exponent == 0) {
+      return ONE;
+    } else if (exponent == 1) {
+      return this;
+    } // if (exponent)
+    if (small) {
+      try {
+        return fromReducedLongs(powExact(num, exponent), powExact(den, exponent));
+      } catch (ArithmeticException overflowed) {
+        // Fall through to BigInteger
+      } // try/catch
+    } // if (small)
+    return fromReduced(numerator().pow(exponent), denominator().pow(exponent));
+  } // power(int)
+
+  /**
+   * Returns one over the fraction.
+   *
+   * @return the reciprocal, in lowest terms
+   * @throws ArithmeticException if the fraction is zero
+   */
+  private BigFraction reciprocal() {
+    if (signum() == 0) {
+      throw new ArithmeticException("Denominator cannot be zero");
+    } // if (zero)
+    if (small) {
+      // num is never Long.MIN_VALUE, so moving its sign is safe
+      return num < 0 ? fromReducedLongs(-den, -num) : fromReducedLongs(den, num);
+    } // if (small)
+    BigInteger n = numerator();
+    BigInteger d = denominator();
+    return n.signum() < 0 ? fromReduced(d.negate(), n.negate()) : fromReduced(d, n);
+  } // reciprocal()
+
+  /**
+   * Raises a long to a non-negative power by repeated squaring.
+   *
+   * @param base the base
+   * @param exponent the power, not negative
+   * @return base^exponent
+   * @throws ArithmeticException if the result, or a square on the way to
+   *     it, overflows a long
+   */
+  private static long powExact(long base, int exponent) {
+    long result = 1;
+    while (true) {
+      if ((exponent & 1) != 0) {
+        result = Math.multiplyExact(result, base);
+      } // if (odd)
+      exponent >>>= 1;
+      if (exponent == 0) {
+        return result;
+      } // if (done)
+      base = Math.multiplyExact(base, base);
+    } // while
+  } // powExact(long, int)
+
+  /**
+   * Finds the fraction closest to this one whose denominator is at most
+   * maxDenominator, using the continued fraction expansion of this one:
+   * the answer is either the last convergent whose denominator fits or the
+   * largest semiconvergent after it. Fractions that already fit are
+   * returned as they are.
+   *
+   * The result differs from this fraction by at most 1/(2 * maxDenominator),
+   * since every multiple of 1/maxDenominator is a candidate. Approximating
+   * after every step of a long computation therefore keeps its operands at
+   * a fixed size, at the price of at most that much error per step.
+   *
+   * @param maxDenominator the largest denominator allowed, positive
+   * @return the closest such fraction
+   * @throws IllegalArgumentException if maxDenominator is not positive
+   */
+  public BigFraction limitDenominator(BigInteger maxDenominator) {
+    if (maxDenominator.signum() <= 0) {
+      throw new IllegalArgumentException("Invalid maximum denominator: " + maxDenominator);
+    } // if (maxDenominator)
+    if (small) {
+      return maxDenominator.bitLength() >= Long.SIZE || den <= maxDenominator.longValue()
+          ? this
+          : limitSmall(num, den, maxDenominator.longValue());
+    } // if (small)
+    BigInteger n = numerator();
+    BigInteger d = denominator();
+    if (d.compareTo(maxDenominator) <= 0) {
+      return this;
+    } // if (fits)
+    BigInteger p0 = BigInteger.ZERO;
+    BigInteger q0 = BigInteger.ONE;
+    BigInteger p1 = BigInteger.ONE;
+    BigInteger q1 = BigInteger.ZERO;
+    BigInteger x = n.abs();
+    BigInteger y = d;
+    while (true) {
+      // d > maxDenominator, so this stops before the expansion runs out
+      BigInteger[] qr = x.divideAndRemainder(y);
+      BigInteger q2 = q0.add(qr[0].multiply(q1));
+      if (q2.compareTo(maxDenominator) > 0) {
+        break;
+      } // if (q2)
+      BigInteger p2 = p0.add(qr[0].multiply(p1));
+      p0 = p1;
+      q0 = q1;
+      p1 = p2;
+      q1 = q2;
+      x = y;
+      y = qr[1];
+    } // while
+    BigInteger k = maxDenominator.subtract(q0).divide(q1);
+    BigInteger ps = p0.add(k.multiply(p1));
+    BigInteger qs = q0.add(k.multiply(q1));
+    // Compare |p1/q1 - x| with |ps/qs - x| over the common denominator d
+    BigInteger e1 = p1.multiply(d).subtract(n.abs().multiply(q1)).abs();
+    BigInteger es = ps.multiply(d).subtract(n.abs().multiply(qs)).abs();
+    boolean convergent = e1.multiply(qs).compareTo(es.multiply(q1)) <= 0;
+    BigInteger p = convergent ? p1 : ps;
+    return fromReduced(n.signum() < 0 ? p.negate() : p, convergent ? q1 : qs);
+  } // limitDenominator(BigInteger)
+
+  /**
+   * Finds the fraction closest to this one whose denominator is at most
+   * maxDenominator, as limitDenominator(BigInteger) does.
+   *
+   * @param maxDenominator the largest denominator allowed, positive
+   * @return the closest such fraction
+   * @throws IllegalArgumentException if maxDenominator is not positive
+   */
+  public BigFraction limitDenominator(long maxDenominator) {
+    if (maxDenominator <= 0) {
+      throw new IllegalArgumentException("Invalid maximum denominator: " + maxDenominator);
+    } // if (maxDenominator)
+    if (small) {
+      return den <= maxDenominator ? this : limitSmall(num, den, maxDenominator);
+    } // if (small)
+    return limitDenominator(BigInteger.valueOf(maxDenominator));
+  } // limitDenominator(long)
+
+  /**
+   * Does the work of limitDenominator for a small fraction. Every
+   * convergent and semiconvergent of n/d has terms no larger than |n| and
+   * d, and the errors compared below are less than d, so longs suffice
+   * until the final comparison, which is done on 128-bit products.
+   *
+   * @param n the numerator, never Long.MIN_VALUE
+   * @param d the denominator, greater than max
+   * @param max the largest denominator allowed, positive
+   * @return the closest fraction with denominator at most max
+   */
+  private static BigFraction limitSmall(long n, long d, long max) {
+    long p0 = 0;
+    long q0 = 1;
+    long p1 = 1;
+    long q1 = 0;
+    long x = Math.abs(n);
+    long y = d;
+    while (true) {
+      long a = x / y;
+      long q2 = q0 + a * q1;
+      if (q2 > max) {
+        break;
+      } // if (q2)
+      long p2 = p0 + a * p1;
+      p0 = p1;
+      q0 = q1;
+      p1 = p2;
+      q1 = q2;
+      long r = x - a * y;
+      x = y;
+      y = r;
+    } // while
+    long k = (max - q0) / q1;
+    long ps = p0 + k * p1;
+    long qs = q0 + k * q1;
+    // The true values fit in a long, so the wrapped products cancel exactly
+    long e1 = Math.abs(p1 * d - Math.abs(n) * q1);
+    long es = Math.abs(ps * d - Math.abs(n) * qs);
+    boolean convergent = compareProducts(e1, qs, es, q1) <= 0;
+    long p = convergent ? p1 : ps;
+    return fromReducedLongs(n < 0 ? -p : p, convergent ? q1 : qs);
+  } // limitSmall(long, long, long)
+
+  /**
+   * Compares a * b with c * d exactly, using 128-bit products.
+   *
+   * @param a a factor of the first product
+   * @param b a factor of the first product
+   * @param c a factor of the second product
+   * @param d a factor of the second product
+   * @return negative, zero or positive as a * b is less than, equal to or
+   *     greater than c * d
+   */
+  static int compareProducts(long a, long b, long c, long d) {
+    long high1 = Math.multiplyHigh(a, b);
+    long high2 = Math.multiplyHigh(c, d);
+    return high1 != high2 ? Long.compare(high1, high2) : Long.compareUnsigned(a * b, c * d);
+  } // compareProducts(long, long, long, long)
+
+  /**
+   * Adds up any number of fractions, pairing them as a balanced tree so
+   * that operands stay similar in size. Large inputs are summed in parallel.
+   *
+   * @param values the fractions
+   * @return their sum, zero if there are none
+   */
+  public static BigFraction sum(BigFraction... values) {
+    return BFReduction.reduce(values, 0, values.length, BFOperator.ADD, ZERO);
+  } // sum(BigFraction...)
+
+  /**
+   * Adds up a collection of fractions as a balanced tree.
+   *
+   * @param values the fractions
+   * @return their sum, zero if there are none
+   */
+  public static BigFraction sum(Collection<BigFraction> values) {
+    return sum(values.toArray(new BigFraction[0]));
+  } // sum(Collection)
+
+  /**
+   * Multiplies any number of fractions, pairing them as a balanced tree.
+   * Large inputs are multiplied in parallel.
+   *
+   * @param values the fractions
+   * @return their product, one if there are none
+   */
+  public static BigFraction product(BigFraction... values) {
+    return BFReduction.reduce(values, 0, values.length, BFOperator.MULTIPLY, ONE);
+  } // product(BigFraction...)
+
+  /**
+   * Multiplies a collection of fractions as a balanced tree.
+   *
+   * @param values the fractions
+   * @return their product, one if there are none
+   */
+  public static BigFraction product(Collection<BigFraction> values) {
+    return product(values.toArray(new BigFraction[0]));
+  } // product(Collection)
+
+  /**
+   * Returns a collector that sums a stream of fractions as a balanced tree.
+   * It works with parallel streams.
+   *
+   * @return the collector
+   */
+  public static Collector<BigFraction, ?, BigFraction> summing() {
+    return BFReduction.collector(BFOperator.ADD, ZERO, false);
+  } // summing()
+
+  /**
+   * Returns a collector that multiplies a stream of fractions as a balanced
+   * tree. It works with parallel streams.
+   *
+   * @return the collector
+   */
+  public static Collector<BigFraction, ?, BigFraction> multiplying() {
+    return BFReduction.collector(BFOperator.MULTIPLY, ONE, false);
+  } // multiplying()
+
+  /**
+   * Returns a collector that averages a stream of fractions exactly. It
+   * throws ArithmeticException on an empty stream.
+   *
+   * @return the collector
+   */
+  public static Collector<BigFraction, ?, BigFraction> averaging() {
+    return BFReduction.collector(BFOperator.ADD, ZERO, true);
+  } // averaging()
+
+  /**
+   * Returns the sign of the fraction.
+   *
+   * @return -1, 0 or 1 as the fraction is negative, zero or positive
+   */
+  public int signum() {
+    return small ? Long.signum(num) : numerator.signum();
+  } // signum()
+
+  /**
+   * Adds or subtracts other following Henrici: only gcd(d1, d2) is cancelled
+   * before the cross products are formed, and the remaining common factor is
+   * found with a gcd against that (usually small) value.
+   *
+   * @param other the other operand
+   * @param negate true to subtract other instead of adding it
+   * @param policy when to reduce the result
+   * @return the sum or difference
+   */
+  private BigFraction addOrSubtract(BigFraction other, boolean negate,
+      NormalizationPolicy policy) {
+    if (this.small && other.small) {
+      try {
+        return addSmall(this.num, this.den, negate ? -other.num : other.num, other.den);
+      } catch (ArithmeticException overflow) {
+        // Fall through to the BigInteger path
+      } // try/catch
+    } // if (small)
+    if (!policy.isEager()) {
+      BigInteger[] a = this.rawPair();
+      BigInteger[] b = other.rawPair();
+      BigInteger n2 = negate ? b[0].negate() : b[0];
+      if (a[1].equals(b[1])) {
+        return fromUnreduced(a[0].add(n2), a[1], policy);
+      } // if (same denominator)
+      return fromUnreduced(a[0].multiply(b[1]).add(n2.multiply(a[1])),
+          a[1].multiply(b[1]), policy);
+    } // if (policy)
+    BigInteger n1 = this.numerator();
+    BigInteger d1 = this.denominator();
+    BigInteger n2 = negate ? other.numerator().negate() : other.numerator();
+    BigInteger d2 = other.denominator();
+    BigInteger g = gcd(d1, d2);
+    if (g.equals(BigInteger.ONE)) {
+      return fromReduced(n1.multiply(d2).add(n2.multiply(d1)), d1.multiply(d2));
+    } // if (g)
+    BigInteger d1g = d1.divide(g);
+    BigInteger t = n1.multiply(d2.divide(g)).add(n2.multiply(d1g));
+    BigInteger g2 = gcd(t, g);
+    if (g2.equals(BigInteger.ONE)) {
+      return fromReduced(t, d1g.multiply(d2));
+    } // if (g2)
+    return fromReduced(t.divide(g2), d1g.multiply(d2.divide(g2)));
+  } // addOrSubtract(BigFraction, boolean, NormalizationPolicy)
+
+  /**
+   * Adds two reduced small fractions with overflow-checked arithmetic.
+   *
+   * @param n1 the first numerator
+   * @param d1 the first denominator
+   * @param n2 the second numerator
+   * @param d2 the second denominator
+   * @return the reduced sum
+   * @throws ArithmeticException if an intermediate value overflows a long
+   */
+  private static BigFraction addSmall(long n1, long d1, long n2, long d2) {
+    long g = gcd(d1, d2);
+    if (g == 1) {
+      return fromReducedLongs(
+          Math.addExact(Math.multiplyExact(n1, d2), Math.multiplyExact(n2, d1)),
+          Math.multiplyExact(d1, d2));
+    } // if (g)
+    long d1g = d1 / g;
+    long t = Math.addExact(Math.multiplyExact(n1, d2 / g), Math.multiplyExact(n2, d1g));
+    if (t == Long.MIN_VALUE) {
+      throw new ArithmeticException("long overflow");
+    } // if (t)
+    long g2 = gcd(Math.abs(t), g);
+    return fromReducedLongs(t / g2, Math.multiplyExact(d1g, d2 / g2));
+  } // addSmall(long, long, long, long)
+
+  /**
+   * Multiplies two reduced small fractions, cancelling gcd(n1, d2) and
+   * gcd(n2, d1) first so that the product is already in lowest terms.
+   *
+   * @param n1 the first numerator
+   * @param d1 the first denominator
+   * @param n2 the second numerator
+   * @param d2 the second denominator, which must be positive
+   * @return the reduced product
+   */
+  private static BigFraction multiplySmall(long n1, long d1, long n2, long d2) {
+    if (n1 == 0 || n2 == 0) {
+      return fromReducedLongs(0, 1);
+    } // if (zero)
+    long g1 = gcd(Math.abs(n1), d2);
+    long g2 = gcd(Math.abs(n2), d1);
+    long a = n1 / g1;
+    long b = n2 / g2;
+    long c = d1 / g2;
+    long d = d2 / g1;
+    try {
+      return fromReducedLongs(Math.multiplyExact(a, b), Math.multiplyExact(c, d));
+    } catch (ArithmeticException overflow) {
+      return fromReduced(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)),
+          BigInteger.valueOf(c).multiply(BigInteger.valueOf(d)));
+    } // try/catch
+  } // multiplySmall(long, long, long, long)
+
+  /**
+   * Multiplies two reduced fractions, cancelling gcd(n1, d2) and
+   * gcd(n2, d1) before forming the products.
+   *
+   * @param n1 the first numerator
+   * @param d1 the first denominator
+   * @param n2 the second numerator
+   * @param d2 the second denominator, which must be positive
+   * @return the reduced product
+   */
+  private static BigFraction multiplyBig(BigInteger n1, BigInteger d1,
+      BigInteger n2, BigInteger d2) {
+    if (n1.signum() == 0 || n2.signum() == 0) {
+      return fromReducedLongs(0, 1);
+    } // if (zero)
+    BigInteger g1 = gcd(n1, d2);
+    BigInteger g2 = gcd(n2, d1);
+    if (!g1.equals(BigInteger.ONE)) {
+      n1 = n1.divide(g1);
+      d2 = d2.divide(g1);
+    } // if (g1)
+    if (!g2.equals(BigInteger.ONE)) {
+      n2 = n2.divide(g2);
+      d1 = d1.divide(g2);
+    } // if (g2)
+    return fromReduced(n1.multiply(n2), d1.multiply(d2));
+  } // multiplyBig(BigInteger, BigInteger, BigInteger, BigInteger)
+
+  /**
+   * Wraps a numerator and positive denominator that may share factors,
+   * reducing them now only if the policy asks for it at this size.
+   *
+   * @param num the numerator
+   * @param den the denominator, positive
+   * @param policy when to reduce
+   * @return the fraction
+   */
+  private static BigFraction fromUnreduced(BigInteger num, BigInteger den,
+      NormalizationPolicy policy) {
+    BigFraction result = new BigFraction();
+    result.numerator = num;
+    result.denominator = den;
+    result.settle(policy);
+    return result;
+  } // fromUnreduced(BigInteger, BigInteger, NormalizationPolicy)
+
+  /**
+   * Reads the numerator and denominator without reducing them.
+   *
+   * @return the numerator and the (positive) denominator
+   */
+  private BigInteger[] rawPair() {
+    if (small) {
+      return new BigInteger[] {numerator(), denominator()};
+    } // if (small)
+    if (pending) {
+      synchronized (this) {
+        return new BigInteger[] {numerator, denominator};
+      } // synchronized
+    } // if (pending)
+    return new BigInteger[] {numerator, denominator};
+  } // rawPair()
+
+  /**
+   * Wraps a numerator and positive denominator that are already in lowest
+   * terms, using the small representation when they fit.
+   *
+   * @param num the numerator
+   * @param den the denominator
+   * @return the fraction
+   */
+  static BigFraction fromReduced(BigInteger num, BigInteger den) {
+    if (num.bitLength() < Long.SIZE && den.bitLength() < Long.SIZE) {
+      long n = num.longValue();
+      if (n != Long.MIN_VALUE) {
+        return fromReducedLongs(n, den.longValue());
+      } // if (n)
+    } // if (bitLength)
+    BigFraction result = new BigFraction();
+    result.numerator = num;
+    result.denominator = den;
+    return result;
+  } // fromReduced(BigInteger, BigInteger)
+
+  /**
+   * Wraps a long numerator and positive denominator that are already in
+   * lowest terms.
+   *
+   * @param num the numerator
+   * @param den the denominator
+   * @return the fraction
+   */
+  static BigFraction fromReducedLongs(long num, long den) {
+    if (den <= CACHED_DENOMINATOR && num >= -CACHED_NUMERATOR && num <= CACHED_NUMERATOR) {
+      return CACHE[(int) den - 1][(int) num + CACHED_NUMERATOR];
+    } // if (cached)
+    if (num == Long.MIN_VALUE) {
+      return fromReduced(BigInteger.valueOf(num), BigInteger.valueOf(den));
+    } // if (num)
+    return newSmall(num, den);
+  } // fromReducedLongs(long, long)
+
+  /**
+   * Allocates a small fraction that is already in lowest terms.
+   *
+   * @param num the numerator, never Long.MIN_VALUE
+   * @param den the denominator, positive
+   * @return the fraction
+   */
+  private static BigFraction newSmall(long num, long den) {
+    BigFraction result = new BigFraction();
+    result.small = true;
+    result.num = num;
+    result.den = den;
+    return result;
+  } // newSmall(long, long)
+
+  /**
+   * Builds the table of shared small fractions.
+   *
+   * @return the table
+   */
+  private static BigFraction[][] buildCache() {
+    BigFraction[][] table = new BigFraction[CACHED_DENOMINATOR][2 * CACHED_NUMERATOR + 1];
+    for (int d = 1; d <= CACHED_DENOMINATOR; d++) {
+      for (int n = -CACHED_NUMERATOR; n <= CACHED_NUMERATOR; n++) {
+        if (gcd(Math.abs(n), d) == 1) {
+          table[d - 1][n + CACHED_NUMERATOR] = newSmall(n, d);
+        } // if (lowest terms)
+      } // for (n)
+    } // for (d)
+    return table;
+  } // buildCache()
+
+  /**
+   * Returns the fraction n/1, shared when n is small.
+   *
+   * @param n the value
+   * @return the fraction
+   */
+  public static BigFraction valueOf(long n) {
+    return fromReducedLongs(n, 1);
+  } // valueOf(long)
+
+  /**
+   * Returns the fraction num/den in lowest terms, shared when it is small.
+   *
+   * @param num the numerator
+   * @param den the denominator
+   * @return the fraction
+   */
+  public static BigFraction valueOf(long num, long den) {
+    if (den == 0) {
+      throw new ArithmeticException("Denominator cannot be zero");
+    } // if (den)
+    return reduced(num, den);
+  } // valueOf(long, long)
+
+  /**
+   * Builds a reduced fraction from a long numerator and denominator.
+   *
+   * @param num the numerator
+   * @param den the denominator, which must not be zero
+   * @return the reduced fraction
+   */
+  static BigFraction reduced(long num, long den) {
+    if (num == Long.MIN_VALUE || den == Long.MIN_VALUE) {
+      return new BigFraction(BigInteger.valueOf(num), BigInteger.valueOf(den));
+    } // if (MIN_VALUE)
+    long g = gcd(Math.abs(num), Math.abs(den));
+    if (den < 0) {
+      g = -g;
+    } // if (den)
+    return fromReducedLongs(num / g, den / g);
+  } // reduced(long, long)
+
+  /**
+   * Tells whether two fractions have the same value, whichever
+   * representation each of them is in.
+   *
+   * @param other the other fraction
+   * @return true if the values are equal
+   */
+  boolean sameValue(BigFraction other) {
+    if (this == other) {
+      return true;
+    } else if (this.small && other.small) {
+      return this.num == other.num && this.den == other.den;
+    } // if (small)
+    return numerator().equals(other.numerator()) && denominator().equals(other.denominator());
+  } // sameValue(BigFraction)
+
+  /**
+   * Hashes the value of the fraction, so that equal values hash alike
+   * whichever representation they are in.
+   *
+   * @return the hash
+   */
+  int valueHash() {
+    long n;
+    long d;
+    if (small) {
+      n = num;
+      d = den;
+    } else {
+      BigInteger bigNum = numerator();
+      BigInteger bigDen = denominator();
+      if (bigNum.bitLength() >= Long.SIZE || bigDen.bitLength() >= Long.SIZE) {
+        return 31 * bigNum.hashCode() + bigDen.hashCode();
+      } // if (bitLength)
+      n = bigNum.longValue();
+      d = bigDen.longValue();
+    } // if (small)
+    return 31 * Long.hashCode(n) + Long.hashCode(d);
+  } // valueHash()
+
+  /**
+   * Returns the size of the larger of numerator and denominator, without
+   * reducing a pending fraction.
+   *
+   * @return its bit length, ignoring sign
+   */
+  int bitLength() {
+    if (small) {
+      return Math.max(Long.SIZE - Long.numberOfLeadingZeros(Math.abs(num)),
+          Long.SIZE - Long.numberOfLeadingZeros(den));
+    } // if (small)
+    BigInteger[] pair = rawPair();
+    return Math.max(pair[0].bitLength(), pair[1].bitLength());
+  } // bitLength()
+
+  /**
+   * Tells whether the fraction is held in the long representation.
+   *
+   * @return true if smallNumerator() and smallDenominator() are valid
+   */
+  boolean isSmall() {
+    return small;
+  } // isSmall()
+
+  /**
+   * Returns the numerator of a small fraction.
+   *
+   * @return the numerator, never Long.MIN_VALUE
+   */
+  long smallNumerator() {
+    return num;
+  } // smallNumerator()
+
+  /**
+   * Returns the denominator of a small fraction.
+   *
+   * @return the denominator, always positive
+   */
+  long smallDenominator() {
+    return den;
+  } // smallDenominator()
+
+  /**
+   * Stores num/den in the small representation, reducing it on the way.
+   * Neither argument may be Long.MIN_VALUE and den must not be zero.
+   *
+   * @param n the numerator
+   * @param d the denominator
+   */
+  private void setSmall(long n, long d) {
+    long g = gcd(Math.abs(n), Math.abs(d));
+    n /= g;
+    d /= g;
+    if (d < 0) {
+      n = -n;
+      d = -d;
+    } // if (d)
+    this.small = true;
+    this.num = n;
+    this.den = d;
+    this.numerator = null;
+    this.denominator = null;
+  } // setSmall(long, long)
+
+  /**
+   * Computes the greatest common divisor of two non-negative longs with
+   * Stein's binary algorithm.
+   *
+   * @param a the first value
+   * @param b the second value
+   * @return gcd(a, b), or the other value if one of them is zero
+   */
+  static long gcd(long a, long b) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      long gcd = binaryGcd(a, b);
+      BFMetrics.time(BFMetrics.Op.GCD, start);
+      return gcd;
+    } // if (ENABLED)
+    return binaryGcd(a, b);
+  } // gcd(long, long)
+
+  /**
+   * Does the work of gcd(long, long).
+   *
+   * @param a the first value
+   * @param b the second value
+   * @return gcd(a, b), or the other value if one of them is zero
+   */
+  private static long binaryGcd(long a, long b) {
+    if (a == 0) {
+      return b;
+    } else if (b == 0) {
+      return a;
+    } // if (a, b)
+    int shift = Long.numberOfTrailingZeros(a | b);
+    a >>>= Long.numberOfTrailingZeros(a);
+    while (b != 0) {
+      b >>>= Long.numberOfTrailingZeros(b);
+      if (a > b) {
+        long tmp = a;
+        a = b;
+        b = tmp;
+      } // if (a > b)
+      b -= a;
+    } // while (b)
+    return a << shift;
+  } // binaryGcd(long, long)
+
+  /**
+   * Computes the greatest common divisor of two BigIntegers.
+   *
+   * @param a the first value
+   * @param b the second value
+   * @return gcd(a, b)
+   */
+  private static BigInteger gcd(BigInteger a, BigInteger b) {
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      BigInteger gcd = a.gcd(b);
+      BFMetrics.time(BFMetrics.Op.GCD, start);
+      return gcd;
+    } // if (ENABLED)
+    return a.gcd(b);
+  } // gcd(BigInteger, BigInteger)
+
+  /**
+   * Finishes building a fraction from its BigInteger fields: small values
+   * are always reduced, larger ones only when the policy says so.
+   *
+   * @param policy when to reduce
+   */
+  private void settle(NormalizationPolicy policy) {
+    int bits = Math.max(numerator.bitLength(), denominator.bitLength());
+    if (bits < Long.SIZE || policy.reducesAt(bits)) {
+      reduce();
+    } else {
+      if (denominator.signum() < 0) {
+        numerator = numerator.negate();
+        denominator = denominator.negate();
+      } // if (denominator)
+      pending = true;
+    } // if (bits)
+  } // settle(NormalizationPolicy)
+
+  /**
+   * Reduces a pending fraction in place. It stays in the BigInteger
+   * representation so that other threads never see it change shape.
+   */
+  private synchronized void normalize() {
+    if (pending) {
+      long start = BFMetrics.ENABLED ? BFMetrics.start() : 0;
+      BigInteger gcd = gcd(numerator, denominator);
+      if (!gcd.equals(BigInteger.ONE)) {
+        numerator = numerator.divide(gcd);
+        denominator = denominator.divide(gcd);
+      } // if (gcd)
+      pending = false;
+      if (BFMetrics.ENABLED) {
+        BFMetrics.time(BFMetrics.Op.REDUCE, start);
+      } // if (ENABLED)
+    } // if (pending)
+  } // normalize()
+
   /**
    * Reduces the fraction to its simplest form.
    */
   private void reduce() {
-    BigInteger gcd = numerator.gcd(denominator);
+    if (BFMetrics.ENABLED) {
+      long start = BFMetrics.start();
+      reduceFields();
+      BFMetrics.time(BFMetrics.Op.REDUCE, start);
+      return;
+    } // if (ENABLED)
+    reduceFields();
+  } // reduce()
+
+  /**
+   * Does the work of reduce.
+   */
+  private void reduceFields() {
+    if (numerator.bitLength() < Long.SIZE && denominator.bitLength() < Long.SIZE) {
+      long n = numerator.longValue();
+      long d = denominator.longValue();
+      if (n != Long.MIN_VALUE && d != Long.MIN_VALUE) {
+        setSmall(n, d);
+        return;
+      } // if (MIN_VALUE)
+    } // if (bitLength)
+    BigInteger gcd = gcd(numerator, denominator);
     numerator = numerator.divide(gcd);
     denominator = denominator.divide(gcd);
     if (denominator.signum() == -1) {
       numerator = numerator.negate();
       denominator = denominator.negate();
     } // if loop (denominator)
-  } // reduce()
+    if (numerator.bitLength() < Long.SIZE && denominator.bitLength() < Long.SIZE
+        && numerator.longValue() != Long.MIN_VALUE) {
+      setSmall(numerator.longValue(), denominator.longValue());
+    } else {
+      small = false;
+    } // if (bitLength)
+  } // reduceFields()
+
+  /**
+   * Compares this fraction with another by value. Each step only runs when
+   * the cheaper ones before it cannot decide: the signs, then the bit
+   * lengths of the cross products n1 * d2 and n2 * d1, then a double
+   * estimate of their ratio, and only then the exact cross products. Two
+   * small fractions skip straight to exact 128-bit cross products. Pending
+   * fractions are compared without being reduced.
+   *
+   * @param other the other fraction
+   * @return negative, zero or positive as this is less than, equal to or
+   *     greater than other
+   */
+  @Override
+  public int compareTo(BigFraction other) {
+    if (this == other) {
+      return 0;
+    } // if (same)
+    if (this.small && other.small) {
+      return compareProducts(this.num, other.den, other.num, this.den);
+    } // if (small)
+    int sign = this.signum();
+    if (sign != other.signum()) {
+      return sign < other.signum() ? -1 : 1;
+    } else if (sign == 0) {
+      return 0;
+    } // if (sign)
+    BigInteger[] a = this.rawPair();
+    BigInteger[] b = other.rawPair();
+    // bitLength of a negative numerator may be one short of its magnitude's
+    int left = a[0].bitLength() + b[1].bitLength();
+    int right = b[0].bitLength() + a[1].bitLength();
+    if (left + 1 < right - 1) {
+      return -sign;
+    } else if (right + 1 < left - 1) {
+      return sign;
+    } // if (bit lengths)
+    double estimate = Math.scalb(mantissa(a[0]) * mantissa(b[1]), left - right)
+        / (mantissa(b[0]) * mantissa(a[1]));
+    if (estimate > 1 + ESTIMATE_ERROR) {
+      return sign;
+    } else if (estimate < 1 - ESTIMATE_ERROR) {
+      return -sign;
+    } // if (estimate)
+    return a[0].multiply(b[1]).compareTo(b[0].multiply(a[1]));
+  } // compareTo(BigFraction)
+
+  /**
+   * Tells whether another object is a BigFraction of the same value.
+   *
+   * @param other the other object
+   * @return true if it is an equal fraction
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    } else if (!(other instanceof BigFraction)) {
+      return false;
+    } // if (other)
+    BigFraction that = (BigFraction) other;
+    if (this.hash != 0 && that.hash != 0 && this.hash != that.hash) {
+      return false;
+    } // if (hash)
+    return sameValue(that);
+  } // equals(Object)
 
   /**
-   * Returns the string representation of the BigFraction.
+   * Hashes the value of the fraction. The hash is kept, like String's.
+   *
+   * @return the hash
+   */
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = valueHash();
+      hash = h;
+    } // if (h)
+    return h;
+  } // hashCode()
+
+  /**
+   * Scales the magnitude of a BigInteger down by 2^bitLength, keeping its
+   * leading bits.
+   *
+   * @param value the value, not zero
+   * @return |value| / 2^value.bitLength(), within a rounding error
+   */
+  private static double mantissa(BigInteger value) {
+    int bits = value.bitLength();
+    if (bits <= Double.MAX_EXPONENT) {
+      return Math.scalb(Math.abs(value.doubleValue()), -bits);
+    } // if (bits)
+    return Math.scalb(Math.abs(value.shiftRight(bits - Long.SIZE).doubleValue()), -Long.SIZE);
+  } // mantissa(BigInteger)
+
+  /**
+   * Returns the value truncated toward zero, as BigInteger.longValue would
+   * narrow it.
+   *
+   * @return the integer part, as a long
+   */
+  @Override
+  public long longValue() {
+    if (small) {
+      return num / den;
+    } // if (small)
+    BigInteger[] pair = rawPair();
+    return pair[0].divide(pair[1]).longValue();
+  } // longValue()
+
+  /**
+   * Returns the value truncated toward zero, as BigInteger.intValue would
+   * narrow it.
+   *
+   * @return the integer part, as an int
+   */
+  @Override
+  public int intValue() {
+    return (int) longValue();
+  } // intValue()
+
+  /**
+   * Returns the double closest to the value, ties to even. Fractions whose
+   * parts are below 2^53 take one hardware division; others take one
+   * integer division sized by the 53 bits needed, not by the operands.
+   *
+   * @return the value as a double, possibly infinite or subnormal
+   */
+  @Override
+  public double doubleValue() {
+    if (small && Math.abs(num) < DOUBLE_EXACT && den < DOUBLE_EXACT) {
+      // Both operands are exact, and IEEE division rounds correctly
+      return (double) num / den;
+    } // if (small)
+    return toBinary(DOUBLE_PRECISION, Double.MIN_EXPONENT, Double.MAX_EXPONENT);
+  } // doubleValue()
+
+  /**
+   * Returns the float closest to the value, ties to even. It is rounded
+   * once, straight from the fraction, never through a double.
+   *
+   * @return the value as a float, possibly infinite or subnormal
+   */
+  @Override
+  public float floatValue() {
+    if (small && Math.abs(num) < FLOAT_EXACT && den < FLOAT_EXACT) {
+      return (float) num / den;
+    } // if (small)
+    // The rounded value has 24 bits, so the double holds it exactly
+    return (float) toBinary(FLOAT_PRECISION, Float.MIN_EXPONENT, Float.MAX_EXPONENT);
+  } // floatValue()
+
+  /**
+   * Returns the value as a BigDecimal rounded by mc. The quotient is only
+   * carried to mc's precision plus a digit, with one more digit standing in
+   * for any nonzero remainder, so every rounding mode sees the same digits
+   * the exact value has. Very large numerators and denominators are first
+   * cut down to the bits those digits need; when that leaves the result in
+   * doubt, the exact parts are used instead.
+   *
+   * @param mc the precision and rounding mode; with precision 0 the value
+   *     must have a terminating decimal expansion
+   * @return the value as a BigDecimal
+   * @throws ArithmeticException if mc's precision is 0 and the expansion
+   *     does not terminate, or mc says UNNECESSARY and rounding is needed
+   */
+  public BigDecimal toBigDecimal(MathContext mc) {
+    BigInteger[] pair = rawPair();
+    if (mc.getPrecision() == 0) {
+      return new BigDecimal(pair[0]).divide(new BigDecimal(pair[1]));
+    } // if (unlimited)
+    if (pair[0].signum() == 0) {
+      return BigDecimal.ZERO;
+    } // if (zero)
+    int keep = (int) Math.ceil(mc.getPrecision() / LOG10_2) + TRUNCATION_SLACK;
+    int cut = Math.min(pair[0].bitLength(), pair[1].bitLength()) - keep;
+    if (cut > 0) {
+      BigInteger low = pair[0].abs().shiftRight(cut);
+      BigInteger high = low.add(BigInteger.ONE);
+      BigInteger d = pair[1].shiftRight(cut);
+      if (pair[0].signum() < 0) {
+        low = low.negate();
+        high = high.negate();
+      } // if (negative)
+      // The value lies between low / (d + 1) and high / d
+      BigDecimal one = decimal(low, d.add(BigInteger.ONE), mc);
+      BigDecimal other = decimal(high, d, mc);
+      if (one.equals(other)) {
+        return one;
+      } // if (decided)
+    } // if (cut)
+    return decimal(pair[0], pair[1], mc);
+  } // toBigDecimal(MathContext)
+
+  /**
+   * Does the work of doubleValue and floatValue for fractions outside their
+   * fast paths, cutting very large parts down first as toBigDecimal does.
+   *
+   * @param precision significand bits, including the implicit one
+   * @param minExponent exponent of the smallest normal value
+   * @param maxExponent exponent of the largest finite value
+   * @return the rounded value
+   */
+  private double toBinary(int precision, int minExponent, int maxExponent) {
+    BigInteger[] pair = rawPair();
+    int sign = pair[0].signum();
+    if (sign == 0) {
+      return 0.0;
+    } // if (zero)
+    BigInteger n = pair[0].abs();
+    BigInteger d = pair[1];
+    int keep = precision + TRUNCATION_SLACK;
+    int cutN = Math.max(0, n.bitLength() - keep);
+    int cutD = Math.max(0, d.bitLength() - keep);
+    double magnitude;
+    if (cutN == 0 && cutD == 0) {
+      magnitude = roundBinary(n, d, 0, precision, minExponent, maxExponent);
+    } else {
+      BigInteger shortN = n.shiftRight(cutN);
+      BigInteger shortD = d.shiftRight(cutD);
+      int scale = cutN - cutD;
+      // The value lies between these two, so if they round alike so does it
+      double low = roundBinary(shortN, cutD == 0 ? shortD : shortD.add(BigInteger.ONE),
+          scale, precision, minExponent, maxExponent);
+      double high = roundBinary(cutN == 0 ? shortN : shortN.add(BigInteger.ONE), shortD,
+          scale, precision, minExponent, maxExponent);
+      magnitude = low == high
+          ? low
+          : roundBinary(n, d, 0, precision, minExponent, maxExponent);
+    } // if (cut)
+    return sign < 0 ? -magnitude : magnitude;
+  } // toBinary(int, int, int)
+
+  /**
+   * Rounds n * 2^scale / d to a binary floating-point format, ties to even.
+   * One division produces a quotient of precision + 2 or + 3 bits, and the
+   * remainder becomes a sticky bit, which is all correct rounding needs.
+   * Below the normal range fewer bits are kept, which gives subnormals.
+   *
+   * @param n the numerator, positive
+   * @param d the denominator, positive
+   * @param scale the power of two to apply
+   * @param precision significand bits, including the implicit one
+   * @param minExponent exponent of the smallest normal value
+   * @param maxExponent exponent of the largest finite value
+   * @return the rounded value, exact in a double
+   */
+  static double roundBinary(BigInteger n, BigInteger d, int scale, int precision,
+      int minExponent, int maxExponent) {
+    int shift = precision + 2 - (n.bitLength() - d.bitLength());
+    BigInteger[] qr = shift >= 0
+        ? n.shiftLeft(shift).divideAndRemainder(d)
+        : n.divideAndRemainder(d.shiftLeft(-shift));
+    long q = qr[0].longValueExact();
+    boolean sticky = qr[1].signum() != 0;
+    int bits = Long.SIZE - Long.numberOfLeadingZeros(q);
+    // Exponent of the leading bit of the value
+    long exponent = (long) bits - 1 - shift + scale;
+    if (exponent > maxExponent) {
+      return Double.POSITIVE_INFINITY;
+    } // if (overflow)
+    long kept = exponent >= minExponent ? precision : precision - (minExponent - exponent);
+    if (kept < 0) {
+      return 0.0;
+    } // if (underflow)
+    int drop = bits - (int) kept;
+    long significand = q >>> drop;
+    long rest = q & ((1L << drop) - 1);
+    long half = 1L << (drop - 1);
+    if (rest > half || (rest == half && (sticky || (significand & 1) == 1))) {
+      // Carrying into a new bit is fine: scalb below is still exact
+      significand++;
+    } // if (round up)
+    return Math.scalb((double) significand, (int) (exponent - kept + 1));
+  } // roundBinary(BigInteger, BigInteger, int, int, int, int)
+
+  /**
+   * Rounds n / d to a BigDecimal. The quotient is carried to at least one
+   * digit past mc's precision, and a final digit of 1 stands for a nonzero
+   * remainder, so BigDecimal.round sees exactly the digits it needs.
+   *
+   * @param n the numerator
+   * @param d the denominator, positive
+   * @param mc the precision, not 0, and rounding mode
+   * @return the rounded value
+   */
+  private static BigDecimal decimal(BigInteger n, BigInteger d, MathContext mc) {
+    // |n / d| > 2^(bits - 1), so 10^digits * |n / d| has more than
+    // precision + 1 digits
+    int bits = n.bitLength() - d.bitLength();
+    long digits = mc.getPrecision() + 1 - (long) Math.floor((bits - 1) * LOG10_2);
+    BigInteger[] qr = digits >= 0
+        ? n.multiply(BigInteger.TEN.pow((int) digits)).divideAndRemainder(d)
+        : n.divideAndRemainder(d.multiply(BigInteger.TEN.pow((int) -digits)));
+    BigInteger unscaled = qr[0].multiply(BigInteger.TEN).add(BigInteger.valueOf(qr[1].signum()));
+    return new BigDecimal(unscaled, Math.toIntExact(digits + 1)).round(mc);
+  } // decimal(BigInteger, BigInteger, MathContext)
+
+  /**
+   * Returns the string representation of the BigFraction. The text is
+   * kept, so printing the same instance again costs nothing.
    *
    * @return the string representation of the fraction
    */
   @Override
   public String toString() {
-    if (denominator.equals(BigInteger.ONE)) {
-      return numerator.toString();
-    } else {
-      return numerator + "/" + denominator;
-    } // if loop (denominator)
+    String text = rendered;
+    if (text == null) {
+      text = appendTo(new StringBuilder()).toString();
+      rendered = text;
+    } // if (text)
+    return text;
   } // toString()
+
+  /**
+   * Appends the text of the fraction, as toString would give it, to a
+   * StringBuilder. Small values are written digit by digit without
+   * building a String.
+   *
+   * @param out the builder
+   * @return out
+   */
+  public StringBuilder appendTo(StringBuilder out) {
+    String text = rendered;
+    if (text != null) {
+      return out.append(text);
+    } // if (text)
+    if (pending) {
+      normalize();
+    } // if (pending)
+    if (small) {
+      out.append(num);
+      if (den != 1) {
+        out.append('/').append(den);
+      } // if (den)
+      return out;
+    } // if (small)
+    out.append(numerator);
+    if (!denominator.equals(BigInteger.ONE)) {
+      out.append('/').append(denominator);
+    } // if (denominator)
+    return out;
+  } // appendTo(StringBuilder)
+
+  /**
+   * Appends the text of the fraction, as toString would give it, to any
+   * Appendable. Small values are written digit by digit without building
+   * a String; big values are rendered once and the text is kept.
+   *
+   * @param out where to write
+   * @throws IOException if out fails
+   */
+  public void appendTo(Appendable out) throws IOException {
+    String text = rendered;
+    if (text != null) {
+      out.append(text);
+      return;
+    } // if (text)
+    if (pending) {
+      normalize();
+    } // if (pending)
+    if (small) {
+      appendLong(out, num);
+      if (den != 1) {
+        out.append('/');
+        appendLong(out, den);
+      } // if (den)
+    } else {
+      out.append(toString());
+    } // if (small)
+  } // appendTo(Appendable)
+
+  /**
+   * Writes the text of the fraction as ASCII bytes at the buffer's
+   * position, as toString would give it.
+   *
+   * @param out the buffer
+   * @return out
+   * @throws java.nio.BufferOverflowException if the text does not fit, in
+   *     which case some of it may already have been written
+   */
+  public ByteBuffer writeTo(ByteBuffer out) {
+    if (pending) {
+      normalize();
+    } // if (pending)
+    if (small) {
+      putLong(out, num);
+      if (den != 1) {
+        out.put((byte) '/');
+        putLong(out, den);
+      } // if (den)
+      return out;
+    } // if (small)
+    String text = toString();
+    for (int i = 0; i < text.length(); i++) {
+      out.put((byte) text.charAt(i));
+    } // for (i)
+    return out;
+  } // writeTo(ByteBuffer)
+
+  /**
+   * Finds the largest power of ten that is at most a value.
+   *
+   * @param value a non-negative value
+   * @return the power of ten, or 1 for a value below 10
+   */
+  private static long leadingScale(long value) {
+    long scale = 1;
+    while (scale <= value / 10) {
+      scale *= 10;
+    } // while (scale)
+    return scale;
+  } // leadingScale(long)
+
+  /**
+   * Writes a long in decimal to an Appendable.
+   *
+   * @param out where to write
+   * @param value the value, never Long.MIN_VALUE
+   * @throws IOException if out fails
+   */
+  private static void appendLong(Appendable out, long value) throws IOException {
+    if (value < 0) {
+      out.append('-');
+      value = -value;
+    } // if (value)
+    for (long scale = leadingScale(value); scale > 0; scale /= 10) {
+      out.append((char) ('0' + value / scale));
+      value %= scale;
+    } // for (scale)
+  } // appendLong(Appendable, long)
+
+  /**
+   * Writes a long in decimal to a ByteBuffer.
+   *
+   * @param out the buffer
+   * @param value the value, never Long.MIN_VALUE
+   */
+  private static void putLong(ByteBuffer out, long value) {
+    if (value < 0) {
+      out.put((byte) '-');
+      value = -value;
+    } // if (value)
+    for (long scale = leadingScale(value); scale > 0; scale /= 10) {
+      out.put((byte) ('0' + value / scale));
+      value %= scale;
+    } // for (scale)
+  } // putLong(ByteBuffer, long)
 } // BigFraction class
@@ -0,0 +1,163 @@
+package edu.grinnell.csc207.util;
+
+/**
+ * FractionKernel class does element-wise arithmetic on packed columns of
+ * reduced fractions, a numerator array and a denominator array per operand.
+ * It handles the lanes whose numerators and denominators all fit in an int:
+ * their cross products then fit in a long, so the result is computed
+ * without any overflow checks and reduced with one binary gcd. Every other
+ * lane, and any division by zero, is left for the caller, marked with a 0
+ * in the result's denominator column, as FractionVector marks its own
+ * overflow elements.
+ *
+ * This class is the scalar reference. When the code is built with the
+ * vector profile and run with --add-modules jdk.incubator.vector, instance
+ * returns a subclass that does the same work with the Vector API, many
+ * lanes at a time, and must give the same results bit for bit. Setting
+ * -Dbf.vector=false forces the scalar kernel.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class FractionKernel {
+
+  /**
+   * The Vector API kernel, present only in vector builds.
+   */
+  static final String VECTOR_KERNEL = "edu.grinnell.csc207.util.VectorFractionKernel";
+
+  /**
+   * The kernel instance returns.
+   */
+  private static final FractionKernel INSTANCE = load();
+
+  /**
+   * Constructor for FractionKernel; use instance.
+   */
+  FractionKernel() {
+  } // FractionKernel()
+
+  /**
+   * Returns the fastest kernel available.
+   *
+   * @return the vector kernel if it can run here, or the scalar one
+   */
+  public static FractionKernel instance() {
+    return INSTANCE;
+  } // instance()
+
+  /**
+   * Tells whether this kernel uses the Vector API.
+   *
+   * @return false for the scalar reference
+   */
+  public boolean isVectorized() {
+    return false;
+  } // isVectorized()
+
+  /**
+   * Combines lanes [0, length) of two operands with op, writing each
+   * result in lowest terms or, for lanes this kernel does not handle, a 0
+   * denominator.
+   *
+   * @param op ADD, SUBTRACT, MULTIPLY or DIVIDE
+   * @param n1 the left numerators
+   * @param d1 the left denominators, positive in the lanes handled
+   * @param n2 the right numerators
+   * @param d2 the right denominators, positive in the lanes handled
+   * @param n where to write the numerators
+   * @param d where to write the denominators
+   * @param length the number of lanes
+   * @throws IllegalArgumentException if op is not one of the four
+   */
+  public void apply(BFOperator op, long[] n1, long[] d1, long[] n2, long[] d2, long[] n, long[] d,
+      int length) {
+    scalar(op, n1, d1, n2, d2, n, d, 0, length);
+  } // apply(BFOperator, long[], long[], long[], long[], long[], long[], int)
+
+  /**
+   * Combines lanes [from, to) one at a time; the reference every kernel
+   * must agree with.
+   *
+   * @param op ADD, SUBTRACT, MULTIPLY or DIVIDE
+   * @param n1 the left numerators
+   * @param d1 the left denominators
+   * @param n2 the right numerators
+   * @param d2 the right denominators
+   * @param n where to write the numerators
+   * @param d where to write the denominators
+   * @param from the first lane
+   * @param to one past the last lane
+   * @throws IllegalArgumentException if op is not one of the four
+   */
+  public static void scalar(BFOperator op, long[] n1, long[] d1, long[] n2, long[] d2, long[] n,
+      long[] d, int from, int to) {
+    check(op);
+    for (int i = from; i < to; i++) {
+      if (!fits(n1[i], d1[i]) || !fits(n2[i], d2[i])
+          || (op == BFOperator.DIVIDE && n2[i] == 0)) {
+        n[i] = 0;
+        d[i] = 0;
+        continue;
+      } // if (fits)
+      long num;
+      long den;
+      if (op == BFOperator.ADD) {
+        num = n1[i] * d2[i] + n2[i] * d1[i];
+        den = d1[i] * d2[i];
+      } else if (op == BFOperator.SUBTRACT) {
+        num = n1[i] * d2[i] - n2[i] * d1[i];
+        den = d1[i] * d2[i];
+      } else if (op == BFOperator.MULTIPLY) {
+        num = n1[i] * n2[i];
+        den = d1[i] * d2[i];
+      } else {
+        num = n2[i] < 0 ? -n1[i] * d2[i] : n1[i] * d2[i];
+        den = d1[i] * Math.abs(n2[i]);
+      } // if (op)
+      long g = BigFraction.gcd(Math.abs(num), den);
+      n[i] = num / g;
+      d[i] = den / g;
+    } // for (i)
+  } // scalar(BFOperator, long[], long[], long[], long[], long[], long[], int, int)
+
+  /**
+   * Tells whether a lane's operand is small enough for the kernel.
+   *
+   * @param n the numerator
+   * @param d the denominator
+   * @return true if n is an int and d a positive int
+   */
+  static boolean fits(long n, long d) {
+    return n == (int) n && d > 0 && d <= Integer.MAX_VALUE;
+  } // fits(long, long)
+
+  /**
+   * Rejects operators the kernel does not do.
+   *
+   * @param op the operator
+   */
+  static void check(BFOperator op) {
+    if (op != BFOperator.ADD && op != BFOperator.SUBTRACT && op != BFOperator.MULTIPLY
+        && op != BFOperator.DIVIDE) {
+      throw new IllegalArgumentException("Invalid operator: " + op.symbol());
+    } // if (op)
+  } // check(BFOperator)
+
+  /**
+   * Picks the kernel: the vector one if it was built and its module is
+   * present, unless -Dbf.vector=false.
+   *
+   * @return the kernel
+   */
+  private static FractionKernel load() {
+    if (Boolean.parseBoolean(System.getProperty("bf.vector", "true"))) {
+      try {
+        return (FractionKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor()
+            .newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // Not built with the vector profile, or jdk.incubator.vector is missing
+      } // try/catch
+    } // if (bf.vector)
+    return new FractionKernel();
+  } // load()
+} // FractionKernel class
@@ -0,0 +1,454 @@
+package edu.grinnell.csc207.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FractionVector class stores a fixed number of fractions column by column.
+ * Reduced fractions whose numerator and denominator fit in longs sit in two
+ * packed long columns, either on the heap or off-heap in direct buffers.
+ * Anything larger goes to an overflow table of BigFractions, and its
+ * denominator column holds 0 as a marker. Element-wise arithmetic stays on
+ * the columns with overflow-checked long math and only builds BigFractions
+ * for elements that overflow. On the heap, elements whose parts fit in ints
+ * go through FractionKernel in one batch, which the vector build runs with
+ * SIMD instructions.
+ *
+ * A FractionVector is not safe for concurrent modification.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class FractionVector {
+
+  /**
+   * Numerators of small elements.
+   */
+  private final LongBuffer nums;
+
+  /**
+   * Denominators of small elements, or 0 for elements in the overflow table.
+   */
+  private final LongBuffer dens;
+
+  /**
+   * Elements that do not fit in the long columns, by index.
+   */
+  private final Map<Integer, BigFraction> overflow = new HashMap<>();
+
+  /**
+   * Number of elements.
+   */
+  private final int size;
+
+  /**
+   * True if the columns live off-heap.
+   */
+  private final boolean direct;
+
+  /**
+   * Constructor for FractionVector. All elements start at zero.
+   *
+   * @param size the number of elements
+   */
+  public FractionVector(int size) {
+    this(size, false);
+  } // FractionVector(int)
+
+  /**
+   * Constructor for FractionVector with a choice of storage.
+   *
+   * @param size the number of elements
+   * @param direct true to keep the columns off-heap
+   */
+  private FractionVector(int size, boolean direct) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Invalid size: " + size);
+    } // if (size)
+    this.size = size;
+    this.direct = direct;
+    if (direct) {
+      nums = ByteBuffer.allocateDirect(size * Long.BYTES).order(ByteOrder.nativeOrder())
+          .asLongBuffer();
+      dens = ByteBuffer.allocateDirect(size * Long.BYTES).order(ByteOrder.nativeOrder())
+          .asLongBuffer();
+    } else {
+      nums = LongBuffer.wrap(new long[size]);
+      dens = LongBuffer.wrap(new long[size]);
+    } // if (direct)
+    for (int i = 0; i < size; i++) {
+      dens.put(i, 1);
+    } // for (i)
+  } // FractionVector(int, boolean)
+
+  /**
+   * Makes a vector whose columns live off-heap. All elements start at zero.
+   *
+   * @param size the number of elements
+   * @return the vector
+   */
+  public static FractionVector allocateDirect(int size) {
+    return new FractionVector(size, true);
+  } // allocateDirect(int)
+
+  /**
+   * Makes a vector holding the given fractions.
+   *
+   * @param values the fractions
+   * @return the vector
+   */
+  public static FractionVector of(BigFraction... values) {
+    FractionVector result = new FractionVector(values.length);
+    for (int i = 0; i < values.length; i++) {
+      result.set(i, values[i]);
+    } // for (i)
+    return result;
+  } // of(BigFraction...)
+
+  /**
+   * Returns the number of elements.
+   *
+   * @return the size
+   */
+  public int size() {
+    return size;
+  } // size()
+
+  /**
+   * Tells whether the columns live off-heap.
+   *
+   * @return true for direct storage
+   */
+  public boolean isDirect() {
+    return direct;
+  } // isDirect()
+
+  /**
+   * Returns how many elements are too large for the long columns.
+   *
+   * @return the number of elements in the overflow table
+   */
+  public int overflowCount() {
+    return overflow.size();
+  } // overflowCount()
+
+  /**
+   * Returns an element.
+   *
+   * @param i the index
+   * @return the element
+   */
+  public BigFraction get(int i) {
+    long d = dens.get(checkIndex(i));
+    return d == 0 ? overflow.get(i) : BigFraction.fromReducedLongs(nums.get(i), d);
+  } // get(int)
+
+  /**
+   * Replaces an element.
+   *
+   * @param i the index
+   * @param value the new element
+   */
+  public void set(int i, BigFraction value) {
+    checkIndex(i);
+    if (value.isSmall()) {
+      putSmall(i, value.smallNumerator(), value.smallDenominator());
+    } else {
+      nums.put(i, 0);
+      dens.put(i, 0);
+      overflow.put(i, value);
+    } // if (isSmall)
+  } // set(int, BigFraction)
+
+  /**
+   * Copies the elements out.
+   *
+   * @return a new array of the elements
+   */
+  public BigFraction[] toArray() {
+    BigFraction[] result = new BigFraction[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = get(i);
+    } // for (i)
+    return result;
+  } // toArray()
+
+  /**
+   * Adds two vectors element by element.
+   *
+   * @param other a vector of the same size
+   * @return the element-wise sum
+   */
+  public FractionVector add(FractionVector other) {
+    return combine(other, null, BFOperator.ADD);
+  } // add(FractionVector)
+
+  /**
+   * Subtracts another vector element by element.
+   *
+   * @param other a vector of the same size
+   * @return the element-wise difference
+   */
+  public FractionVector subtract(FractionVector other) {
+    return combine(other, null, BFOperator.SUBTRACT);
+  } // subtract(FractionVector)
+
+  /**
+   * Multiplies two vectors element by element.
+   *
+   * @param other a vector of the same size
+   * @return the element-wise product
+   */
+  public FractionVector multiply(FractionVector other) {
+    return combine(other, null, BFOperator.MULTIPLY);
+  } // multiply(FractionVector)
+
+  /**
+   * Divides by another vector element by element.
+   *
+   * @param other a vector of the same size
+   * @return the element-wise quotient
+   */
+  public FractionVector divide(FractionVector other) {
+    return combine(other, null, BFOperator.DIVIDE);
+  } // divide(FractionVector)
+
+  /**
+   * Adds a fraction to every element.
+   *
+   * @param scalar the fraction
+   * @return the new vector
+   */
+  public FractionVector add(BigFraction scalar) {
+    return combine(null, scalar, BFOperator.ADD);
+  } // add(BigFraction)
+
+  /**
+   * Subtracts a fraction from every element.
+   *
+   * @param scalar the fraction
+   * @return the new vector
+   */
+  public FractionVector subtract(BigFraction scalar) {
+    return combine(null, scalar, BFOperator.SUBTRACT);
+  } // subtract(BigFraction)
+
+  /**
+   * Multiplies every element by a fraction.
+   *
+   * @param scalar the fraction
+   * @return the new vector
+   */
+  public FractionVector multiply(BigFraction scalar) {
+    return combine(null, scalar, BFOperator.MULTIPLY);
+  } // multiply(BigFraction)
+
+  /**
+   * Divides every element by a fraction.
+   *
+   * @param scalar the fraction
+   * @return the new vector
+   */
+  public FractionVector divide(BigFraction scalar) {
+    return combine(null, scalar, BFOperator.DIVIDE);
+  } // divide(BigFraction)
+
+  /**
+   * Adds up every element. Small elements are summed over a running common
+   * denominator in a pair of longs; whenever that pair would overflow it is
+   * set aside, and the pieces are added as a balanced tree at the end.
+   *
+   * @return the sum
+   */
+  public BigFraction sum() {
+    List<BigFraction> parts = new ArrayList<>();
+    long an = 0;
+    long ad = 1;
+    for (int i = 0; i < size; i++) {
+      long d = dens.get(i);
+      if (d == 0) {
+        parts.add(overflow.get(i));
+        continue;
+      } // if (overflow)
+      long n = nums.get(i);
+      try {
+        long g = BigFraction.gcd(ad, d);
+        long sum = Math.addExact(Math.multiplyExact(an, d / g), Math.multiplyExact(n, ad / g));
+        long common = Math.multiplyExact(ad, d / g);
+        if (sum == Long.MIN_VALUE) {
+          throw new ArithmeticException("long overflow");
+        } // if (sum)
+        an = sum;
+        ad = common;
+        if ((ad >>> 32) != 0) {
+          long g2 = BigFraction.gcd(Math.abs(an), ad);
+          an /= g2;
+          ad /= g2;
+        } // if (large)
+      } catch (ArithmeticException overflowed) {
+        parts.add(BigFraction.reduced(an, ad));
+        an = n;
+        ad = d;
+      } // try/catch
+    } // for (i)
+    parts.add(BigFraction.reduced(an, ad));
+    return BigFraction.sum(parts);
+  } // sum()
+
+  /**
+   * Applies op element by element, with either another vector or a scalar
+   * as the right operand. On the heap, the elements small enough for
+   * FractionKernel go through it in one batch first.
+   *
+   * @param other the right operand vector, or null
+   * @param scalar the right operand scalar, used when other is null
+   * @param op the operator
+   * @return the new vector
+   */
+  private FractionVector combine(FractionVector other, BigFraction scalar, BFOperator op) {
+    if (other != null && other.size != size) {
+      throw new IllegalArgumentException("Size mismatch: " + size + " and " + other.size);
+    } // if (size)
+    if (op == BFOperator.DIVIDE && other == null && scalar.signum() == 0) {
+      throw new ArithmeticException("Denominator cannot be zero");
+    } // if (zero)
+    boolean scalarSmall = other == null && scalar.isSmall();
+    long sn = scalarSmall ? scalar.smallNumerator() : 0;
+    long sd = scalarSmall ? scalar.smallDenominator() : 0;
+    FractionVector result = new FractionVector(size, direct);
+    boolean batched = !direct && (other == null ? scalarSmall : !other.direct);
+    if (batched) {
+      long[] n2 = other == null ? filled(sn) : other.nums.array();
+      long[] d2 = other == null ? filled(sd) : other.dens.array();
+      FractionKernel.instance().apply(op, nums.array(), dens.array(), n2, d2,
+          result.nums.array(), result.dens.array(), size);
+    } // if (batched)
+    for (int i = 0; i < size; i++) {
+      if (batched && result.dens.get(i) != 0) {
+        continue;
+      } // if (done)
+      long d1 = dens.get(i);
+      long d2 = other == null ? sd : other.dens.get(i);
+      if (d1 != 0 && d2 != 0) {
+        long n2 = other == null ? sn : other.nums.get(i);
+        if (result.small(i, op, nums.get(i), d1, n2, d2)) {
+          continue;
+        } // if (small)
+      } // if (both small)
+      result.set(i, op.apply(get(i), other == null ? scalar : other.get(i)));
+    } // for (i)
+    return result;
+  } // combine(FractionVector, BigFraction, BFOperator)
+
+  /**
+   * Makes a column holding one value in every element.
+   *
+   * @param value the value
+   * @return the column
+   */
+  private long[] filled(long value) {
+    long[] column = new long[size];
+    Arrays.fill(column, value);
+    return column;
+  } // filled(long)
+
+  /**
+   * Computes element i from two reduced small operands with long math,
+   * cancelling common factors first the way BigFraction does.
+   *
+   * @param i the index to write
+   * @param op the operator
+   * @param n1 the left numerator
+   * @param d1 the left denominator
+   * @param n2 the right numerator
+   * @param d2 the right denominator
+   * @return false, writing nothing, if the result does not fit in longs
+   */
+  private boolean small(int i, BFOperator op, long n1, long d1, long n2, long d2) {
+    if (op == BFOperator.DIVIDE) {
+      if (n2 == 0) {
+        return false; // Let the BigFraction path report the division by zero
+      } // if (n2)
+      long swap = n2 < 0 ? -d2 : d2;
+      d2 = Math.abs(n2);
+      n2 = swap;
+    } else if (op == BFOperator.SUBTRACT) {
+      n2 = -n2;
+    } // if (op)
+    try {
+      if (op == BFOperator.ADD || op == BFOperator.SUBTRACT) {
+        long g = BigFraction.gcd(d1, d2);
+        long t = Math.addExact(Math.multiplyExact(n1, d2 / g), Math.multiplyExact(n2, d1 / g));
+        if (t == Long.MIN_VALUE) {
+          return false;
+        } // if (t)
+        long g2 = BigFraction.gcd(Math.abs(t), g);
+        return putSmall(i, t / g2, Math.multiplyExact(d1 / g, d2 / g2));
+      } // if (sum)
+      if (n1 == 0 || n2 == 0) {
+        return putSmall(i, 0, 1);
+      } // if (zero)
+      long g1 = BigFraction.gcd(Math.abs(n1), d2);
+      long g2 = BigFraction.gcd(Math.abs(n2), d1);
+      return putSmall(i, Math.multiplyExact(n1 / g1, n2 / g2),
+          Math.multiplyExact(d1 / g2, d2 / g1));
+    } catch (ArithmeticException overflowed) {
+      return false;
+    } // try/catch
+  } // small(int, BFOperator, long, long, long, long)
+
+  /**
+   * Writes a reduced small value into the columns.
+   *
+   * @param i the index
+   * @param n the numerator
+   * @param d the denominator, positive
+   * @return false, writing nothing, if n is Long.MIN_VALUE
+   */
+  private boolean putSmall(int i, long n, long d) {
+    if (n == Long.MIN_VALUE) {
+      return false;
+    } // if (n)
+    if (dens.get(i) == 0) {
+      overflow.remove(i);
+    } // if (overflow)
+    nums.put(i, n);
+    dens.put(i, d);
+    return true;
+  } // putSmall(int, long, long)
+
+  /**
+   * Checks an index.
+   *
+   * @param i the index
+   * @return the index
+   */
+  private int checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + size);
+    } // if (i)
+    return i;
+  } // checkIndex(int)
+
+  /**
+   * Returns the string representation of the vector.
+   *
+   * @return the elements in brackets
+   */
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        result.append(", ");
+      } // if (i)
+      result.append(get(i));
+    } // for (i)
+    return result.append(']').toString();
+  } // toString()
+} // FractionVector class
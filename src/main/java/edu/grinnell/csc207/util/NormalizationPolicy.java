@@ -0,0 +1,135 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Objects;
+
+/**
+ * NormalizationPolicy class decides when a BigFraction built from BigIntegers
+ * is reduced to lowest terms.
+ *
+ * EAGER reduces every result right away, which is the historical behavior.
+ * LAZY keeps results unreduced until they are observed through toString(),
+ * numerator(), denominator() or a comparison. sizeTriggered(bits) keeps them
+ * unreduced until the numerator or denominator passes the given bit length.
+ * Fractions that fit in longs are always reduced, because a binary gcd on
+ * longs costs less than carrying the extra bits around.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class NormalizationPolicy {
+
+  /**
+   * Reduce every result as soon as it is built.
+   */
+  public static final NormalizationPolicy EAGER = new NormalizationPolicy(0);
+
+  /**
+   * Reduce results only when they are observed.
+   */
+  public static final NormalizationPolicy LAZY = new NormalizationPolicy(Integer.MAX_VALUE);
+
+  /**
+   * The policy of each thread.
+   */
+  private static final ThreadLocal<NormalizationPolicy> CURRENT =
+      ThreadLocal.withInitial(() -> EAGER);
+
+  /**
+   * True once any thread has picked a policy other than EAGER. Until then
+   * current() does not need to consult the thread-local.
+   */
+  private static volatile boolean customized;
+
+  /**
+   * Bit length past which results are reduced.
+   */
+  private final int threshold;
+
+  /**
+   * Constructor for NormalizationPolicy.
+   *
+   * @param threshold bit length past which results are reduced
+   */
+  private NormalizationPolicy(int threshold) {
+    this.threshold = threshold;
+  } // NormalizationPolicy(int)
+
+  /**
+   * Makes a policy that reduces once a numerator or denominator passes the
+   * given bit length.
+   *
+   * @param bits the bit length
+   * @return the policy
+   */
+  public static NormalizationPolicy sizeTriggered(int bits) {
+    if (bits < 1) {
+      throw new IllegalArgumentException("Invalid threshold: " + bits);
+    } // if (bits)
+    return new NormalizationPolicy(bits);
+  } // sizeTriggered(int)
+
+  /**
+   * Returns the policy of the calling thread, EAGER unless set otherwise.
+   *
+   * @return the policy
+   */
+  public static NormalizationPolicy current() {
+    return customized ? CURRENT.get() : EAGER;
+  } // current()
+
+  /**
+   * Sets the policy of the calling thread.
+   *
+   * @param policy the new policy
+   */
+  public static void setCurrent(NormalizationPolicy policy) {
+    Objects.requireNonNull(policy, "policy");
+    if (policy != EAGER) {
+      customized = true;
+    } // if (policy)
+    CURRENT.set(policy);
+  } // setCurrent(NormalizationPolicy)
+
+  /**
+   * Returns the bit length past which results are reduced.
+   *
+   * @return the threshold, 0 for EAGER
+   */
+  public int threshold() {
+    return threshold;
+  } // threshold()
+
+  /**
+   * Tells whether results are reduced as soon as they are built.
+   *
+   * @return true for EAGER
+   */
+  boolean isEager() {
+    return threshold == 0;
+  } // isEager()
+
+  /**
+   * Tells whether a result of the given size must be reduced now.
+   *
+   * @param bits the larger bit length of its numerator and denominator
+   * @return true if it must be reduced
+   */
+  boolean reducesAt(int bits) {
+    return bits > threshold;
+  } // reducesAt(int)
+
+  /**
+   * Returns the string representation of the policy.
+   *
+   * @return the string representation
+   */
+  @Override
+  public String toString() {
+    if (threshold == 0) {
+      return "EAGER";
+    } else if (threshold == Integer.MAX_VALUE) {
+      return "LAZY";
+    } else {
+      return "SIZE_TRIGGERED(" + threshold + ")";
+    } // if (threshold)
+  } // toString()
+} // NormalizationPolicy class
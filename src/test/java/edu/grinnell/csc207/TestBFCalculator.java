@@ -0,0 +1,167 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BigFraction;
+import edu.grinnell.csc207.util.NormalizationPolicy;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the BFCalculator modes against the plain calculator.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestBFCalculator {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Applies a random operation with a random operand to every calculator.
+   *
+   * @param random the source of randomness
+   * @param bits the bit length of the operand
+   * @param calculators the calculators to update
+   */
+  static void step(Random random, int bits, BFCalculator... calculators) {
+    BigInteger den = new BigInteger(bits, random).add(BigInteger.ONE);
+    BigInteger num = new BigInteger(bits, random).add(BigInteger.ONE);
+    BigFraction val = new BigFraction(random.nextBoolean() ? num : num.negate(), den);
+    int op = random.nextInt(8);
+    for (BFCalculator calculator : calculators) {
+      if (op < 4) {
+        calculator.add(val);
+      } else if (op < 6) {
+        calculator.subtract(val);
+      } else if (op == 6) {
+        calculator.multiply(val);
+      } else {
+        calculator.divide(val);
+      } // if (op)
+    } // for (calculator)
+  } // step(Random, int, BFCalculator...)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Does accumulator mode agree with the plain calculator?
+   */
+  @Test
+  public void testAccumulatorMatches() {
+    Random random = new Random(207);
+    for (int bits : new int[] {4, 20, 40, 70}) {
+      BFCalculator plain = new BFCalculator();
+      BFCalculator acc = new BFCalculator(true);
+      BFCalculator tight = new BFCalculator(true, 64);
+      for (int i = 0; i < 400; i++) {
+        step(random, bits, plain, acc, tight);
+        if (i % 37 == 0) {
+          assertEquals(plain.get().toString(), acc.get().toString(),
+              "Accumulator after " + i + " steps of " + bits + " bits");
+        } // if (i)
+      } // for (i)
+      assertEquals(plain.get().toString(), acc.get().toString(),
+          "Accumulator with " + bits + " bits");
+      assertEquals(plain.get().toString(), tight.get().toString(),
+          "Small threshold with " + bits + " bits");
+    } // for (bits)
+  } // testAccumulatorMatches()
+
+  /**
+   * Do the lazy and size-triggered policies agree with eager reduction?
+   */
+  @Test
+  public void testPoliciesMatch() {
+    Random random = new Random(207);
+    BFCalculator eager = new BFCalculator();
+    BFCalculator lazy = new BFCalculator();
+    BFCalculator sized = new BFCalculator();
+    lazy.setNormalizationPolicy(NormalizationPolicy.LAZY);
+    sized.setNormalizationPolicy(NormalizationPolicy.sizeTriggered(200));
+    for (int i = 0; i < 300; i++) {
+      step(random, 1 + i % 90, eager, lazy, sized);
+      if (i % 25 == 0) {
+        assertEquals(eager.get().toString(), lazy.get().toString(), "Lazy after " + i);
+        assertEquals(eager.get().numerator(), sized.get().numerator(), "Sized after " + i);
+      } // if (i)
+    } // for (i)
+    assertEquals(eager.get().denominator(), lazy.get().denominator(), "Lazy denominator");
+  } // testPoliciesMatch()
+
+  /**
+   * Does a thread's policy apply to plain BigFraction arithmetic?
+   */
+  @Test
+  public void testThreadPolicy() {
+    BigInteger big = BigInteger.TEN.pow(30);
+    BigFraction x = new BigFraction(big, big.add(BigInteger.ONE));
+    NormalizationPolicy.setCurrent(NormalizationPolicy.LAZY);
+    try {
+      BigFraction sum = x.add(x).subtract(x);
+      assertEquals(x.toString(), sum.toString(), "Lazy x + x - x");
+      assertEquals(x.denominator(), sum.multiply(x).divide(x).denominator(),
+          "Lazy x * x / x");
+    } finally {
+      NormalizationPolicy.setCurrent(NormalizationPolicy.EAGER);
+    } // try/finally
+  } // testThreadPolicy()
+
+  /**
+   * Does accumulator mode handle sums over shared denominators and clear?
+   */
+  @Test
+  public void testAccumulatorBasics() {
+    BFCalculator acc = new BFCalculator(true);
+    for (int k = 1; k <= 6; k++) {
+      acc.add(new BigFraction(1, 6));
+    } // for (k)
+    assertEquals("1", acc.get().toString(), "Six sixths");
+    acc.divide(new BigFraction(-2, 3));
+    assertEquals("-3/2", acc.get().toString(), "Divide by a negative");
+    acc.clear();
+    assertEquals("0", acc.get().toString(), "Cleared");
+    assertThrows(ArithmeticException.class, () -> acc.divide(new BigFraction(0, 1)),
+        "Divide by zero");
+  } // testAccumulatorBasics()
+
+  /**
+   * Does a maximum denominator keep results small and close to the exact ones?
+   */
+  @Test
+  public void testMaxDenominator() {
+    Random random = new Random(2070);
+    BFCalculator exact = new BFCalculator();
+    BFCalculator plain = new BFCalculator();
+    BFCalculator acc = new BFCalculator(true);
+    plain.setMaxDenominatorBits(32);
+    acc.setMaxDenominatorBits(32);
+    for (int i = 0; i < 200; i++) {
+      BigFraction val = new BigFraction(1 + random.nextInt(1000), 1 + random.nextInt(1000));
+      exact.add(val);
+      plain.add(val);
+      acc.add(val);
+      assertTrue(plain.get().denominator().bitLength() <= 32, "Bounded");
+      assertTrue(acc.get().denominator().bitLength() <= 32, "Bounded when read");
+    } // for (i)
+    BigFraction drift = exact.get().subtract(plain.get());
+    BigFraction bound = new BigFraction(BigInteger.valueOf(200),
+        BigInteger.ONE.shiftLeft(33).subtract(BigInteger.TWO));
+    BigFraction slack = drift.signum() < 0 ? bound.add(drift) : bound.subtract(drift);
+    assertTrue(slack.signum() >= 0, "At most 1/(2 * maxDenominator) per step");
+    plain.setMaxDenominator(null);
+    plain.add(new BigFraction(1, (1 << 30) + 3));
+    plain.add(new BigFraction(1, (1 << 30) + 5));
+    assertTrue(plain.get().denominator().bitLength() > 32, "Exact again");
+    assertThrows(IllegalArgumentException.class, () -> plain.setMaxDenominatorBits(0),
+        "No bits");
+  } // testMaxDenominator()
+} // class TestBFCalculator
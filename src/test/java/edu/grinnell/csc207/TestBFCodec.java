@@ -0,0 +1,163 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BFCodec;
+import edu.grinnell.csc207.util.BigFraction;
+import edu.grinnell.csc207.util.NormalizationPolicy;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the binary BigFraction format.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestBFCodec {
+
+  /**
+   * A fresh directory for each test.
+   */
+  @TempDir
+  Path dir;
+
+  /**
+   * Do values of every size survive a round trip, in heap and direct buffers?
+   */
+  @Test
+  public void testRoundTrip() {
+    BigFraction[] values = sample();
+    for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(1 << 16),
+        ByteBuffer.allocateDirect(1 << 16)}) {
+      for (BigFraction value : values) {
+        buffer.clear();
+        BFCodec.write(value, buffer);
+        assertEquals(BFCodec.encodedSize(value), buffer.position(), "Size of " + value);
+        buffer.flip();
+        assertEquals(value.toString(), BFCodec.read(buffer).toString(), "Round trip");
+        assertEquals(0, buffer.remaining(), "Whole value read");
+      } // for (value)
+    } // for (buffer)
+    ByteBuffer buffer = ByteBuffer.allocate(8);
+    BFCodec.write(BigFraction.ONE, buffer);
+    assertEquals(3, buffer.position(), "Small values are small");
+    assertSame(BigFraction.ONE, BFCodec.read(buffer.flip()), "Shared values stay shared");
+  } // testRoundTrip()
+
+  /**
+   * Is a lazily reduced value whose parts fit in a long written just like
+   * the same value held in longs?
+   */
+  @Test
+  public void testOneEncoding() {
+    BigInteger shift = BigInteger.TWO.pow(70);
+    BigFraction pending;
+    NormalizationPolicy.setCurrent(NormalizationPolicy.LAZY);
+    try {
+      pending = new BigFraction(shift.multiply(BigInteger.valueOf(-3)), shift.shiftLeft(2));
+    } finally {
+      NormalizationPolicy.setCurrent(NormalizationPolicy.EAGER);
+    } // try/finally
+    assertArrayEquals(encode(new BigFraction(-3, 4)), encode(pending), "-3/4");
+    BigFraction min = new BigFraction(BigInteger.valueOf(Long.MIN_VALUE), BigInteger.ONE);
+    assertEquals(min.toString(), BFCodec.read(ByteBuffer.wrap(encode(min))).toString(),
+        "Long.MIN_VALUE stays big");
+  } // testOneEncoding()
+
+  /**
+   * Do whole arrays round-trip through a file?
+   */
+  @Test
+  public void testFiles() throws IOException {
+    BigFraction[] values = sample();
+    Path file = dir.resolve("values");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE)) {
+      BFCodec.writeAll(values, channel);
+      BFCodec.writeAll(new BigFraction[] {BigFraction.ZERO}, channel);
+    } // try
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      BigFraction[] first = BFCodec.readAll(channel);
+      assertEquals(values.length, first.length, "Count");
+      for (int i = 0; i < values.length; i++) {
+        assertEquals(values[i].toString(), first[i].toString(), "Value " + i);
+      } // for (i)
+      assertEquals("0", BFCodec.readAll(channel)[0].toString(), "Second list");
+      assertEquals(channel.size(), channel.position(), "Everything read");
+    } // try
+  } // testFiles()
+
+  /**
+   * Is malformed input rejected?
+   */
+  @Test
+  public void testErrors() {
+    assertThrows(IllegalArgumentException.class,
+        () -> BFCodec.read(ByteBuffer.wrap(new byte[] {7, 0, 0})), "Bad tag");
+    assertThrows(IllegalArgumentException.class,
+        () -> BFCodec.read(ByteBuffer.wrap(new byte[] {0, 2, 0})), "Zero denominator");
+    assertThrows(IllegalArgumentException.class,
+        () -> BFCodec.read(ByteBuffer.wrap(new byte[] {0, 4, 4})), "2/4 is not reduced");
+    assertThrows(IllegalArgumentException.class,
+        () -> BFCodec.read(ByteBuffer.wrap(new byte[] {0, 0, 5})), "0/5 is not reduced");
+    assertThrows(IllegalArgumentException.class,
+        () -> BFCodec.read(ByteBuffer.wrap(new byte[] {0, (byte) 0xc8, 1, (byte) 0x90, 1})),
+        "100/144 is not reduced");
+    assertThrows(IllegalArgumentException.class,
+        () -> BFCodec.read(ByteBuffer.wrap(new byte[] {1, 1, 6, 1, 9})), "Big 6/9 is not reduced");
+    assertThrows(IllegalArgumentException.class,
+        () -> BFCodec.read(ByteBuffer.wrap(new byte[] {1, 1, 1, 1, (byte) 0xff})),
+        "Big negative denominator");
+    assertThrows(IllegalArgumentException.class,
+        () -> BFCodec.read(ByteBuffer.wrap(new byte[] {1, 100, 1})), "Length past the end");
+    assertThrows(BufferUnderflowException.class,
+        () -> BFCodec.read(ByteBuffer.wrap(new byte[] {0, (byte) 0x80})), "Truncated");
+    assertThrows(IllegalArgumentException.class,
+        () -> BFCodec.decodeAll(ByteBuffer.wrap(new byte[] {(byte) 0xFF, 0x7F})), "Bad count");
+  } // testErrors()
+
+  /**
+   * Makes values around the edges of the small form, and well beyond it.
+   *
+   * @return the values
+   */
+  static BigFraction[] sample() {
+    Random random = new Random(207);
+    BigFraction[] values = new BigFraction[200];
+    values[0] = BigFraction.valueOf(Long.MAX_VALUE, 1);
+    values[1] = BigFraction.valueOf(-Long.MAX_VALUE, Long.MAX_VALUE - 1);
+    values[2] = BigFraction.valueOf(1, Long.MIN_VALUE);
+    values[3] = BigFraction.ZERO;
+    for (int i = 4; i < values.length; i++) {
+      BigInteger num = new BigInteger(1 + random.nextInt(i * 8), random);
+      BigInteger den = new BigInteger(1 + random.nextInt(i * 8), random).add(BigInteger.ONE);
+      values[i] = new BigFraction(random.nextBoolean() ? num : num.negate(), den);
+    } // for (i)
+    return values;
+  } // sample()
+
+  /**
+   * Encodes a value.
+   *
+   * @param value the value
+   * @return its bytes
+   */
+  static byte[] encode(BigFraction value) {
+    ByteBuffer buffer = ByteBuffer.allocate(BFCodec.encodedSize(value));
+    BFCodec.write(value, buffer);
+    return buffer.array();
+  } // encode(BigFraction)
+} // class TestBFCodec
@@ -0,0 +1,206 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BFExpression;
+import edu.grinnell.csc207.util.BFExpressionCache;
+import edu.grinnell.csc207.util.BFOperator;
+import edu.grinnell.csc207.util.BFRegisterSet;
+import edu.grinnell.csc207.util.BFResultCache;
+import edu.grinnell.csc207.util.BigFraction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of compiled calculator expressions.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestBFExpression {
+
+  /**
+   * Does a compiled expression see register updates when re-run?
+   */
+  @Test
+  public void testReuse() {
+    BFRegisterSet registers = new BFRegisterSet();
+    BFExpression expression = BFExpression.compile("a + 1/2 * b");
+    registers.store('a', new BigFraction(1, 3));
+    registers.store('b', new BigFraction(2, 1));
+    assertEquals("4/3", expression.evaluate(registers).toString(), "First run");
+    registers.store('a', new BigFraction(1, 2));
+    assertEquals("3/2", expression.evaluate(registers).toString(), "Second run");
+  } // testReuse()
+
+  /**
+   * Does execute update the calculator and STORE read it?
+   */
+  @Test
+  public void testExecute() {
+    BFCalculator calculator = new BFCalculator();
+    BFRegisterSet registers = new BFRegisterSet();
+    BFExpression.compile("3/4 - 1/4").execute(calculator, registers);
+    assertEquals("1/2", calculator.get().toString(), "Expression");
+    BFExpression store = BFExpression.compile("STORE q");
+    assertTrue(store.isStore(), "STORE is recognized");
+    store.execute(calculator, registers);
+    assertEquals("1/2", registers.get('q').toString(), "STORE");
+  } // testExecute()
+
+  /**
+   * Does ^ take integer powers of the value so far, reading registers too?
+   */
+  @Test
+  public void testPower() {
+    BFRegisterSet registers = new BFRegisterSet();
+    registers.store('n', new BigFraction(-2, 1));
+    assertEquals("9/4", BFExpression.compile("3/2 ^ 2").evaluate(registers).toString(),
+        "Power");
+    assertEquals("2", BFExpression.compile("1 + 1 ^ n").evaluate(registers).toString(),
+        "Precedence, register exponent");
+    assertEquals("2", BFExpression.compile("2 ^ 3 ^ 0").evaluate(registers).toString(),
+        "Groups to the right");
+    assertEquals(BFOperator.POWER, BFOperator.fromSymbol("^"), "Symbol");
+    assertThrows(ArithmeticException.class,
+        () -> BFExpression.compile("2 ^ 1/2").evaluate(registers), "Fractional exponent");
+    assertThrows(ArithmeticException.class,
+        () -> BFExpression.compile("2 ^ 4294967296").evaluate(registers), "Exponent too big");
+    assertThrows(ArithmeticException.class,
+        () -> BFExpression.compile("0 ^ -1").evaluate(registers), "Zero to a negative power");
+  } // testPower()
+
+  /**
+   * Do operators bind by precedence, and parentheses override it?
+   */
+  @Test
+  public void testPrecedence() {
+    BFRegisterSet registers = new BFRegisterSet();
+    registers.store('a', new BigFraction(1, 2));
+    assertEquals("7", eval("1 + 2 * 3", registers), "* before +");
+    assertEquals("9", eval("(1 + 2) * 3", registers), "Parentheses");
+    assertEquals("1/4", eval("1 / 2 / 2", registers), "Left to right within a level");
+    assertEquals("-4", eval("1 - 2 - 3", registers), "Subtraction groups left");
+    assertEquals("2", eval("1 - (2 - 3)", registers), "Parenthesized difference");
+    assertEquals("1/4", eval("((a)) ^ 2", registers), "Nested parentheses");
+    assertEquals("-1/4", eval("-1/2 * (a)", registers), "Negative literal");
+  } // testPrecedence()
+
+  /**
+   * Do folding, shared subexpressions and grouped sums keep values exact
+   * and errors where they were?
+   */
+  @Test
+  public void testOptimize() {
+    BFRegisterSet registers = new BFRegisterSet();
+    registers.store('a', new BigFraction(1, 3));
+    registers.store('b', new BigFraction(1, 6));
+    assertEquals("7/6", eval("1/2 * 3 - 1/3", registers), "Constant line");
+    assertEquals("1/4", eval("(a + b) * (a + b)", registers), "Repeated subexpression");
+    assertEquals("5/2", eval("a + 1/3 + b + 2/3 - 1/2 + 1 + a + b", registers),
+        "Long sum");
+    assertEquals("1/3", eval("1/2 + a - 1/2", registers), "Literals cancel");
+    assertEquals("-1/2", eval("0 - a - b", registers), "Every term subtracted");
+    assertEquals("0", eval("a - (a + b) + b", registers), "Nested sum");
+    BFExpression divide = BFExpression.compile("a + 1 / 0");
+    assertThrows(ArithmeticException.class, () -> divide.evaluate(registers),
+        "Folding leaves errors for evaluation");
+    BFExpression exponent = BFExpression.compile("2 ^ 1/2 * 0");
+    assertThrows(ArithmeticException.class, () -> exponent.evaluate(registers),
+        "Even when the result would not need them");
+  } // testOptimize()
+
+  /**
+   * Are malformed lines rejected at compile time?
+   */
+  @Test
+  public void testErrors() {
+    assertThrows(IllegalArgumentException.class, () -> BFExpression.compile(""),
+        "Empty line");
+    assertThrows(IllegalArgumentException.class, () -> BFExpression.compile("1 +"),
+        "Trailing operator");
+    assertThrows(IllegalArgumentException.class, () -> BFExpression.compile("1 % 2"),
+        "Unknown operator");
+    assertThrows(IllegalArgumentException.class, () -> BFExpression.compile("STORE ab"),
+        "Long register");
+    assertThrows(IllegalArgumentException.class, () -> BFExpression.compile("A + 1"),
+        "Capital register");
+    assertThrows(IllegalArgumentException.class, () -> BFExpression.compile("(1 + 2"),
+        "Unclosed parenthesis");
+    assertThrows(IllegalArgumentException.class, () -> BFExpression.compile("1 + 2)"),
+        "Unopened parenthesis");
+    assertThrows(IllegalArgumentException.class, () -> BFExpression.compile("()"),
+        "Empty parentheses");
+    assertThrows(IllegalArgumentException.class, () -> BFExpression.compile("1 * * 2"),
+        "Operator for an operand");
+  } // testErrors()
+
+  /**
+   * Does the cache hand back the same plan for the same line?
+   */
+  @Test
+  public void testCache() {
+    BFExpressionCache cache = new BFExpressionCache(2);
+    BFExpression first = cache.compile("1 + 1");
+    assertSame(first, cache.compile("1 + 1"), "Cached plan");
+    cache.compile("2 + 2");
+    cache.compile("3 + 3");
+    assertEquals(2, cache.size(), "Bounded size");
+  } // testCache()
+
+  /**
+   * Are cached results reused until a register they read is stored to?
+   */
+  @Test
+  public void testResultCache() {
+    BFResultCache cache = new BFResultCache();
+    BFCalculator calculator = new BFCalculator();
+    BFRegisterSet registers = new BFRegisterSet();
+    registers.store('a', new BigFraction(1, 2));
+    cache.execute("a + 1", calculator, registers);
+    cache.execute("  a   +  1 ", calculator, registers);
+    assertEquals("3/2", calculator.get().toString(), "Cached value");
+    assertEquals(1, cache.hits(), "Normalized text hits");
+    registers.store('b', BigFraction.ONE);
+    cache.execute("a + 1", calculator, registers);
+    assertEquals(2, cache.hits(), "Other registers do not invalidate");
+    cache.execute("STORE a", calculator, registers);
+    cache.execute("a + 1", calculator, registers);
+    assertEquals("5/2", calculator.get().toString(), "STORE invalidates");
+    cache.execute("a + 1", calculator, new BFRegisterSet());
+    assertEquals("1", calculator.get().toString(), "Other register sets miss");
+    registers.accumulate('c', BFOperator.ADD, BigFraction.ONE);
+    cache.execute("c * 2", calculator, registers);
+    registers.accumulate('c', BFOperator.ADD, BigFraction.ONE);
+    cache.execute("c * 2", calculator, registers);
+    assertEquals("4", calculator.get().toString(), "accumulate invalidates");
+    assertEquals(2, cache.hits(), "Hits");
+    assertEquals(5, cache.misses(), "Misses");
+
+    BFResultCache small = new BFResultCache(1000);
+    for (int i = 0; i < 100; i++) {
+      small.execute(i + " + 1", calculator, registers);
+    } // for (i)
+    assertTrue(small.bytes() <= 1000, "Bounded bytes");
+    assertTrue(small.evictions() > 0, "Evicts");
+    assertEquals("100", calculator.get().toString(), "Still computes");
+  } // testResultCache()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Compiles and evaluates a line.
+   *
+   * @param line the line
+   * @param registers the registers
+   * @return the value, as text
+   */
+  private static String eval(String line, BFRegisterSet registers) {
+    return BFExpression.compile(line).evaluate(registers).toString();
+  } // eval(String, BFRegisterSet)
+} // class TestBFExpression
@@ -0,0 +1,210 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BFMappedRegisterSet;
+import edu.grinnell.csc207.util.BFOperator;
+import edu.grinnell.csc207.util.BFResultCache;
+import edu.grinnell.csc207.util.BigFraction;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of registers kept in a memory-mapped file.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestBFMappedRegisterSet {
+
+  /**
+   * A fresh directory for each test.
+   */
+  @TempDir
+  Path dir;
+
+  /**
+   * Do stores show up in another view of the file, and survive reopening?
+   */
+  @Test
+  public void testSharedStores() throws Exception {
+    Path file = dir.resolve("registers");
+    BigFraction big = new BigFraction(BigInteger.TEN.pow(300).add(BigInteger.ONE),
+        BigInteger.valueOf(7).pow(200));
+    try (BFMappedRegisterSet first = new BFMappedRegisterSet(file);
+        BFMappedRegisterSet second = new BFMappedRegisterSet(file)) {
+      assertSame(BigFraction.ZERO, second.get('a'), "A new file holds zeros");
+      first.store('a', new BigFraction(-3, 4));
+      first.store('z', big);
+      assertEquals("-3/4", second.get('a').toString(), "Small value");
+      assertEquals(big.toString(), second.get('z').toString(), "Big value");
+      assertSame(second.get('z'), second.get('z'), "Unchanged values are not decoded again");
+      assertThrows(IllegalArgumentException.class,
+          () -> first.store('b', new BigFraction(BigInteger.TWO.pow(40000), BigInteger.ONE)),
+          "Too big for a slot");
+    } // try
+    try (BFMappedRegisterSet reopened = new BFMappedRegisterSet(file, 128)) {
+      assertEquals(BFMappedRegisterSet.DEFAULT_SLOT_BYTES, reopened.slotBytes(),
+          "Existing slot size wins");
+      assertEquals("-3/4", reopened.get('a').toString(), "Persisted");
+    } // try
+    Path other = dir.resolve("other");
+    Files.writeString(other, "not a register file, but long enough to have a header. ".repeat(2));
+    assertThrows(java.io.IOException.class, () -> new BFMappedRegisterSet(other), "Bad header");
+  } // testSharedStores()
+
+  /**
+   * Is a file too short for a header rejected and left alone, while an empty
+   * one becomes a register file?
+   */
+  @Test
+  public void testShortFile() throws Exception {
+    Path notes = dir.resolve("notes.txt");
+    Files.writeString(notes, "1/2 and 3/4\n");
+    byte[] before = Files.readAllBytes(notes);
+    assertThrows(java.io.IOException.class, () -> new BFMappedRegisterSet(notes), "Short file");
+    assertArrayEquals(before, Files.readAllBytes(notes), "Short file unchanged");
+    Path empty = Files.createFile(dir.resolve("empty"));
+    try (BFMappedRegisterSet registers = new BFMappedRegisterSet(empty)) {
+      registers.store('a', new BigFraction(1, 2));
+      assertEquals("1/2", registers.get('a').toString(), "Empty file initialized");
+    } // try
+  } // testShortFile()
+
+  /**
+   * Are updates through two views of the file from many threads all kept?
+   */
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    Path file = dir.resolve("registers");
+    try (BFMappedRegisterSet first = new BFMappedRegisterSet(file);
+        BFMappedRegisterSet second = new BFMappedRegisterSet(file)) {
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        BFMappedRegisterSet view = t % 2 == 0 ? first : second;
+        threads.add(new Thread(() -> {
+          for (int k = 0; k < 500; k++) {
+            view.accumulate('h', BFOperator.ADD, new BigFraction(1, 3));
+          } // for (k)
+        }));
+      } // for (t)
+      for (Thread thread : threads) {
+        thread.start();
+      } // for (thread)
+      for (Thread thread : threads) {
+        thread.join();
+      } // for (thread)
+      assertEquals("2000/3", first.get('h').toString(), "No lost updates");
+      BigFraction seen = second.get('h');
+      assertTrue(second.compareAndSet('h', seen, BigFraction.ONE), "compareAndSet");
+      assertEquals("1", first.get('h').toString(), "compareAndSet is visible");
+    } // try
+  } // testConcurrentUpdates()
+
+  /**
+   * Does a store through another view of the file invalidate cached results?
+   */
+  @Test
+  public void testResultCache() throws Exception {
+    Path file = dir.resolve("registers");
+    try (BFMappedRegisterSet first = new BFMappedRegisterSet(file);
+        BFMappedRegisterSet second = new BFMappedRegisterSet(file)) {
+      BFResultCache cache = new BFResultCache();
+      BFCalculator calculator = new BFCalculator();
+      first.store('x', new BigFraction(1, 3));
+      cache.execute("x * 3", calculator, first);
+      cache.execute("x * 3", calculator, first);
+      assertEquals(1, cache.hits(), "Unchanged");
+      second.store('x', new BigFraction(2, 3));
+      cache.execute("x * 3", calculator, first);
+      assertEquals("2", calculator.get().toString(), "Invalidated by the other view");
+    } // try
+  } // testResultCache()
+
+  /**
+   * Do reads and stores recover a register whose store was abandoned by a
+   * process that died, leaving its sequence number odd?
+   */
+  @Test
+  public void testAbandonedStore() throws Exception {
+    Path file = dir.resolve("registers");
+    try (BFMappedRegisterSet first = new BFMappedRegisterSet(file);
+        BFMappedRegisterSet second = new BFMappedRegisterSet(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      ByteBuffer raw = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size())
+          .order(ByteOrder.LITTLE_ENDIAN);
+      first.store('c', new BigFraction(1, 3));
+      first.store('d', new BigFraction(1, 5));
+      abandon(raw, first, 'c');
+      abandon(raw, first, 'd');
+      BigFraction read = assertTimeoutPreemptively(Duration.ofSeconds(30),
+          () -> first.get('c'), "Readers do not hang");
+      assertSame(BigFraction.ZERO, read, "Reset to zero");
+      assertEquals(0, sequence(raw, first, 'c') % 2, "Even after a read");
+      second.store('d', new BigFraction(2, 7));
+      assertEquals(0, sequence(raw, first, 'd') % 2, "Even after a store");
+      assertEquals("2/7", first.get('d').toString(), "Stored after an abandoned store");
+    } // try
+  } // testAbandonedStore()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Finds the sequence number of a register in a raw view of its file,
+   * which starts after the file's 64-byte header.
+   *
+   * @param raw the file's bytes
+   * @param registers a register set on the file
+   * @param register the register
+   * @return the offset of its sequence number
+   */
+  private static int offset(ByteBuffer raw, BFMappedRegisterSet registers, char register) {
+    return 64 + (register - 'a') * registers.slotBytes();
+  } // offset(ByteBuffer, BFMappedRegisterSet, char)
+
+  /**
+   * Reads a register's sequence number straight from its file.
+   *
+   * @param raw the file's bytes
+   * @param registers a register set on the file
+   * @param register the register
+   * @return the sequence number
+   */
+  private static long sequence(ByteBuffer raw, BFMappedRegisterSet registers, char register) {
+    return raw.getLong(offset(raw, registers, register));
+  } // sequence(ByteBuffer, BFMappedRegisterSet, char)
+
+  /**
+   * Leaves a register as a process that died mid-store would: sequence
+   * number odd, bytes half-written.
+   *
+   * @param raw the file's bytes
+   * @param registers a register set on the file
+   * @param register the register
+   */
+  private static void abandon(ByteBuffer raw, BFMappedRegisterSet registers, char register) {
+    int offset = offset(raw, registers, register);
+    raw.putLong(offset, raw.getLong(offset) + 1);
+    raw.put(offset + 16, (byte) 0x7f);
+  } // abandon(ByteBuffer, BFMappedRegisterSet, char)
+} // class TestBFMappedRegisterSet
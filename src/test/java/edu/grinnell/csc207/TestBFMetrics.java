@@ -0,0 +1,58 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BFMetrics;
+import edu.grinnell.csc207.util.BFMetricsMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.JMX;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the metrics surface.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestBFMetrics {
+
+  /**
+   * Do recorded times and errors show up over JMX and in the report, and
+   * does reset clear them?
+   */
+  @Test
+  public void testRecordAndPublish() throws Exception {
+    ObjectName name = BFMetrics.register();
+    BFMetricsMXBean bean =
+        JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), name, BFMetricsMXBean.class);
+    bean.reset();
+    for (int i = 0; i < 3; i++) {
+      BFMetrics.time(BFMetrics.Op.PARSE, BFMetrics.start());
+    } // for (i)
+    BFMetrics.error(new IllegalArgumentException("Invalid register: %"));
+    BFMetrics.error(new IllegalArgumentException("Invalid register: ^"));
+    BFMetrics.error(new ArithmeticException("Denominator cannot be zero"));
+
+    assertEquals(3L, bean.getOperationCounts().get("PARSE"), "Counted");
+    assertEquals(0L, bean.getOperationCounts().get("ADD"), "Not run");
+    long[] histogram = bean.latencyHistogram("PARSE");
+    assertEquals(64, histogram.length, "One bucket per power of two");
+    assertEquals(3L, java.util.Arrays.stream(histogram).sum(), "Every run is in a bucket");
+    Map<String, Long> errors = bean.getErrorCounts();
+    assertEquals(2L, errors.get("IllegalArgumentException: Invalid register"),
+        "Grouped by the fixed part of the message");
+    assertEquals(1L, errors.get("ArithmeticException: Denominator cannot be zero"),
+        "Whole message");
+    String report = bean.getReport();
+    assertTrue(report.contains("PARSE"), "Report lists what ran");
+    assertTrue(report.contains("Invalid register"), "Report lists errors");
+
+    bean.reset();
+    assertEquals(0L, bean.getOperationCounts().get("PARSE"), "Reset");
+    assertTrue(bean.getErrorCounts().isEmpty(), "Reset errors");
+  } // testRecordAndPublish()
+} // class TestBFMetrics
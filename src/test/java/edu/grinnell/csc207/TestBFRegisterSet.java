@@ -0,0 +1,87 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BFOperator;
+import edu.grinnell.csc207.util.BFRegisterSet;
+import edu.grinnell.csc207.util.BigFraction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of register updates, alone and from many threads.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestBFRegisterSet {
+
+  /**
+   * Do the atomic operations return what they promise?
+   */
+  @Test
+  public void testAtomicOperations() {
+    BFRegisterSet registers = new BFRegisterSet();
+    assertSame(BigFraction.ZERO, registers.get('q'), "Starts at zero");
+    assertEquals("1/2", registers.accumulate('q', BFOperator.ADD, new BigFraction(1, 2))
+        .toString(), "accumulate returns the new value");
+    BigFraction half = registers.get('q');
+    assertFalse(registers.compareAndSet('q', new BigFraction(1, 2), BigFraction.ONE),
+        "compareAndSet compares identity");
+    assertTrue(registers.compareAndSet('q', half, BigFraction.ONE), "compareAndSet");
+    assertSame(BigFraction.ONE, registers.getAndUpdate('q', v -> v.multiply(v.add(v))),
+        "getAndUpdate returns the old value");
+    assertEquals("2", registers.get('q').toString(), "getAndUpdate stores the new value");
+    assertThrows(IllegalArgumentException.class,
+        () -> registers.accumulate('?', BFOperator.ADD, BigFraction.ONE), "Bad register");
+  } // testAtomicOperations()
+
+  /**
+   * Are updates from many threads to shared and separate registers kept?
+   */
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    final int threads = 8;
+    final int rounds = 2000;
+    BFRegisterSet registers = new BFRegisterSet();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> done = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        char own = (char) ('b' + t);
+        done.add(pool.submit(() -> {
+          for (int k = 1; k <= rounds; k++) {
+            registers.accumulate('a', BFOperator.ADD, BigFraction.ONE);
+            registers.accumulate(own, BFOperator.ADD, new BigFraction(1, k));
+            registers.getAndUpdate('z', v -> v.add(new BigFraction(1, 2)));
+          } // for (k)
+        }));
+      } // for (t)
+      for (Future<?> f : done) {
+        f.get();
+      } // for (f)
+    } finally {
+      pool.shutdown();
+    } // try/finally
+    BigFraction harmonic = BigFraction.ZERO;
+    for (int k = 1; k <= rounds; k++) {
+      harmonic = harmonic.add(new BigFraction(1, k));
+    } // for (k)
+    assertEquals(Integer.toString(threads * rounds), registers.get('a').toString(), "Hot register");
+    assertEquals(Integer.toString(threads * rounds / 2), registers.get('z').toString(),
+        "getAndUpdate");
+    for (int t = 0; t < threads; t++) {
+      assertEquals(harmonic.toString(), registers.get((char) ('b' + t)).toString(),
+          "Own register");
+    } // for (t)
+  } // testConcurrentUpdates()
+} // class TestBFRegisterSet
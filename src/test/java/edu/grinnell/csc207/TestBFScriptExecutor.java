@@ -0,0 +1,149 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BFExpression;
+import edu.grinnell.csc207.util.BFRegisterSet;
+import edu.grinnell.csc207.util.BFScriptExecutor;
+import edu.grinnell.csc207.util.BigFraction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of running calculator scripts as a dependency graph.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestBFScriptExecutor {
+
+  /**
+   * A pool with several workers, whatever the machine.
+   */
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  /**
+   * Do STOREs, register reads and failures come out as they would in order?
+   */
+  @Test
+  public void testOrder() {
+    check(new BFCalculator(), "STORE z", "1/2", "STORE a", "a + 1", "STORE b", "a * b",
+        "STORE a", "a - b");
+    check(new BFCalculator(), "1/3", "1 / 0", "STORE a", "a * 3", "x / y", "STORE x",
+        "x + a");
+    check(new BFCalculator(), "2", "STORE a", "a ^ 2", "STORE a", "a ^ 2", "STORE a",
+        "b + a", "STORE b", "a");
+    check(new BFCalculator(), "1 / 0", "STORE q", "q + 1");
+  } // testOrder()
+
+  /**
+   * Does a STORE see the calculator's value from before the script, and
+   * registers not written by the script their old values?
+   */
+  @Test
+  public void testInitial() {
+    BFCalculator calculator = new BFCalculator();
+    calculator.add(new BigFraction(5, 7));
+    BFRegisterSet registers = new BFRegisterSet();
+    registers.store('c', new BigFraction(1, 7));
+    BigFraction[] values = new BFScriptExecutor(POOL).run(
+        compile("STORE d", "c + d", "1 / 0"), calculator, registers, null);
+    assertEquals("5/7", values[0].toString(), "STORE before any expression");
+    assertEquals("6/7", values[1].toString(), "Old register");
+    assertNull(values[2], "Failure");
+    assertEquals("6/7", calculator.get().toString(), "Last success stays");
+  } // testInitial()
+
+  /**
+   * Do the values STOREs copy follow a calculator's maximum denominator?
+   */
+  @Test
+  public void testMaxDenominator() {
+    BFCalculator calculator = new BFCalculator();
+    calculator.setMaxDenominator(BigInteger.TEN);
+    check(calculator, "1/3 + 1/7", "STORE a", "a * 1/13", "STORE b", "b");
+  } // testMaxDenominator()
+
+  /**
+   * Do long random scripts agree with running them in order?
+   */
+  @Test
+  public void testRandom() {
+    Random random = new Random(207);
+    String[] operators = {"+", "-", "*", "/"};
+    for (int round = 0; round < 20; round++) {
+      String[] lines = new String[200];
+      for (int i = 0; i < lines.length; i++) {
+        char register = (char) ('a' + random.nextInt(4));
+        if (random.nextInt(3) == 0) {
+          lines[i] = "STORE " + register;
+        } else {
+          String operand = random.nextInt(5) == 0
+              ? "0"
+              : (random.nextInt(9) + 1) + "/" + (random.nextInt(9) + 1);
+          lines[i] = register + " " + operators[random.nextInt(operators.length)] + " " + operand;
+        } // if (STORE)
+      } // for (i)
+      check(new BFCalculator(), lines);
+    } // for (round)
+  } // testRandom()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Compiles lines.
+   *
+   * @param lines the lines
+   * @return their plans
+   */
+  private static BFExpression[] compile(String... lines) {
+    BFExpression[] plans = new BFExpression[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      plans[i] = BFExpression.compile(lines[i]);
+    } // for (i)
+    return plans;
+  } // compile(String...)
+
+  /**
+   * Runs a script both in order and through the executor, from the same
+   * calculator settings, and checks every result and the final state.
+   *
+   * @param calculator the calculator to run through the executor
+   * @param lines the script
+   */
+  private static void check(BFCalculator calculator, String... lines) {
+    BFCalculator sequential = new BFCalculator();
+    sequential.setMaxDenominator(calculator.maxDenominator());
+    BFRegisterSet expected = new BFRegisterSet();
+    String[] outputs = new String[lines.length];
+    BFExpression[] plans = compile(lines);
+    for (int i = 0; i < plans.length; i++) {
+      try {
+        plans[i].execute(sequential, expected);
+        outputs[i] = plans[i].isStore()
+            ? expected.get(lines[i].charAt(6)).toString()
+            : sequential.get().toString();
+      } catch (ArithmeticException e) {
+        outputs[i] = e.getMessage();
+      } // try/catch
+    } // for (i)
+
+    BFRegisterSet registers = new BFRegisterSet();
+    RuntimeException[] errors = new RuntimeException[lines.length];
+    BigFraction[] values = new BFScriptExecutor(POOL).run(plans, calculator, registers, errors);
+    for (int i = 0; i < lines.length; i++) {
+      String actual = errors[i] != null ? errors[i].getMessage() : values[i].toString();
+      assertEquals(outputs[i], actual, "Line " + i + ": " + lines[i]);
+    } // for (i)
+    assertEquals(sequential.get(), calculator.get(), "Final value");
+    for (char register = 'a'; register <= 'z'; register++) {
+      assertEquals(expected.get(register), registers.get(register), "Register " + register);
+    } // for (register)
+  } // check(BFCalculator, String...)
+} // class TestBFScriptExecutor
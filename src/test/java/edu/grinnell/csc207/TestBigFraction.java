@@ -0,0 +1,387 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BFInterner;
+import edu.grinnell.csc207.util.BigFraction;
+import edu.grinnell.csc207.util.NormalizationPolicy;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of BigFraction arithmetic near and beyond the range of a long.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestBigFraction {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Long.MAX_VALUE as a BigInteger.
+   */
+  static final BigInteger MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Do results that overflow a long get promoted correctly?
+   */
+  @Test
+  public void testOverflowPromotes() {
+    BigFraction max = new BigFraction(MAX, BigInteger.ONE);
+    assertEquals(MAX.add(BigInteger.ONE).toString(),
+        max.add(new BigFraction(1, 1)).toString(),
+        "Addition past Long.MAX_VALUE");
+    assertEquals(MAX.multiply(MAX).toString(),
+        max.multiply(max).toString(),
+        "Multiplication past Long.MAX_VALUE");
+    assertEquals("1/" + MAX.multiply(BigInteger.TWO),
+        new BigFraction(1, 2).divide(max).toString(),
+        "Division past Long.MAX_VALUE");
+  } // testOverflowPromotes()
+
+  /**
+   * Do big results that reduce back into range print the same way?
+   */
+  @Test
+  public void testDemotes() {
+    BigFraction big = new BigFraction(MAX.multiply(MAX), MAX);
+    assertEquals(MAX.toString(), big.toString(),
+        "Reduces back to a long");
+    assertEquals("0",
+        big.subtract(new BigFraction(MAX, BigInteger.ONE)).toString(),
+        "Cancels to zero");
+  } // testDemotes()
+
+  /**
+   * Is Long.MIN_VALUE handled without overflowing on negation?
+   */
+  @Test
+  public void testMinValue() {
+    BigInteger min = BigInteger.valueOf(Long.MIN_VALUE);
+    assertEquals(min.negate().toString(),
+        new BigFraction(min, BigInteger.ONE.negate()).toString(),
+        "Negating Long.MIN_VALUE");
+    assertEquals(min.toString(),
+        new BigFraction(min, BigInteger.ONE).toString(),
+        "Long.MIN_VALUE as a numerator");
+    assertEquals("-1/" + min.negate(),
+        new BigFraction(BigInteger.ONE, min).toString(),
+        "Long.MIN_VALUE as a denominator");
+  } // testMinValue()
+
+  /**
+   * Do long accumulation chains agree with naive cross-multiplication?
+   */
+  @Test
+  public void testHarmonicChain() {
+    BigFraction sum = new BigFraction(0, 1);
+    BigFraction product = new BigFraction(1, 1);
+    BigInteger num = BigInteger.ZERO;
+    BigInteger den = BigInteger.ONE;
+    for (int k = 1; k <= 200; k++) {
+      BigFraction term = new BigFraction(k % 7 == 0 ? -1 : 1, k);
+      sum = sum.add(term);
+      product = product.multiply(new BigFraction(k + 1, k + 2)).divide(term);
+      BigInteger kk = BigInteger.valueOf(k);
+      num = num.multiply(kk).add(term.numerator().multiply(den));
+      den = den.multiply(kk);
+      BigInteger gcd = num.gcd(den);
+      num = num.divide(gcd);
+      den = den.divide(gcd);
+    } // for (k)
+    assertEquals(num + "/" + den, sum.toString(), "Alternating harmonic sum");
+    BigInteger expected = BigInteger.TWO.multiply(factorial(200)).divide(BigInteger.valueOf(202));
+    assertEquals(expected.toString(), product.toString(), "Telescoping product");
+  } // testHarmonicChain()
+
+  /**
+   * Do the tree reductions and collectors agree with a left-to-right fold?
+   */
+  @Test
+  public void testBulkOperations() {
+    BigFraction[] values = new BigFraction[3000];
+    BigFraction fold = new BigFraction(0, 1);
+    BigFraction foldProduct = new BigFraction(1, 1);
+    for (int k = 1; k <= values.length; k++) {
+      values[k - 1] = new BigFraction(k % 3 == 0 ? -1 : 2, k);
+      fold = fold.add(values[k - 1]);
+      if (k <= 600) {
+        foldProduct = foldProduct.multiply(values[k - 1]);
+      } // if (k)
+    } // for (k)
+    List<BigFraction> list = Arrays.asList(values);
+    assertEquals(fold.toString(), BigFraction.sum(values).toString(), "Sum");
+    assertEquals(fold.toString(), list.parallelStream().collect(BigFraction.summing()).toString(),
+        "Parallel summing collector");
+    assertEquals(fold.divide(new BigFraction(values.length, 1)).toString(),
+        list.stream().collect(BigFraction.averaging()).toString(), "Averaging collector");
+    assertEquals(foldProduct.toString(),
+        BigFraction.product(list.subList(0, 600)).toString(), "Product");
+    assertEquals(foldProduct.toString(),
+        list.subList(0, 600).parallelStream().collect(BigFraction.multiplying()).toString(),
+        "Parallel multiplying collector");
+    assertEquals("0", BigFraction.sum().toString(), "Empty sum");
+    assertEquals("1", BigFraction.product().toString(), "Empty product");
+  } // testBulkOperations()
+
+  /**
+   * Do the factories share small values and reduce their arguments?
+   */
+  @Test
+  public void testValueOf() {
+    assertSame(BigFraction.ZERO, BigFraction.valueOf(0, -5), "Zero is shared");
+    assertSame(BigFraction.ONE, BigFraction.valueOf(7, 7), "One is shared");
+    assertSame(BigFraction.valueOf(1, 2), BigFraction.valueOf(-3, -6), "1/2 is shared");
+    assertSame(BigFraction.valueOf(1, 2), new BigFraction(1, 4).add(new BigFraction(1, 4)),
+        "Arithmetic results are shared");
+    assertEquals("-1/3", BigFraction.valueOf(2, -6).toString(), "Negative denominator");
+    assertEquals(MAX.toString(), BigFraction.valueOf(Long.MAX_VALUE).toString(), "Large value");
+    assertEquals("1/" + MAX.add(BigInteger.ONE),
+        BigFraction.valueOf(-1, Long.MIN_VALUE).toString(), "Long.MIN_VALUE denominator");
+  } // testValueOf()
+
+  /**
+   * Does the interner hand back one instance per value?
+   */
+  @Test
+  public void testInterner() {
+    BFInterner interner = new BFInterner(100);
+    assertEquals(128, interner.capacity(), "Rounded capacity");
+    BigFraction big = new BigFraction(MAX.pow(2), MAX.add(BigInteger.TWO));
+    BigFraction first = interner.intern(big);
+    assertSame(first, interner.intern(new BigFraction(big.toString())), "Big value");
+    BigFraction third = interner.intern(new BigFraction(1000, 3));
+    assertSame(third, interner.intern(BigFraction.valueOf(2000, 6)), "Small value");
+  } // testInterner()
+
+  /**
+   * Does the parser handle signs, whitespace, long digit runs and errors?
+   */
+  @Test
+  public void testParse() {
+    assertEquals("3/4", BigFraction.parse("6/8").toString(), "Plain fraction");
+    assertEquals("-22/7", BigFraction.parse(" +22 / -7 ").toString(), "Signs and spaces");
+    assertEquals("-5", new BigFraction("-5").toString(), "Whole number");
+    assertSame(BigFraction.ONE, BigFraction.parse("3/3"), "Small values are shared");
+    String huge = MAX.pow(3).toString();
+    assertEquals(huge, BigFraction.parse(huge + "/1").toString(), "Long digit run");
+    assertEquals("1/" + huge, BigFraction.parse("-1/-" + huge).toString(), "Long denominator");
+    assertEquals("123456789012345678", BigFraction.parse("123456789012345678").toString(),
+        "Eighteen digits");
+    char[] chars = "x7/14y".toCharArray();
+    assertEquals("1/2", BigFraction.parse(chars, 1, 4).toString(), "Character range");
+    byte[] bytes = "x7/14y".getBytes(StandardCharsets.US_ASCII);
+    assertEquals("1/2", BigFraction.parse(bytes, 1, 4).toString(), "Byte range");
+    ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+    buffer.put("-9/12".getBytes(StandardCharsets.US_ASCII)).flip();
+    assertEquals("-3/4", BigFraction.parse(buffer).toString(), "Direct buffer");
+    assertEquals(buffer.limit(), buffer.position(), "Buffer consumed");
+    for (String bad : new String[] {"", "/", "1/", "/2", "1/2/3", "1 2", "--1", "a", "1/+"}) {
+      assertThrows(NumberFormatException.class, () -> BigFraction.parse(bad), bad);
+    } // for (bad)
+    assertThrows(ArithmeticException.class, () -> BigFraction.parse("1/0"), "Zero denominator");
+    assertThrows(ArithmeticException.class, () -> BigFraction.parse(huge + "/00"),
+        "Zero denominator under a big numerator");
+  } // testParse()
+
+  /**
+   * Do appendTo and writeTo produce the same text as toString?
+   */
+  @Test
+  public void testFormatting() throws Exception {
+    BigFraction[] values = {BigFraction.valueOf(-Long.MAX_VALUE, 10), BigFraction.ZERO,
+        BigFraction.valueOf(7), new BigFraction(MAX.pow(2), MAX.add(BigInteger.TWO)),
+        new BigFraction(MAX.negate().pow(3), BigInteger.ONE)};
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    for (BigFraction value : values) {
+      String expected = value.toString();
+      assertSame(expected, value.toString(), "Rendered once");
+      assertEquals(expected, value.appendTo(new StringBuilder()).toString(), "StringBuilder");
+      StringWriter writer = new StringWriter();
+      value.appendTo((Appendable) writer);
+      assertEquals(expected, writer.toString(), "Appendable");
+      buffer.clear();
+      value.writeTo(buffer).flip();
+      assertEquals(expected, StandardCharsets.US_ASCII.decode(buffer).toString(), "ByteBuffer");
+    } // for (value)
+    assertThrows(BufferOverflowException.class,
+        () -> values[0].writeTo(ByteBuffer.allocate(4)), "Too small");
+  } // testFormatting()
+
+  /**
+   * Does limitDenominator find the closest fraction within the bound?
+   */
+  @Test
+  public void testLimitDenominator() {
+    BigFraction pi = BigFraction.valueOf(314159265358979L, 100000000000000L);
+    assertEquals("3", pi.limitDenominator(1).toString(), "Integer part");
+    assertEquals("22/7", pi.limitDenominator(10).toString(), "Convergent");
+    assertEquals("311/99", pi.limitDenominator(100).toString(), "Semiconvergent");
+    assertEquals("-355/113",
+        BigFraction.valueOf(-314159265358979L, 100000000000000L).limitDenominator(1000).toString(),
+        "Negative");
+    assertSame(pi, pi.limitDenominator(MAX), "Already fits");
+    BigFraction third = new BigFraction(BigInteger.TEN.pow(40).subtract(BigInteger.ONE),
+        BigInteger.TEN.pow(40).multiply(BigInteger.valueOf(3)));
+    assertEquals("1/3", third.limitDenominator(BigInteger.valueOf(1000)).toString(), "Big");
+    BigFraction x = new BigFraction(factorial(30), factorial(31).add(BigInteger.ONE));
+    for (BigInteger max : new BigInteger[] {BigInteger.valueOf(97), MAX, MAX.pow(2)}) {
+      BigFraction y = x.limitDenominator(max);
+      BigFraction error = x.subtract(y);
+      BigFraction bound = new BigFraction(BigInteger.ONE, max.shiftLeft(1));
+      assertTrue(y.denominator().compareTo(max) <= 0, "Denominator fits");
+      BigFraction slack = error.signum() < 0 ? bound.add(error) : bound.subtract(error);
+      assertTrue(slack.signum() >= 0, "Error within 1/(2 * max)");
+    } // for (max)
+    assertThrows(IllegalArgumentException.class, () -> pi.limitDenominator(0), "Zero");
+  } // testLimitDenominator()
+
+  /**
+   * Do compareTo, equals and hashCode agree with exact cross products in
+   * every representation?
+   */
+  @Test
+  public void testOrdering() {
+    Random random = new Random(20);
+    List<BigFraction> values = new ArrayList<>();
+    for (int bits : new int[] {3, 30, 62, 63, 90, 1100}) {
+      for (int i = 0; i < 40; i++) {
+        BigInteger n = new BigInteger(bits, random);
+        BigInteger d = new BigInteger(bits, random).add(BigInteger.ONE);
+        values.add(new BigFraction(random.nextBoolean() ? n : n.negate(), d));
+        // Nearly equal neighbours get past the estimates
+        values.add(new BigFraction(n.shiftLeft(bits).add(BigInteger.ONE), d.shiftLeft(bits)));
+      } // for (i)
+    } // for (bits)
+    NormalizationPolicy.setCurrent(NormalizationPolicy.LAZY);
+    try {
+      BigFraction x = values.get(values.size() - 1);
+      BigFraction pending = x.add(BigFraction.ONE).subtract(BigFraction.ONE);
+      values.add(pending);
+      assertEquals(x, pending, "Equal while still pending");
+      assertEquals(x.hashCode(), pending.hashCode(), "Same hash while pending");
+    } finally {
+      NormalizationPolicy.setCurrent(NormalizationPolicy.EAGER);
+    } // try/finally
+    for (BigFraction a : values) {
+      for (BigFraction b : values) {
+        int expected = a.numerator().multiply(b.denominator())
+            .compareTo(b.numerator().multiply(a.denominator()));
+        assertEquals(expected, Integer.signum(a.compareTo(b)), a + " <=> " + b);
+        assertEquals(expected == 0, a.equals(b), a + " == " + b);
+      } // for (b)
+    } // for (a)
+    BigFraction small = BigFraction.valueOf(Long.MAX_VALUE, Long.MAX_VALUE - 1);
+    BigFraction big = new BigFraction(MAX.multiply(MAX),
+        MAX.multiply(MAX.subtract(BigInteger.ONE)));
+    assertEquals(small, big, "Small and BigInteger forms");
+    assertEquals(small.hashCode(), big.hashCode(), "Same hash");
+    assertTrue(small.compareTo(BigFraction.valueOf(Long.MAX_VALUE - 1, Long.MAX_VALUE - 2)) < 0,
+        "128-bit cross products");
+    assertEquals(3, new HashSet<>(Arrays.asList(new BigFraction(1, 2), new BigFraction(2, 4),
+        BigFraction.valueOf(-1, 2), new BigFraction(MAX, BigInteger.ONE))).size(), "Deduplicated");
+    List<BigFraction> sorted = new ArrayList<>(values);
+    Collections.sort(sorted);
+    for (int i = 1; i < sorted.size(); i++) {
+      assertTrue(sorted.get(i - 1).compareTo(sorted.get(i)) <= 0, "Sorted");
+    } // for (i)
+  } // testOrdering()
+
+  /**
+   * Are conversions correctly rounded, including ties, subnormals and
+   * parts far too large for a double?
+   */
+  @Test
+  public void testConversions() {
+    assertEquals(1.0 / 3, new BigFraction(1, 3).doubleValue(), "Fast path");
+    assertEquals(-2.5f, new BigFraction(-5, 2).floatValue(), "Float fast path");
+    assertEquals(-3, new BigFraction(-7, 2).intValue(), "Truncates toward zero");
+    assertEquals(0.1, new BigFraction(BigInteger.TEN.pow(400), BigInteger.TEN.pow(401))
+        .doubleValue(), "Huge parts");
+    BigInteger big = BigInteger.ONE.shiftLeft(1000);
+    BigFraction tie = new BigFraction(big.add(BigInteger.ONE.shiftLeft(1000 - 53)), big);
+    assertEquals(1.0, tie.doubleValue(), "Tie rounds to even");
+    BigFraction above = new BigFraction(big.add(BigInteger.ONE.shiftLeft(1000 - 53))
+        .add(BigInteger.ONE), big);
+    assertEquals(Math.nextUp(1.0), above.doubleValue(), "Just past the tie");
+    assertEquals(Double.MIN_VALUE, new BigFraction(BigInteger.ONE, BigInteger.TWO.pow(1074))
+        .doubleValue(), "Smallest subnormal");
+    assertEquals(0.0, new BigFraction(BigInteger.ONE, BigInteger.TWO.pow(1075))
+        .doubleValue(), "Half the smallest subnormal ties to zero");
+    assertEquals(Double.NEGATIVE_INFINITY, new BigFraction(big.shiftLeft(24).negate(),
+        BigInteger.ONE).doubleValue(), "Overflow");
+    assertEquals(Float.MAX_VALUE, new BigFraction(new BigDecimal(Float.MAX_VALUE)
+        .toBigInteger(), BigInteger.ONE).floatValue(), "Largest float");
+    BigFraction x = new BigFraction(factorial(200).add(BigInteger.ONE), factorial(199));
+    assertEquals(new BigDecimal("200.00000000"),
+        x.toBigDecimal(new MathContext(11, RoundingMode.HALF_EVEN)), "Rounded down");
+    assertEquals(new BigDecimal("200.00000001"),
+        x.toBigDecimal(new MathContext(11, RoundingMode.CEILING)), "Sticky remainder");
+    assertEquals(new BigDecimal("-0.125"),
+        new BigFraction(-1, 8).toBigDecimal(MathContext.UNLIMITED), "Terminating");
+    assertThrows(ArithmeticException.class,
+        () -> new BigFraction(1, 3).toBigDecimal(MathContext.UNLIMITED), "Not terminating");
+  } // testConversions()
+
+  /**
+   * Does pow agree with repeated multiplication, in and out of long range?
+   */
+  @Test
+  public void testPow() {
+    BigFraction x = new BigFraction(-3, 7);
+    BigFraction product = BigFraction.ONE;
+    for (int k = 0; k <= 60; k++) {
+      assertEquals(product, x.pow(k), "(-3/7)^" + k);
+      assertEquals(BigFraction.ONE, x.pow(k).multiply(x.pow(-k)), "Negative exponent " + k);
+      product = product.multiply(x);
+    } // for (k)
+    assertEquals("-8/27", new BigFraction(-3, 2).pow(-3).toString(), "Sign moves up");
+    BigFraction big = new BigFraction(MAX, MAX.subtract(BigInteger.TWO));
+    assertEquals(big.numerator().pow(5), big.pow(5).numerator(), "Numerator");
+    assertEquals(big.numerator().pow(5), big.pow(-5).denominator(), "Denominator");
+    assertSame(BigFraction.ONE, BigFraction.ZERO.pow(0), "0^0");
+    assertEquals(BigFraction.ONE, BigFraction.valueOf(-1).pow(Integer.MIN_VALUE), "Huge exponent");
+    assertThrows(ArithmeticException.class, () -> BigFraction.ZERO.pow(-2), "0^-2");
+  } // testPow()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Computes n!.
+   *
+   * @param n the argument
+   * @return n factorial
+   */
+  static BigInteger factorial(int n) {
+    BigInteger result = BigInteger.ONE;
+    for (int i = 2; i <= n; i++) {
+      result = result.multiply(BigInteger.valueOf(i));
+    } // for (i)
+    return result;
+  } // factorial(int)
+} // class TestBigFraction
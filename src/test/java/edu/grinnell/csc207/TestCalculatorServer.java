@@ -0,0 +1,177 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.main.CalculatorServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of the calculator server, through loopback clients.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestCalculatorServer {
+
+  /**
+   * A fresh directory for each test.
+   */
+  @TempDir
+  Path dir;
+
+  /**
+   * Are pipelined requests answered in order, with errors and QUIT?
+   */
+  @Test
+  public void testPipelinedSession() throws Exception {
+    try (CalculatorServer server = start(loopback());
+        Socket client = connect(server)) {
+      send(client.getOutputStream(), "1/2 + 1/3\nSTORE a\n a * 6 \n1 / 0\nbogus !\nquit\n");
+      BufferedReader in = reader(client);
+      assertEquals("5/6", in.readLine(), "Expression");
+      assertEquals("STORED", in.readLine(), "STORE");
+      assertEquals("5", in.readLine(), "Register");
+      assertEquals("*** ERROR: An unexpected error occurred. ***", in.readLine(), "Division by 0");
+      assertEquals("*** ERROR [Invalid expression] ***", in.readLine(), "Bad expression");
+      assertNull(in.readLine(), "QUIT ends the session");
+    } // try
+  } // testPipelinedSession()
+
+  /**
+   * Does every session get its own registers, even with many open at once?
+   */
+  @Test
+  public void testManySessions() throws Exception {
+    try (CalculatorServer server = start(loopback())) {
+      List<Socket> clients = new ArrayList<>();
+      try {
+        for (int i = 0; i < 200; i++) {
+          Socket client = connect(server);
+          clients.add(client);
+          send(client.getOutputStream(), i + "\nSTORE r\n");
+        } // for (i)
+        for (int i = 0; i < clients.size(); i++) {
+          Socket client = clients.get(clients.size() - 1 - i);
+          send(client.getOutputStream(), "r + 1\n");
+          BufferedReader in = reader(client);
+          in.readLine();
+          in.readLine();
+          assertEquals(Integer.toString(clients.size() - i), in.readLine(), "Own register");
+        } // for (i)
+        assertEquals(clients.size(), server.sessions(), "All sessions open");
+      } finally {
+        for (Socket client : clients) {
+          client.close();
+        } // for (client)
+      } // try/finally
+    } // try
+  } // testManySessions()
+
+  /**
+   * Does the server work over a Unix-domain socket?
+   */
+  @Test
+  public void testUnixSocket() throws Exception {
+    Path path = dir.resolve("calculator.sock");
+    try (CalculatorServer server = start(UnixDomainSocketAddress.of(path));
+        SocketChannel client = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      client.connect(server.address());
+      client.write(ByteBuffer.wrap("2/4\nQUIT\n".getBytes(StandardCharsets.UTF_8)));
+      BufferedReader in = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+      assertEquals("1/2", in.readLine(), "Expression");
+      assertNull(in.readLine(), "QUIT ends the session");
+    } // try
+  } // testUnixSocket()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Picks any free loopback port.
+   *
+   * @return the address
+   */
+  static SocketAddress loopback() {
+    return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+  } // loopback()
+
+  /**
+   * Starts a server accepting on a background thread.
+   *
+   * @param address where to listen
+   * @return the server
+   * @throws IOException if it cannot listen
+   */
+  static CalculatorServer start(SocketAddress address) throws IOException {
+    CalculatorServer server = new CalculatorServer(address);
+    Thread acceptor = new Thread(() -> {
+      try {
+        server.serve();
+      } catch (IOException e) {
+        // The test sees the failure when it connects
+      } // try/catch
+    });
+    acceptor.setDaemon(true);
+    acceptor.start();
+    return server;
+  } // start(SocketAddress)
+
+  /**
+   * Connects to a TCP server.
+   *
+   * @param server the server
+   * @return the connection
+   * @throws IOException if it cannot connect
+   */
+  static Socket connect(CalculatorServer server) throws IOException {
+    Socket client = new Socket();
+    client.connect(server.address(), 5000);
+    client.setSoTimeout(10000);
+    return client;
+  } // connect(CalculatorServer)
+
+  /**
+   * Sends text in one write.
+   *
+   * @param out the stream
+   * @param text the text
+   * @throws IOException if it cannot be sent
+   */
+  static void send(OutputStream out, String text) throws IOException {
+    out.write(text.getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  } // send(OutputStream, String)
+
+  /**
+   * Reads lines from a connection.
+   *
+   * @param client the connection
+   * @return a reader
+   * @throws IOException if the connection is closed
+   */
+  static BufferedReader reader(Socket client) throws IOException {
+    return new BufferedReader(new InputStreamReader(client.getInputStream(),
+        StandardCharsets.UTF_8));
+  } // reader(Socket)
+} // class TestCalculatorServer
@@ -0,0 +1,153 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BFOperator;
+import edu.grinnell.csc207.util.BigFraction;
+import edu.grinnell.csc207.util.FractionKernel;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Differential tests of the batch kernel: whichever kernel this JVM picked
+ * (the vector one under the vector profile) against the scalar reference,
+ * and both against BigFraction.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestFractionKernel {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Values at and around the edges of the int range.
+   */
+  static final long[] EDGES = {0, 1, -1, 2, Integer.MAX_VALUE, Integer.MIN_VALUE,
+      Integer.MAX_VALUE + 1L, Integer.MIN_VALUE - 1L, Long.MAX_VALUE, Long.MIN_VALUE};
+
+  /**
+   * Fills columns with random reduced fractions, mostly small enough for
+   * the kernel, some at its edges and some too large.
+   *
+   * @param random the source of randomness
+   * @param nums the numerators to fill
+   * @param dens the denominators to fill
+   */
+  static void fill(Random random, long[] nums, long[] dens) {
+    for (int i = 0; i < nums.length; i++) {
+      int kind = random.nextInt(10);
+      long n;
+      long d;
+      if (kind < 6) {
+        int bits = 1 + random.nextInt(31);
+        n = random.nextInt(1 << (bits - 1)) * (random.nextBoolean() ? 1L : -1L);
+        d = 1 + random.nextInt(1 << (bits - 1));
+      } else if (kind < 8) {
+        n = EDGES[random.nextInt(EDGES.length)];
+        d = Math.max(1, Math.abs(EDGES[random.nextInt(6)]));
+      } else if (kind < 9) {
+        n = random.nextLong() >> random.nextInt(40);
+        d = Math.max(1, random.nextLong() >>> (1 + random.nextInt(40)));
+      } else {
+        n = random.nextInt();
+        d = 0;
+      } // if (kind)
+      long g = Math.max(1, BigInteger.valueOf(n).gcd(BigInteger.valueOf(d)).longValue());
+      nums[i] = d == 0 ? n : n / g;
+      dens[i] = d == 0 ? 0 : d / g;
+    } // for (i)
+  } // fill(Random, long[], long[])
+
+  /**
+   * Tells whether an operand is one the kernel must handle.
+   *
+   * @param n the numerator
+   * @param d the denominator
+   * @return true if n is an int and d a positive int
+   */
+  static boolean fits(long n, long d) {
+    return n == (int) n && d > 0 && d <= Integer.MAX_VALUE;
+  } // fits(long, long)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Does the chosen kernel agree with the scalar reference lane for lane,
+   * and does each handled lane equal the BigFraction result?
+   */
+  @Test
+  public void testDifferential() {
+    Random random = new Random(207);
+    FractionKernel kernel = FractionKernel.instance();
+    BFOperator[] ops = {BFOperator.ADD, BFOperator.SUBTRACT, BFOperator.MULTIPLY,
+        BFOperator.DIVIDE};
+    for (int round = 0; round < 40; round++) {
+      int length = random.nextInt(300);
+      long[] n1 = new long[length];
+      long[] d1 = new long[length];
+      long[] n2 = new long[length];
+      long[] d2 = new long[length];
+      fill(random, n1, d1);
+      fill(random, n2, d2);
+      for (BFOperator op : ops) {
+        long[] n = new long[length];
+        long[] d = new long[length];
+        long[] refN = new long[length];
+        long[] refD = new long[length];
+        kernel.apply(op, n1, d1, n2, d2, n, d, length);
+        FractionKernel.scalar(op, n1, d1, n2, d2, refN, refD, 0, length);
+        assertArrayEquals(refN, n, op + " numerators, round " + round);
+        assertArrayEquals(refD, d, op + " denominators, round " + round);
+        for (int i = 0; i < length; i++) {
+          boolean handled = fits(n1[i], d1[i]) && fits(n2[i], d2[i])
+              && !(op == BFOperator.DIVIDE && n2[i] == 0);
+          assertEquals(handled, d[i] != 0, op + " handles lane " + i);
+          if (handled) {
+            BigFraction expected = op.apply(BigFraction.valueOf(n1[i], d1[i]),
+                BigFraction.valueOf(n2[i], d2[i]));
+            assertEquals(expected.toString(), BigFraction.valueOf(n[i], d[i]).toString(),
+                op + " at lane " + i);
+            assertEquals(BigInteger.ONE,
+                BigInteger.valueOf(n[i]).gcd(BigInteger.valueOf(d[i])).max(BigInteger.ONE),
+                op + " reduced at lane " + i);
+          } // if (handled)
+        } // for (i)
+      } // for (op)
+    } // for (round)
+  } // testDifferential()
+
+  /**
+   * Are the extremes of the int range handled exactly, and are unsupported
+   * operators rejected?
+   */
+  @Test
+  public void testEdges() {
+    long min = Integer.MIN_VALUE;
+    long max = Integer.MAX_VALUE;
+    long[] n1 = {min, min, max, min, 0};
+    long[] d1 = {1, max, 1, 1, 1};
+    long[] n2 = {min, max, -max, 1, 0};
+    long[] d2 = {1, 1, max, max, 1};
+    long[] n = new long[5];
+    long[] d = new long[5];
+    FractionKernel.instance().apply(BFOperator.MULTIPLY, n1, d1, n2, d2, n, d, 5);
+    assertArrayEquals(new long[] {1L << 62, min, -max, min, 0}, n, "Products");
+    assertArrayEquals(new long[] {1, 1, 1, max, 1}, d, "Denominators");
+    FractionKernel.instance().apply(BFOperator.DIVIDE, n1, d1, n2, d2, n, d, 5);
+    assertEquals(0, d[4], "Division by zero is left to the caller");
+    assertTrue(Arrays.stream(d, 0, 4).allMatch(den -> den > 0), "Other quotients done");
+    assertThrows(IllegalArgumentException.class,
+        () -> FractionKernel.instance().apply(BFOperator.POWER, n1, d1, n2, d2, n, d, 5),
+        "Only the four operations");
+  } // testEdges()
+} // class TestFractionKernel
@@ -0,0 +1,119 @@
+package edu.grinnell.csc207;
+
+import edu.grinnell.csc207.util.BigFraction;
+import edu.grinnell.csc207.util.FractionVector;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of FractionVector against element-by-element BigFraction arithmetic.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestFractionVector {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Makes random fractions of mixed sizes, some of them too big for longs.
+   *
+   * @param random the source of randomness
+   * @param count how many to make
+   * @return the fractions
+   */
+  static BigFraction[] values(Random random, int count) {
+    BigFraction[] result = new BigFraction[count];
+    for (int i = 0; i < count; i++) {
+      int bits = new int[] {3, 16, 31, 62, 63, 90}[random.nextInt(6)];
+      BigInteger num = new BigInteger(bits, random);
+      BigInteger den = new BigInteger(bits, random).add(BigInteger.ONE);
+      result[i] = new BigFraction(random.nextBoolean() ? num : num.negate(), den);
+    } // for (i)
+    return result;
+  } // values(Random, int)
+
+  /**
+   * Checks that a vector holds the expected fractions.
+   *
+   * @param expected the fractions
+   * @param actual the vector
+   * @param message what is being checked
+   */
+  static void check(BigFraction[] expected, FractionVector actual, String message) {
+    assertEquals(expected.length, actual.size(), message + " size");
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].toString(), actual.get(i).toString(), message + " at " + i);
+    } // for (i)
+  } // check(BigFraction[], FractionVector, String)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Do element-wise and scalar operations match BigFraction?
+   */
+  @Test
+  public void testOperations() {
+    Random random = new Random(207);
+    BigFraction[] a = values(random, 500);
+    BigFraction[] b = values(random, 500);
+    b[17] = new BigFraction(1, 1);
+    FractionVector va = FractionVector.of(a);
+    FractionVector vb = FractionVector.allocateDirect(b.length);
+    for (int i = 0; i < b.length; i++) {
+      vb.set(i, b[i]);
+    } // for (i)
+    check(a, va, "Round trip");
+    check(b, vb, "Direct round trip");
+    assertTrue(va.overflowCount() > 0, "Some elements overflow");
+    BigFraction scalar = new BigFraction(-7, 3);
+    BigFraction[] sum = new BigFraction[a.length];
+    BigFraction[] diff = new BigFraction[a.length];
+    BigFraction[] prod = new BigFraction[a.length];
+    BigFraction[] quot = new BigFraction[a.length];
+    BigFraction[] scaled = new BigFraction[a.length];
+    for (int i = 0; i < a.length; i++) {
+      sum[i] = a[i].add(b[i]);
+      diff[i] = a[i].subtract(b[i]);
+      prod[i] = a[i].multiply(b[i]);
+      quot[i] = b[i].signum() == 0 ? a[i] : a[i].divide(b[i]);
+      scaled[i] = a[i].divide(scalar);
+      if (b[i].signum() == 0) {
+        vb.set(i, new BigFraction(1, 1));
+      } // if (zero)
+    } // for (i)
+    check(sum, va.add(FractionVector.of(b)), "Add");
+    check(diff, va.subtract(FractionVector.of(b)), "Subtract");
+    check(prod, va.multiply(FractionVector.of(b)), "Multiply");
+    check(quot, va.divide(vb), "Divide");
+    check(scaled, va.divide(scalar), "Divide by scalar");
+    assertEquals(BigFraction.sum(a).toString(), va.sum().toString(), "Sum");
+    assertEquals(BigFraction.sum(b).toString(), FractionVector.of(b).sum().toString(),
+        "Second sum");
+  } // testOperations()
+
+  /**
+   * Are bad operands rejected?
+   */
+  @Test
+  public void testErrors() {
+    FractionVector v = new FractionVector(3);
+    assertEquals("[0, 0, 0]", v.toString(), "Starts at zero");
+    assertThrows(ArithmeticException.class, () -> v.divide(new BigFraction(0, 1)),
+        "Divide by zero scalar");
+    assertThrows(ArithmeticException.class, () -> v.divide(new FractionVector(3)),
+        "Divide by zero vector");
+    assertThrows(IllegalArgumentException.class, () -> v.add(new FractionVector(2)),
+        "Size mismatch");
+    assertThrows(IndexOutOfBoundsException.class, () -> v.get(3), "Index");
+  } // testErrors()
+} // class TestFractionVector
@@ -0,0 +1,156 @@
+package edu.grinnell.csc207.main;
+
+import edu.grinnell.csc207.util.BFCalculator;
+import edu.grinnell.csc207.util.BFRegisterSet;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of running files of calculator lines with "--batch". These live
+ * beside BatchEvaluator so that they can reach its package-private parts.
+ *
+ * Author: Slok Rajbhandari
+ */
+public class TestBatchEvaluator {
+
+  /**
+   * A fresh directory for each test.
+   */
+  @TempDir
+  Path dir;
+
+  /**
+   * Does a small file with STOREs, register reads, bad lines and CRLF line
+   * endings print what running its lines one at a time prints?
+   */
+  @Test
+  public void testSmallFile() throws Exception {
+    String text = "1/2 + 1/3\r\nSTORE a\na * 6\r\n1 / 0\nbogus !\n\nSTORE b\r\nb + a\nSTORE c\n"
+        + "c - 1/6";
+    assertEquals(expected(text.split("\r?\n")), batch(text), "Small file");
+  } // testSmallFile()
+
+  /**
+   * Does a file of many chunks print what running its lines one at a time
+   * prints?
+   */
+  @Test
+  public void testManyChunks() throws Exception {
+    Random random = new Random(207);
+    String[] operators = {"+", "-", "*", "/"};
+    List<String> lines = new ArrayList<>();
+    StringBuilder text = new StringBuilder();
+    while (text.length() < 3 * BatchEvaluator.CHUNK_BYTES) {
+      char register = (char) ('a' + random.nextInt(4));
+      String line;
+      switch (random.nextInt(8)) {
+        case 0:
+          line = "STORE " + register;
+          break;
+        case 1:
+          line = register + " / 0";
+          break;
+        case 2:
+          line = "bogus " + register;
+          break;
+        default:
+          line = register + " " + operators[random.nextInt(operators.length)] + " "
+              + (random.nextInt(5) + 1) + "/" + (random.nextInt(2) + 2);
+          break;
+      } // switch
+      lines.add(line);
+      text.append(line).append(random.nextBoolean() ? "\r\n" : "\n");
+    } // while (text)
+    assertEquals(expected(lines.toArray(new String[0])), batch(text.toString()), "Many chunks");
+  } // testManyChunks()
+
+  /**
+   * Do the helpers that cut regions and chunks at line ends find the right
+   * places?
+   */
+  @Test
+  public void testNewlines() {
+    ByteBuffer bytes = ByteBuffer.wrap("ab\ncd\r\nef".getBytes(StandardCharsets.UTF_8));
+    assertEquals(7, BatchEvaluator.lastNewline(bytes, 9), "Last line unterminated");
+    assertEquals(7, BatchEvaluator.lastNewline(bytes, 7), "Ends in a newline");
+    assertEquals(3, BatchEvaluator.lastNewline(bytes, 6), "Before a CRLF");
+    assertEquals(-1, BatchEvaluator.lastNewline(bytes, 2), "No newline");
+    assertEquals(3, BatchEvaluator.nextNewline(bytes, 0, 9), "From the start");
+    assertEquals(3, BatchEvaluator.nextNewline(bytes, 2, 9), "At a newline");
+    assertEquals(7, BatchEvaluator.nextNewline(bytes, 4, 9), "Through a CRLF");
+    assertEquals(9, BatchEvaluator.nextNewline(bytes, 8, 9), "No newline before end");
+  } // testNewlines()
+
+  /**
+   * Is a missing file reported, and the lines after it still printed?
+   */
+  @Test
+  public void testMissingFile() {
+    String missing = dir.resolve("missing").toString();
+    StringWriter text = new StringWriter();
+    PrintWriter output = new PrintWriter(text, true);
+    QuickCalculator.run(new String[] {"--batch", missing}, new BFCalculator(),
+        new BFRegisterSet(), output);
+    output.println("after");
+    String printed = text.toString();
+    assertTrue(printed.startsWith(missing + ": FAILED ["), "Reported: " + printed);
+    assertTrue(printed.endsWith("]" + System.lineSeparator() + "after" + System.lineSeparator()),
+        "Still printing: " + printed);
+  } // testMissingFile()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Runs text as a batch file.
+   *
+   * @param text the file's contents
+   * @return what the batch wrote
+   * @throws Exception if the batch cannot run
+   */
+  private String batch(String text) throws Exception {
+    Path input = dir.resolve("input");
+    Path target = dir.resolve("output");
+    Files.writeString(input, text);
+    QuickCalculator.runBatch(input, target, new BFCalculator(), new BFRegisterSet());
+    return Files.readString(target);
+  } // batch(String)
+
+  /**
+   * Runs lines one at a time, as QuickCalculator does with a single
+   * expression.
+   *
+   * @param lines the lines
+   * @return what they print, with a newline after each
+   */
+  private static String expected(String[] lines) {
+    BFCalculator calculator = new BFCalculator();
+    BFRegisterSet registers = new BFRegisterSet();
+    StringWriter text = new StringWriter();
+    PrintWriter output = new PrintWriter(text);
+    for (String line : lines) {
+      try {
+        QuickCalculator.processInput(line, calculator, registers, output);
+      } catch (Exception e) {
+        output.println(BatchEvaluator.failure(line, e));
+      } // try/catch
+    } // for (line)
+    output.flush();
+    return text.toString().replace(System.lineSeparator(), "\n");
+  } // expected(String[])
+} // class TestBatchEvaluator
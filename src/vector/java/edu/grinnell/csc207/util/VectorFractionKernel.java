@@ -0,0 +1,235 @@
+package edu.grinnell.csc207.util;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorFractionKernel class is FractionKernel done with the Vector API,
+ * one long lane per fraction. A lane that does not fit is replaced by 0/1
+ * before the arithmetic and marked with a 0 denominator after it, so every
+ * lane runs the same instructions. Reduction uses a binary gcd whose steps
+ * apply under a mask to the lanes not yet done, looping until every lane
+ * is. Vectors have no integer division, so the gcd is divided out as a
+ * shift and a multiplication by the inverse of its odd part. Leftover
+ * lanes at the end of the arrays go through the scalar reference.
+ *
+ * Only built with the vector profile, and only used when the JVM is run
+ * with --add-modules jdk.incubator.vector.
+ *
+ * Author: Slok Rajbhandari
+ */
+final class VectorFractionKernel extends FractionKernel {
+
+  /**
+   * The widest vector shape the hardware does well.
+   */
+  private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+  /**
+   * Bits below the exponent in a double.
+   */
+  private static final int SIGNIFICAND_BITS = 52;
+
+  /**
+   * Constructor for VectorFractionKernel; FractionKernel.load makes it.
+   */
+  VectorFractionKernel() {
+  } // VectorFractionKernel()
+
+  /**
+   * Tells whether this kernel uses the Vector API.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isVectorized() {
+    return true;
+  } // isVectorized()
+
+  /**
+   * Combines lanes [0, length) of two operands with op, as the scalar
+   * reference does.
+   *
+   * @param op ADD, SUBTRACT, MULTIPLY or DIVIDE
+   * @param n1 the left numerators
+   * @param d1 the left denominators
+   * @param n2 the right numerators
+   * @param d2 the right denominators
+   * @param n where to write the numerators
+   * @param d where to write the denominators
+   * @param length the number of lanes
+   */
+  @Override
+  public void apply(BFOperator op, long[] n1, long[] d1, long[] n2, long[] d2, long[] n, long[] d,
+      int length) {
+    check(op);
+    int bound = SPECIES.loopBound(length);
+    long[] g = new long[bound];
+    combine(op, n1, d1, n2, d2, n, d, bound);
+    gcd(n, d, g, bound);
+    divide(n, d, g, bound);
+    scalar(op, n1, d1, n2, d2, n, d, bound, length);
+  } // apply(BFOperator, long[], long[], long[], long[], long[], long[], int)
+
+  /*
+   * The three passes below each loop over the lanes on their own. One loop
+   * doing all three is too big for the JIT to inline the helpers into, and a
+   * vector passed to a call that is not inlined gets boxed on the heap.
+   */
+
+  /**
+   * Combines lanes [0, bound), unreduced, writing 0/0 in lanes that do not
+   * fit.
+   *
+   * @param op the operator
+   * @param n1 the left numerators
+   * @param d1 the left denominators
+   * @param n2 the right numerators
+   * @param d2 the right denominators
+   * @param n where to write the numerators
+   * @param d where to write the denominators
+   * @param bound the number of lanes, a multiple of the vector length
+   */
+  private static void combine(BFOperator op, long[] n1, long[] d1, long[] n2, long[] d2,
+      long[] n, long[] d, int bound) {
+    for (int i = 0; i < bound; i += SPECIES.length()) {
+      LongVector a = LongVector.fromArray(SPECIES, n1, i);
+      LongVector b = LongVector.fromArray(SPECIES, d1, i);
+      LongVector c = LongVector.fromArray(SPECIES, n2, i);
+      LongVector e = LongVector.fromArray(SPECIES, d2, i);
+      VectorMask<Long> skip = fits(a, b).and(fits(c, e)).not();
+      if (op == BFOperator.DIVIDE) {
+        skip = skip.or(c.compare(VectorOperators.EQ, 0));
+      } // if (DIVIDE)
+      a = a.blend(0, skip);
+      b = b.blend(1, skip);
+      c = c.blend(1, skip);
+      e = e.blend(1, skip);
+      LongVector num;
+      LongVector den;
+      if (op == BFOperator.ADD) {
+        num = a.mul(e).add(c.mul(b));
+        den = b.mul(e);
+      } else if (op == BFOperator.SUBTRACT) {
+        num = a.mul(e).sub(c.mul(b));
+        den = b.mul(e);
+      } else if (op == BFOperator.MULTIPLY) {
+        num = a.mul(c);
+        den = b.mul(e);
+      } else {
+        num = a.mul(e).lanewise(VectorOperators.NEG, c.compare(VectorOperators.LT, 0));
+        den = b.mul(c.abs());
+      } // if (op)
+      num.blend(0, skip).intoArray(n, i);
+      den.blend(0, skip).intoArray(d, i);
+    } // for (i)
+  } // combine(BFOperator, long[], long[], long[], long[], long[], long[], int)
+
+  /**
+   * Finds the odd part of gcd(|n|, d) in lanes [0, bound), or of d where n
+   * is 0, or 1 in 0/0 lanes.
+   *
+   * @param n the numerators
+   * @param d the denominators
+   * @param g where to write the odd parts
+   * @param bound the number of lanes, a multiple of the vector length
+   */
+  private static void gcd(long[] n, long[] d, long[] g, int bound) {
+    for (int i = 0; i < bound; i += SPECIES.length()) {
+      LongVector num = LongVector.fromArray(SPECIES, n, i);
+      LongVector den = LongVector.fromArray(SPECIES, d, i);
+      den = den.blend(1, den.compare(VectorOperators.EQ, 0));
+      oddGcd(num.abs().blend(den, num.compare(VectorOperators.EQ, 0)), den).intoArray(g, i);
+    } // for (i)
+  } // gcd(long[], long[], long[], int)
+
+  /**
+   * Divides lanes [0, bound) by their gcd in place. Since n / g is
+   * (n >> s) / odd for g = odd * 2^s, and dividing exactly by an odd number
+   * is multiplying by its inverse mod 2^64, this needs no division.
+   *
+   * @param n the numerators
+   * @param d the denominators
+   * @param g the odd parts of the gcds
+   * @param bound the number of lanes, a multiple of the vector length
+   */
+  private static void divide(long[] n, long[] d, long[] g, int bound) {
+    for (int i = 0; i < bound; i += SPECIES.length()) {
+      LongVector num = LongVector.fromArray(SPECIES, n, i);
+      LongVector den = LongVector.fromArray(SPECIES, d, i);
+      VectorMask<Long> skip = den.compare(VectorOperators.EQ, 0);
+      LongVector shift = trailingZeros(num.or(den).blend(1, skip));
+      LongVector inverse = inverse(LongVector.fromArray(SPECIES, g, i));
+      num.lanewise(VectorOperators.ASHR, shift).mul(inverse).intoArray(n, i);
+      den.lanewise(VectorOperators.LSHR, shift).mul(inverse).intoArray(d, i);
+    } // for (i)
+  } // divide(long[], long[], long[], int)
+
+  /**
+   * Finds the lanes whose operand fits the kernel, as FractionKernel.fits.
+   *
+   * @param n the numerators
+   * @param d the denominators
+   * @return the mask of fitting lanes
+   */
+  private static VectorMask<Long> fits(LongVector n, LongVector d) {
+    return n.compare(VectorOperators.GE, Integer.MIN_VALUE)
+        .and(n.compare(VectorOperators.LE, Integer.MAX_VALUE))
+        .and(d.compare(VectorOperators.GT, 0))
+        .and(d.compare(VectorOperators.LE, Integer.MAX_VALUE));
+  } // fits(LongVector, LongVector)
+
+  /**
+   * Computes the odd part of lane-wise greatest common divisors of positive
+   * values by Stein's algorithm. Each pass strips the trailing zeros from b,
+   * then replaces the pair with the smaller value and their difference,
+   * only in the lanes not yet done.
+   *
+   * @param a the first values, positive
+   * @param b the second values, positive
+   * @return gcd(a, b) without its factors of two, in each lane
+   */
+  static LongVector oddGcd(LongVector a, LongVector b) {
+    a = a.lanewise(VectorOperators.LSHR, trailingZeros(a));
+    VectorMask<Long> active = b.compare(VectorOperators.NE, 0);
+    while (active.anyTrue()) {
+      b = b.lanewise(VectorOperators.LSHR, trailingZeros(b), active);
+      LongVector smaller = a.min(b);
+      b = b.blend(b.sub(a).abs(), active);
+      a = a.blend(smaller, active);
+      active = b.compare(VectorOperators.NE, 0);
+    } // while (active)
+    return a;
+  } // oddGcd(LongVector, LongVector)
+
+  /**
+   * Counts trailing zero bits lane by lane. The lowest set bit, converted
+   * to a double, is an exact power of two whose exponent is the count.
+   *
+   * @param x the values, non-zero and not Long.MIN_VALUE
+   * @return the counts
+   */
+  static LongVector trailingZeros(LongVector x) {
+    LongVector lowest = x.and(x.neg());
+    return lowest.convert(VectorOperators.L2D, 0).reinterpretAsLongs()
+        .lanewise(VectorOperators.LSHR, SIGNIFICAND_BITS)
+        .sub(Double.MAX_EXPONENT);
+  } // trailingZeros(LongVector)
+
+  /**
+   * Inverts odd values modulo 2^64 by Newton's iteration, which doubles the
+   * number of correct low bits each step; 3x xor 2 starts with five.
+   *
+   * @param odd the values, all odd
+   * @return the inverses
+   */
+  static LongVector inverse(LongVector odd) {
+    LongVector x = odd.mul(3).lanewise(VectorOperators.XOR, 2);
+    for (int step = 0; step < 4; step++) {
+      x = x.mul(odd.mul(x).neg().add(2));
+    } // for (step)
+    return x;
+  } // inverse(LongVector)
+} // VectorFractionKernel class